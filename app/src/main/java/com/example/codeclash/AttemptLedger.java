@@ -0,0 +1,226 @@
+package com.example.codeclash;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * On-device record of every attempt the student started, kept until the server acknowledges it.
+ * Firestore already queues offline writes; the ledger covers the cases where that queue is lost
+ * (app data cleared mid-session, cache evicted) by replaying unacknowledged attempts when the
+ * connection comes back. Each attempt carries an id that is stored with the server counter,
+ * so a replay never counts the same attempt twice.
+ */
+public class AttemptLedger {
+    private static final String PREFS_NAME = "attempt_ledger";
+    private static final String KEY_ENTRIES = "entries";
+
+    private static AttemptLedger instance;
+    private final SharedPreferences preferences;
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean reconciling = false;
+
+    public static class Entry {
+        public final String attemptId;
+        public final String classCode;
+        public final String lessonName;
+        public final String activityType;
+        public final String studentId;
+        public final long recordedAt;
+
+        Entry(String attemptId, String classCode, String lessonName, String activityType,
+              String studentId, long recordedAt) {
+            this.attemptId = attemptId;
+            this.classCode = classCode;
+            this.lessonName = lessonName;
+            this.activityType = activityType;
+            this.studentId = studentId;
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    private AttemptLedger(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+        ConnectionManager.getInstance(context).addConnectionListener(new ConnectionManager.ConnectionListener() {
+            @Override
+            public void onConnectionChanged(boolean isConnected) {}
+
+            @Override
+            public void onConnectionRestored() {
+                reconcile();
+            }
+
+            @Override
+            public void onConnectionLost() {}
+        });
+    }
+
+    /**
+     * Create the ledger at startup so attempts left over from a previous session are reconciled
+     * without waiting for the next recordAttempt
+     */
+    public static void init(Context context) {
+        getInstance(context);
+    }
+
+    public static synchronized AttemptLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new AttemptLedger(context);
+            instance.reconcile(); // Anything left over from a previous session
+        }
+        return instance;
+    }
+
+    /**
+     * Append a new attempt; it stays in the ledger until acknowledged
+     */
+    public synchronized Entry append(String classCode, String lessonName, String activityType, String studentId) {
+        Entry entry = new Entry(UUID.randomUUID().toString(), classCode, lessonName, activityType,
+                studentId, System.currentTimeMillis());
+        entries.add(entry);
+        save();
+        return entry;
+    }
+
+    /**
+     * The server has the attempt; drop it from the ledger
+     */
+    public synchronized void acknowledge(String attemptId) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).attemptId.equals(attemptId)) {
+                entries.remove(i);
+                save();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forget every attempt, on logout so the next user never replays them
+     */
+    public synchronized void clear() {
+        entries.clear();
+        save();
+    }
+
+    /**
+     * Waits for Firestore's own write queue to drain, then replays any attempt of the signed-in
+     * student the server still lacks; entries of any other account are left alone
+     */
+    public void reconcile() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return;
+        List<Entry> pending = new ArrayList<>();
+        synchronized (this) {
+            if (reconciling) return;
+            for (Entry entry : entries) {
+                if (user.getUid().equals(entry.studentId)) pending.add(entry);
+            }
+            if (pending.isEmpty()) return;
+            reconciling = true;
+        }
+        System.out.println("🎯 AttemptLedger: Reconciling " + pending.size() + " unacknowledged attempts");
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        db.waitForPendingWrites()
+                .continueWithTask(drained -> {
+                    List<Task<Void>> replays = new ArrayList<>();
+                    for (Entry entry : pending) {
+                        replays.add(reconcileEntry(entry));
+                    }
+                    return Tasks.whenAllComplete(replays);
+                })
+                .addOnCompleteListener(task -> {
+                    synchronized (this) {
+                        reconciling = false;
+                    }
+                    System.out.println("🎯 AttemptLedger: Reconcile finished, " + entries.size() + " still pending");
+                });
+    }
+
+    private Task<Void> reconcileEntry(Entry entry) {
+        DocumentReference rosterRef = FirebaseFirestore.getInstance().collection("Classes").document(entry.classCode)
+                .collection("Students").document(entry.studentId);
+        return rosterRef.get(Source.SERVER)
+                .continueWithTask(roster -> {
+                    if (!roster.getResult().exists()) {
+                        // Removed from the class since: a replay would recreate Attempts under a deleted roster entry
+                        System.out.println("🎯 AttemptLedger: Dropping attempt " + entry.attemptId + ", student no longer in " + entry.classCode);
+                        acknowledge(entry.attemptId);
+                        return Tasks.forResult(null);
+                    }
+                    return replayIfMissing(entry);
+                });
+    }
+
+    private Task<Void> replayIfMissing(Entry entry) {
+        return LeaderboardManager.attemptDoc(entry.classCode, entry.lessonName, entry.activityType, entry.studentId)
+                .get(Source.SERVER)
+                .continueWithTask(read -> {
+                    DocumentSnapshot doc = read.getResult();
+                    List<?> recorded = doc.exists() ? (List<?>) doc.get("attemptIds") : null;
+                    if (recorded != null && recorded.contains(entry.attemptId)) {
+                        acknowledge(entry.attemptId);
+                        return Tasks.forResult(null);
+                    }
+                    System.out.println("🎯 AttemptLedger: Replaying attempt " + entry.attemptId);
+                    return LeaderboardManager.writeAttempt(entry)
+                            .addOnSuccessListener(v -> acknowledge(entry.attemptId));
+                });
+    }
+
+    private void load() {
+        String raw = preferences.getString(KEY_ENTRIES, null);
+        if (raw == null) return;
+        try {
+            JSONArray array = new JSONArray(raw);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                entries.add(new Entry(item.getString("attemptId"), item.getString("classCode"),
+                        item.getString("lessonName"), item.getString("activityType"),
+                        item.getString("studentId"), item.getLong("recordedAt")));
+            }
+        } catch (JSONException e) {
+            System.out.println("❌ AttemptLedger: Corrupt ledger, starting empty: " + e.getMessage());
+            entries.clear();
+            preferences.edit().remove(KEY_ENTRIES).apply();
+        }
+    }
+
+    private void save() {
+        try {
+            JSONArray array = new JSONArray();
+            for (Entry entry : entries) {
+                JSONObject item = new JSONObject();
+                item.put("attemptId", entry.attemptId);
+                item.put("classCode", entry.classCode);
+                item.put("lessonName", entry.lessonName);
+                item.put("activityType", entry.activityType);
+                item.put("studentId", entry.studentId);
+                item.put("recordedAt", entry.recordedAt);
+                array.put(item);
+            }
+            // commit() so an attempt is on disk before the activity it guards launches
+            preferences.edit().putString(KEY_ENTRIES, array.toString()).commit();
+        } catch (JSONException e) {
+            System.out.println("❌ AttemptLedger: Failed to save ledger: " + e.getMessage());
+        }
+    }
+}
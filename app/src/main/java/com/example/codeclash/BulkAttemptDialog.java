@@ -0,0 +1,121 @@
+package com.example.codeclash;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.text.InputType;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import com.google.firebase.auth.FirebaseAuth;
+
+import java.util.List;
+
+/**
+ * Teacher dialog for applying one attempt change to many students on a lesson/activity
+ */
+public class BulkAttemptDialog {
+
+    public interface OnBulkUpdateListener {
+        void onBulkUpdateComplete(int operation, int value);
+    }
+
+    /**
+     * @param studentIds students to update, or null for the whole class
+     */
+    public static void show(Activity activity, String classCode, String lessonName, String activityType,
+                            List<String> studentIds, OnBulkUpdateListener listener) {
+        String target = studentIds == null ? "all students" : (studentIds.size() + " students");
+        String[] options = {
+                "Reset to 0 Attempts",
+                "Add Attempts...",
+                "Set Attempts To..."
+        };
+
+        new AlertDialog.Builder(activity)
+                .setTitle("Apply to " + target)
+                .setItems(options, (dialog, which) -> {
+                    if (which == 0) {
+                        confirm(activity, classCode, lessonName, activityType, studentIds,
+                                LeaderboardManager.BULK_RESET, 0, "Reset attempts to 0 for " + target + "?", listener);
+                    } else {
+                        int operation = which == 1 ? LeaderboardManager.BULK_ADD : LeaderboardManager.BULK_SET;
+                        askForValue(activity, classCode, lessonName, activityType, studentIds, operation, target, listener);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private static void askForValue(Activity activity, String classCode, String lessonName, String activityType,
+                                    List<String> studentIds, int operation, String target,
+                                    OnBulkUpdateListener listener) {
+        EditText input = new EditText(activity);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        input.setHint(operation == LeaderboardManager.BULK_ADD ? "Attempts to add" : "Attempts used (0-" + LeaderboardManager.MAX_ATTEMPTS + ")");
+
+        new AlertDialog.Builder(activity)
+                .setTitle(operation == LeaderboardManager.BULK_ADD ? "Add Attempts" : "Set Attempts")
+                .setView(input)
+                .setPositiveButton("Apply", (dialog, which) -> {
+                    int value;
+                    try {
+                        value = Integer.parseInt(input.getText().toString().trim());
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(activity, "Please enter a number", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if ((operation == LeaderboardManager.BULK_ADD && value <= 0)
+                            || (operation == LeaderboardManager.BULK_SET && value > LeaderboardManager.MAX_ATTEMPTS)) {
+                        Toast.makeText(activity, "Please enter a valid number of attempts", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    String message = operation == LeaderboardManager.BULK_ADD
+                            ? "Add " + value + " attempt(s) for " + target + "?"
+                            : "Set attempts used to " + value + " for " + target + "?";
+                    confirm(activity, classCode, lessonName, activityType, studentIds, operation, value, message, listener);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private static void confirm(Activity activity, String classCode, String lessonName, String activityType,
+                                List<String> studentIds, int operation, int value, String message,
+                                OnBulkUpdateListener listener) {
+        new AlertDialog.Builder(activity)
+                .setTitle(lessonName + " (" + activityType + ")")
+                .setMessage(message)
+                .setPositiveButton("Apply", (dialog, which) ->
+                        run(activity, classCode, lessonName, activityType, studentIds, operation, value, listener))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private static void run(Activity activity, String classCode, String lessonName, String activityType,
+                            List<String> studentIds, int operation, int value, OnBulkUpdateListener listener) {
+        String teacherId = FirebaseAuth.getInstance().getCurrentUser() != null
+                ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
+
+        LeaderboardManager.teacherBulkUpdateAttempts(classCode, lessonName, activityType, studentIds, operation, value,
+                teacherId, new LeaderboardManager.BulkAttemptCallback() {
+                    @Override
+                    public void onProgress(int studentsUpdated, int totalStudents) {
+                        System.out.println("🔍 BulkAttempts: " + studentsUpdated + "/" + totalStudents + " students updated");
+                    }
+
+                    @Override
+                    public void onComplete(int studentsUpdated) {
+                        if (activity.isFinishing()) return;
+                        Toast.makeText(activity, "Updated attempts for " + studentsUpdated + " students", Toast.LENGTH_SHORT).show();
+                        if (listener != null) {
+                            listener.onBulkUpdateComplete(operation, value);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        if (activity.isFinishing()) return;
+                        Toast.makeText(activity, "Failed to update attempts: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+}
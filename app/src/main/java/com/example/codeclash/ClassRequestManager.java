@@ -0,0 +1,348 @@
+package com.example.codeclash;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approves or rejects many join/leave requests of a class at once. The class doc and every
+ * student's name are read up front (one read plus one bulk name lookup), each request's writes
+ * are grouped so a student is never half-enrolled, the groups are packed into WriteBatches of up
+ * to 500 operations committed in parallel, and the students are notified in one fan-out.
+ * Approved leaves are the exception: they reuse StudentRemovalManager's cascade.
+ */
+public class ClassRequestManager {
+    public static final String STATUS_APPROVED = "approved";
+    public static final String STATUS_REJECTED = "rejected";
+
+    public interface BatchCallback {
+        void onComplete(int processed, int failed);
+        void onFailure(Exception e);
+    }
+
+    /**
+     * A pending request as shown to the teacher
+     */
+    public static class PendingRequest {
+        final String requestId;
+        final String studentId;
+        final String studentName;
+
+        public PendingRequest(String requestId, String studentId, String studentName) {
+            this.requestId = requestId;
+            this.studentId = studentId;
+            this.studentName = studentName;
+        }
+    }
+
+    private enum Kind { SET, UPDATE, DELETE }
+
+    private static class Operation {
+        final DocumentReference ref;
+        final Kind kind;
+        final Map<String, Object> data;
+
+        Operation(DocumentReference ref, Kind kind, Map<String, Object> data) {
+            this.ref = ref;
+            this.kind = kind;
+            this.data = data;
+        }
+    }
+
+    private static FirebaseFirestore getDb() {
+        return FirebaseFirestore.getInstance();
+    }
+
+    /**
+     * Enroll every requesting student: roster doc, MyJoinedClasses summary and request status
+     */
+    public static void approveJoinRequests(String classCode, List<PendingRequest> requests, String teacherName,
+                                           BatchCallback callback) {
+        if (requests.isEmpty()) {
+            callback.onComplete(0, 0);
+            return;
+        }
+        DocumentReference classRef = getDb().collection("Classes").document(classCode);
+
+        classRef.get()
+                .addOnSuccessListener(classDoc -> {
+                    if (!classDoc.exists()) {
+                        callback.onFailure(new IllegalStateException("Class " + classCode + " not found"));
+                        return;
+                    }
+                    String classYear = classDoc.getString("yearLevel");
+                    String classBlock = classDoc.getString("block");
+                    String yearBlock = (classYear != null ? classYear : "N/A") + " - " + (classBlock != null ? classBlock : "N/A");
+
+                    UserNameManager.getUserNames(studentIds(requests), names -> {
+                        long now = System.currentTimeMillis();
+                        Map<String, Object> summary = ClassSummaryManager.buildSummary(classDoc, teacherName);
+                        summary.put("joinedAt", now);
+
+                        List<List<Operation>> groups = new ArrayList<>();
+                        for (PendingRequest request : requests) {
+                            String fullName = names.get(request.studentId);
+                            if (fullName == null || fullName.isEmpty()) fullName = request.studentName;
+                            if (fullName == null || fullName.isEmpty()) fullName = "Student";
+
+                            Map<String, Object> studentData = new HashMap<>();
+                            studentData.put("studentId", request.studentId);
+                            studentData.put("userId", request.studentId);
+                            studentData.put("fullName", fullName);
+                            studentData.put("yearBlock", yearBlock);
+                            studentData.put("joinedAt", now);
+
+                            List<Operation> group = new ArrayList<>();
+                            group.add(new Operation(classRef.collection("Students").document(request.studentId), Kind.SET, studentData));
+                            group.add(new Operation(joinedClassRef(request.studentId, classCode), Kind.SET, summary));
+                            group.add(new Operation(classRef.collection("JoinRequests").document(request.requestId),
+                                    Kind.UPDATE, statusUpdate(STATUS_APPROVED, now)));
+                            groups.add(group);
+                        }
+
+                        commitGroups("approve join", requests, groups, callback,
+                                approved -> FCMHelper.sendJoinRequestNotifications(approved, classCode, true));
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ ClassRequestManager: Failed to fetch class " + classCode + ": " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    /**
+     * Mark the requests rejected and clean up any stale MyJoinedClasses link
+     */
+    public static void rejectJoinRequests(String classCode, List<PendingRequest> requests, BatchCallback callback) {
+        DocumentReference classRef = getDb().collection("Classes").document(classCode);
+        long now = System.currentTimeMillis();
+
+        List<List<Operation>> groups = new ArrayList<>();
+        for (PendingRequest request : requests) {
+            List<Operation> group = new ArrayList<>();
+            group.add(new Operation(classRef.collection("JoinRequests").document(request.requestId),
+                    Kind.UPDATE, statusUpdate(STATUS_REJECTED, now)));
+            group.add(new Operation(joinedClassRef(request.studentId, classCode), Kind.DELETE, null));
+            groups.add(group);
+        }
+
+        commitGroups("reject join", requests, groups, callback,
+                rejected -> FCMHelper.sendJoinRequestNotifications(rejected, classCode, false));
+    }
+
+    /**
+     * Take the students out of the class. Leaving removes the same data as a teacher removal
+     * (scores, rollup entries, progress, membership), so each student goes through
+     * StudentRemovalManager; the removals run in parallel and the notification is one fan-out.
+     */
+    public static void approveLeaveRequests(String classCode, List<PendingRequest> requests, BatchCallback callback) {
+        if (requests.isEmpty()) {
+            callback.onComplete(0, 0);
+            return;
+        }
+        DocumentReference classRef = getDb().collection("Classes").document(classCode);
+
+        // Lesson order tells the removal which leaderboards to clean; the name is for the notification
+        classRef.get()
+                .addOnSuccessListener(classDoc -> {
+                    String className = classDoc.exists() && classDoc.getString("className") != null
+                            ? classDoc.getString("className") : classCode;
+                    List<String> lessonNames = LessonManager.readLessonOrder(classDoc);
+
+                    List<Task<Void>> removals = new ArrayList<>();
+                    for (PendingRequest request : requests) {
+                        removals.add(removeLeavingStudent(classRef, classCode, request, lessonNames));
+                    }
+                    System.out.println("📋 ClassRequestManager: approve leave for " + requests.size() + " requests");
+
+                    Tasks.whenAllComplete(removals).addOnCompleteListener(done -> {
+                        List<String> removed = new ArrayList<>();
+                        for (int i = 0; i < removals.size(); i++) {
+                            if (removals.get(i).isSuccessful()) {
+                                removed.add(requests.get(i).studentId);
+                            }
+                        }
+                        int failed = requests.size() - removed.size();
+                        if (!removed.isEmpty()) {
+                            FCMHelper.sendLeaveRequestNotifications(removed, classCode, className, true);
+                        }
+                        System.out.println("✅ ClassRequestManager: approve leave done, " + removed.size() + " processed, " + failed + " failed");
+                        callback.onComplete(removed.size(), failed);
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ ClassRequestManager: Failed to fetch class " + classCode + ": " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    // StudentRemovalManager deletes the requests stored under the student's id; any other request id is deleted after
+    private static Task<Void> removeLeavingStudent(DocumentReference classRef, String classCode, PendingRequest request,
+                                                   List<String> lessonNames) {
+        TaskCompletionSource<Void> removal = new TaskCompletionSource<>();
+        StudentRemovalManager.removeStudent(classCode, request.studentId, lessonNames, new StudentRemovalManager.RemovalCallback() {
+            @Override
+            public void onProgress(int completedOperations, int totalOperations) {}
+
+            @Override
+            public void onComplete(int totalOperations) {
+                if (request.requestId.equals(request.studentId)) {
+                    removal.setResult(null);
+                    return;
+                }
+                classRef.collection("LeaveRequests").document(request.requestId).delete()
+                        .addOnCompleteListener(deleted -> removal.setResult(null));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                System.out.println("❌ ClassRequestManager: Removal of " + request.studentId + " failed: " + e.getMessage());
+                removal.setException(e);
+            }
+        });
+        return removal.getTask();
+    }
+
+    /**
+     * Mark the requests rejected; the students stay in the class
+     */
+    public static void rejectLeaveRequests(String classCode, List<PendingRequest> requests, BatchCallback callback) {
+        DocumentReference classRef = getDb().collection("Classes").document(classCode);
+        long now = System.currentTimeMillis();
+
+        List<List<Operation>> groups = new ArrayList<>();
+        for (PendingRequest request : requests) {
+            List<Operation> group = new ArrayList<>();
+            group.add(new Operation(classRef.collection("LeaveRequests").document(request.requestId),
+                    Kind.UPDATE, statusUpdate(STATUS_REJECTED, now)));
+            groups.add(group);
+        }
+
+        commitGroups("reject leave", requests, groups, callback,
+                rejected -> FCMHelper.sendLeaveRequestNotifications(rejected, classCode, null, false));
+    }
+
+    private interface OnCommittedListener {
+        void onCommitted(List<String> studentIds);
+    }
+
+    // Packs whole groups into batches, commits them in parallel and notifies only the students whose group landed.
+    // Status is written with update(), so a request that is gone fails its batch instead of being recreated;
+    // a failed batch is retried one group at a time so only the affected students are left out.
+    private static void commitGroups(String label, List<PendingRequest> requests, List<List<Operation>> groups,
+                                     BatchCallback callback, OnCommittedListener onCommitted) {
+        if (groups.isEmpty()) {
+            callback.onComplete(0, 0);
+            return;
+        }
+
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int currentSize = 0;
+        for (int i = 0; i < groups.size(); i++) {
+            int groupSize = groups.get(i).size();
+            if (currentSize + groupSize > FirestoreChunks.MAX_BATCH_OPERATIONS && !current.isEmpty()) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentSize = 0;
+            }
+            current.add(i);
+            currentSize += groupSize;
+        }
+        batches.add(current);
+
+        List<Task<List<Integer>>> commits = new ArrayList<>();
+        for (List<Integer> batchGroups : batches) {
+            commits.add(commitBatch(groups, batchGroups).continueWithTask(commit -> {
+                if (commit.isSuccessful()) return Tasks.forResult(batchGroups);
+                System.out.println("❌ ClassRequestManager: " + label + " batch failed: "
+                        + (commit.getException() != null ? commit.getException().getMessage() : "Unknown error"));
+                if (batchGroups.size() == 1) return Tasks.forResult(new ArrayList<>());
+                return commitIndividually(label, groups, batchGroups);
+            }));
+        }
+        System.out.println("📋 ClassRequestManager: " + label + " for " + requests.size()
+                + " requests in " + commits.size() + " batch(es)");
+
+        Tasks.whenAllComplete(commits).addOnCompleteListener(done -> {
+            List<String> committed = new ArrayList<>();
+            for (Task<List<Integer>> commit : commits) {
+                if (!commit.isSuccessful()) continue;
+                for (int index : commit.getResult()) {
+                    committed.add(requests.get(index).studentId);
+                }
+            }
+            int failed = requests.size() - committed.size();
+            if (!committed.isEmpty()) onCommitted.onCommitted(committed);
+            System.out.println("✅ ClassRequestManager: " + label + " done, " + committed.size() + " processed, " + failed + " failed");
+            callback.onComplete(committed.size(), failed);
+        });
+    }
+
+    // One batch per group, so a missing request only fails its own student; resolves to the groups that landed
+    private static Task<List<Integer>> commitIndividually(String label, List<List<Operation>> groups, List<Integer> batchGroups) {
+        List<Task<Void>> singles = new ArrayList<>();
+        for (int index : batchGroups) {
+            singles.add(commitBatch(groups, Collections.singletonList(index)));
+        }
+        return Tasks.whenAllComplete(singles).continueWith(done -> {
+            List<Integer> landed = new ArrayList<>();
+            for (int i = 0; i < singles.size(); i++) {
+                if (singles.get(i).isSuccessful()) {
+                    landed.add(batchGroups.get(i));
+                } else {
+                    System.out.println("❌ ClassRequestManager: " + label + " skipped a request: "
+                            + (singles.get(i).getException() != null ? singles.get(i).getException().getMessage() : "Unknown error"));
+                }
+            }
+            return landed;
+        });
+    }
+
+    private static Task<Void> commitBatch(List<List<Operation>> groups, List<Integer> batchGroups) {
+        WriteBatch batch = getDb().batch();
+        for (int index : batchGroups) {
+            for (Operation operation : groups.get(index)) {
+                if (operation.kind == Kind.SET) {
+                    batch.set(operation.ref, operation.data);
+                } else if (operation.kind == Kind.UPDATE) {
+                    batch.update(operation.ref, operation.data);
+                } else {
+                    batch.delete(operation.ref);
+                }
+            }
+        }
+        return batch.commit();
+    }
+
+    private static DocumentReference joinedClassRef(String studentId, String classCode) {
+        return getDb().collection("Users").document(studentId)
+                .collection("MyJoinedClasses").document(classCode);
+    }
+
+    private static Map<String, Object> statusUpdate(String status, long processedAt) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("status", status);
+        update.put("processedAt", processedAt);
+        return update;
+    }
+
+    private static Set<String> studentIds(List<PendingRequest> requests) {
+        Set<String> ids = new HashSet<>();
+        for (PendingRequest request : requests) {
+            ids.add(request.studentId);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.codeclash;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live gradebook for one class: student × lesson × activity scores in primitive arrays,
+ * fed by a single collection-group listener on Scores scoped to Classes/{classCode}.
+ * Every expanded student card reads from here, so the listener count stays at one
+ * no matter how many students are expanded.
+ *
+ * Storage is column-major (one int[] per lesson/activity column, indexed by student ordinal),
+ * so sorting or filtering the roster by a column touches one array. Per-column mean and
+ * pass count are kept up to date on every cell write.
+ */
+public class ClassScoreMatrix {
+
+    public static final int NO_SCORE = -1;
+
+    private static final String[] ACTIVITIES = {
+            LeaderboardManager.ACTIVITY_QUIZ,
+            LeaderboardManager.ACTIVITY_CODE_BUILDER,
+            LeaderboardManager.ACTIVITY_COMPILER
+    };
+    private static final int ACTIVITY_COUNT = ACTIVITIES.length;
+    private static final int INITIAL_STUDENT_CAPACITY = 64;
+    // Highest private-use code point; appended to a path it bounds every id starting with that path
+    private static final String PREFIX_END = "\uf8ff";
+
+    public interface OnMatrixChangedListener {
+        /**
+         * @param studentIds students whose cells changed; empty after the first snapshot, meaning refresh everyone
+         */
+        void onScoresChanged(Set<String> studentIds);
+        void onFailure(Exception e);
+    }
+
+    private final String classCode;
+
+    // Row index: studentId -> ordinal
+    private final Map<String, Integer> studentOrdinals = new HashMap<>();
+    private final List<String> studentIds = new ArrayList<>();
+    // Lesson index: lessonName -> ordinal; column = lessonOrdinal * ACTIVITY_COUNT + activityOrdinal
+    private final Map<String, Integer> lessonOrdinals = new HashMap<>();
+    private final List<String> lessons = new ArrayList<>();
+
+    private int studentCapacity = INITIAL_STUDENT_CAPACITY;
+    private int[][] scores = new int[0][];
+    private int[][] attempts = new int[0][];
+
+    // Column aggregates over students that have a score
+    private long[] columnSum = new long[0];
+    private int[] columnAttempted = new int[0];
+    private int[] columnPassing = new int[0];
+
+    private ListenerRegistration registration;
+    private boolean loaded = false;
+
+    public ClassScoreMatrix(String classCode, List<String> lessonNames) {
+        this.classCode = classCode;
+        for (String lesson : lessonNames) {
+            lessonOrdinal(lesson, true);
+        }
+    }
+
+    /**
+     * Start (or restart) the class-wide subscription. Updates arrive on the main thread.
+     */
+    public void start(OnMatrixChangedListener listener) {
+        stop();
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference classRef = db.collection("Classes").document(classCode);
+
+        // Collection-group documentId ranges must be full document paths, so the class is selected by path prefix
+        registration = db.collectionGroup("Scores")
+                .orderBy(FieldPath.documentId())
+                .startAt(classRef.getPath())
+                .endAt(classRef.getPath() + PREFIX_END)
+                .addSnapshotListener((snapshots, error) -> {
+                    if (error != null) {
+                        System.out.println("❌ ClassScoreMatrix: Listener failed for " + classCode + ": " + error.getMessage());
+                        listener.onFailure(error);
+                        return;
+                    }
+                    if (snapshots == null) return;
+
+                    boolean firstSnapshot = !loaded;
+                    Set<String> changed = new HashSet<>();
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        String studentId = apply(change.getDocument(), change.getType() == DocumentChange.Type.REMOVED);
+                        if (studentId != null) changed.add(studentId);
+                    }
+                    loaded = true;
+                    System.out.println("📊 ClassScoreMatrix: " + changed.size() + " students updated in " + classCode);
+                    if (firstSnapshot) {
+                        listener.onScoresChanged(Collections.emptySet());
+                    } else if (!changed.isEmpty()) {
+                        listener.onScoresChanged(changed);
+                    }
+                });
+    }
+
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * True once the first snapshot has arrived
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Best score, or NO_SCORE if the student has not scored on the activity
+     */
+    public int getScore(String studentId, String lessonName, String activityType) {
+        int row = rowOf(studentId);
+        int column = columnOf(lessonName, activityType);
+        return row >= 0 && column >= 0 ? scores[column][row] : NO_SCORE;
+    }
+
+    public int getAttempts(String studentId, String lessonName, String activityType) {
+        int row = rowOf(studentId);
+        int column = columnOf(lessonName, activityType);
+        return row >= 0 && column >= 0 ? attempts[column][row] : 0;
+    }
+
+    /**
+     * Mean score over the students who have scored on the activity (0 if nobody has)
+     */
+    public double getColumnMean(String lessonName, String activityType) {
+        int column = columnOf(lessonName, activityType);
+        if (column < 0 || columnAttempted[column] == 0) return 0;
+        return (double) columnSum[column] / columnAttempted[column];
+    }
+
+    public int getColumnAttemptedCount(String lessonName, String activityType) {
+        int column = columnOf(lessonName, activityType);
+        return column >= 0 ? columnAttempted[column] : 0;
+    }
+
+    public int getColumnPassCount(String lessonName, String activityType) {
+        int column = columnOf(lessonName, activityType);
+        return column >= 0 ? columnPassing[column] : 0;
+    }
+
+    /**
+     * Orders studentIds by score on one activity, highest first; students without a score go last
+     */
+    public Comparator<String> scoreOrder(String lessonName, String activityType) {
+        int column = columnOf(lessonName, activityType);
+        if (column < 0) return (a, b) -> 0;
+        int[] columnScores = scores[column];
+        return (a, b) -> {
+            int rowA = rowOf(a);
+            int rowB = rowOf(b);
+            int scoreA = rowA >= 0 ? columnScores[rowA] : NO_SCORE;
+            int scoreB = rowB >= 0 ? columnScores[rowB] : NO_SCORE;
+            return Integer.compare(scoreB, scoreA);
+        };
+    }
+
+    // Returns the studentId the document belongs to, or null if it is not one of this class's boards
+    private String apply(DocumentSnapshot doc, boolean removed) {
+        // Classes/{classCode}/Leaderboards/{lesson_activity}/Scores/{studentId}
+        String[] segments = doc.getReference().getPath().split("/");
+        if (segments.length != 6 || !classCode.equals(segments[1]) || !"Leaderboards".equals(segments[2])) {
+            return null; // Another class sharing the code prefix
+        }
+        String boardKey = segments[3];
+        int activity = activityOrdinal(boardKey);
+        if (activity < 0) return null; // The overall board is derived from the other three
+
+        String lessonName = boardKey.substring(0, boardKey.length() - ACTIVITIES[activity].length() - 1);
+        int column = lessonOrdinal(lessonName, true) * ACTIVITY_COUNT + activity;
+        String studentId = segments[5];
+
+        if (removed) {
+            int row = rowOf(studentId);
+            if (row >= 0) setCell(column, row, activity, NO_SCORE, 0);
+            return studentId;
+        }
+
+        Long score = doc.getLong("score");
+        Long used = doc.getLong("attemptsUsed");
+        setCell(column, rowFor(studentId), activity,
+                score != null ? score.intValue() : 0, used != null ? used.intValue() : 0);
+        return studentId;
+    }
+
+    // O(1) write that keeps the column aggregates in step
+    private void setCell(int column, int row, int activity, int score, int attemptsUsed) {
+        int passing = LeaderboardManager.passingScore(ACTIVITIES[activity]);
+        int previous = scores[column][row];
+        if (previous != NO_SCORE) {
+            columnSum[column] -= previous;
+            columnAttempted[column]--;
+            if (previous >= passing) columnPassing[column]--;
+        }
+        if (score != NO_SCORE) {
+            columnSum[column] += score;
+            columnAttempted[column]++;
+            if (score >= passing) columnPassing[column]++;
+        }
+        scores[column][row] = score;
+        attempts[column][row] = attemptsUsed;
+    }
+
+    private int rowOf(String studentId) {
+        Integer row = studentOrdinals.get(studentId);
+        return row != null ? row : -1;
+    }
+
+    private int rowFor(String studentId) {
+        Integer row = studentOrdinals.get(studentId);
+        if (row != null) return row;
+
+        int ordinal = studentIds.size();
+        if (ordinal >= studentCapacity) {
+            studentCapacity *= 2;
+            for (int column = 0; column < scores.length; column++) {
+                scores[column] = grow(scores[column], studentCapacity, NO_SCORE);
+                attempts[column] = grow(attempts[column], studentCapacity, 0);
+            }
+        }
+        studentIds.add(studentId);
+        studentOrdinals.put(studentId, ordinal);
+        return ordinal;
+    }
+
+    private int columnOf(String lessonName, String activityType) {
+        int lesson = lessonOrdinal(lessonName, false);
+        if (lesson < 0) return -1;
+        for (int i = 0; i < ACTIVITY_COUNT; i++) {
+            if (ACTIVITIES[i].equals(activityType)) return lesson * ACTIVITY_COUNT + i;
+        }
+        return -1;
+    }
+
+    private int lessonOrdinal(String lessonName, boolean create) {
+        Integer ordinal = lessonOrdinals.get(lessonName);
+        if (ordinal != null) return ordinal;
+        if (!create) return -1;
+
+        int lesson = lessons.size();
+        lessons.add(lessonName);
+        lessonOrdinals.put(lessonName, lesson);
+
+        int columns = (lesson + 1) * ACTIVITY_COUNT;
+        scores = Arrays.copyOf(scores, columns);
+        attempts = Arrays.copyOf(attempts, columns);
+        columnSum = Arrays.copyOf(columnSum, columns);
+        columnAttempted = Arrays.copyOf(columnAttempted, columns);
+        columnPassing = Arrays.copyOf(columnPassing, columns);
+        for (int column = lesson * ACTIVITY_COUNT; column < columns; column++) {
+            scores[column] = grow(new int[0], studentCapacity, NO_SCORE);
+            attempts[column] = new int[studentCapacity];
+        }
+        return lesson;
+    }
+
+    private static int activityOrdinal(String boardKey) {
+        for (int i = 0; i < ACTIVITY_COUNT; i++) {
+            if (boardKey.endsWith("_" + ACTIVITIES[i])) return i;
+        }
+        return -1;
+    }
+
+    private static int[] grow(int[] column, int capacity, int fill) {
+        int[] grown = Arrays.copyOf(column, capacity);
+        Arrays.fill(grown, column.length, capacity, fill);
+        return grown;
+    }
+}
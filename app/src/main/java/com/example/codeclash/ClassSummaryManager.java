@@ -0,0 +1,172 @@
+package com.example.codeclash;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the class summary denormalized into every Users/{studentId}/MyJoinedClasses/{classCode}
+ * document (year, block, teacher, lesson count), so a student's class list is one collection read.
+ * Enrollment writes the summary; edits to class metadata go through updateClassDetails, which
+ * fans the new summary out to the roster in chunked batches.
+ */
+public class ClassSummaryManager {
+    // Present on a membership doc once it carries a full summary
+    public static final String FIELD_SUMMARY_UPDATED_AT = "summaryUpdatedAt";
+
+    public interface PropagationCallback {
+        void onComplete(int studentsUpdated);
+        void onFailure(Exception e);
+    }
+
+    private static FirebaseFirestore getDb() {
+        return FirebaseFirestore.getInstance();
+    }
+
+    /**
+     * Summary fields for a membership doc; teacherName may be null if it is not known yet
+     */
+    public static Map<String, Object> buildSummary(DocumentSnapshot classDoc, String teacherName) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("classCode", classDoc.getId());
+        String yearLevel = classDoc.getString("yearLevel");
+        String block = classDoc.getString("block");
+        String teacherId = classDoc.getString("createdBy");
+        if (yearLevel != null) summary.put("yearLevel", yearLevel);
+        if (block != null) summary.put("block", block);
+        if (teacherId != null) summary.put("teacherId", teacherId);
+        if (teacherName != null) summary.put("teacherName", teacherName);
+        summary.put("lessonCount", LessonManager.readLessonOrder(classDoc).size());
+        summary.put(FIELD_SUMMARY_UPDATED_AT, System.currentTimeMillis());
+        return summary;
+    }
+
+    /**
+     * Teacher edit of the class's year level and block, followed by a summary fan-out to the roster
+     */
+    public static void updateClassDetails(String classCode, String yearLevel, String block, PropagationCallback callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("yearLevel", yearLevel);
+        updates.put("block", block);
+
+        getDb().collection("Classes").document(classCode)
+                .update(updates)
+                .addOnSuccessListener(unused -> propagate(classCode, callback))
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ ClassSummaryManager: Failed to update class " + classCode + ": " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    /**
+     * Rewrite the summary on every enrolled student's membership doc from the current class doc
+     */
+    public static void propagate(String classCode, PropagationCallback callback) {
+        Task<DocumentSnapshot> classRead = getDb().collection("Classes").document(classCode).get();
+        Task<QuerySnapshot> rosterRead = getDb().collection("Classes").document(classCode).collection("Students").get();
+
+        Tasks.whenAll(classRead, rosterRead)
+                .addOnSuccessListener(unused -> {
+                    DocumentSnapshot classDoc = classRead.getResult();
+                    if (!classDoc.exists()) {
+                        callback.onFailure(new IllegalStateException("Class " + classCode + " not found"));
+                        return;
+                    }
+                    List<String> studentIds = new ArrayList<>();
+                    for (DocumentSnapshot student : rosterRead.getResult()) {
+                        studentIds.add(student.getId());
+                    }
+                    String teacherId = classDoc.getString("createdBy");
+                    UserNameManager.getUserName(teacherId, new UserNameManager.NameCallback() {
+                        @Override
+                        public void onSuccess(String name) {
+                            writeSummaries(classCode, studentIds, buildSummary(classDoc, name), callback);
+                        }
+
+                        @Override
+                        public void onFailure(String fallbackName) {
+                            writeSummaries(classCode, studentIds, buildSummary(classDoc, null), callback);
+                        }
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ ClassSummaryManager: Failed to read class " + classCode + " for propagation: " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    /**
+     * update() rather than a merged set: it keeps joinedAt and anything else on the membership doc,
+     * and fails instead of recreating the doc of a student removed since the roster was read.
+     * A batch that fails is retried one student at a time, so only the missing ones are skipped.
+     */
+    private static void writeSummaries(String classCode, List<String> studentIds, Map<String, Object> summary,
+                                       PropagationCallback callback) {
+        if (studentIds.isEmpty()) {
+            callback.onComplete(0);
+            return;
+        }
+
+        List<List<String>> chunks = FirestoreChunks.partition(studentIds, FirestoreChunks.MAX_BATCH_OPERATIONS);
+        List<Task<Integer>> commits = FirestoreChunks.commitInBatches(studentIds, (batch, studentId) ->
+                batch.update(membershipRef(studentId, classCode), summary));
+        List<Task<Integer>> written = new ArrayList<>();
+        for (int i = 0; i < commits.size(); i++) {
+            List<String> chunk = chunks.get(i);
+            written.add(commits.get(i).continueWithTask(commit -> commit.isSuccessful()
+                    ? commit
+                    : updateIndividually(classCode, chunk, summary)));
+        }
+
+        System.out.println("📚 ClassSummaryManager: Propagating summary of " + classCode + " to "
+                + studentIds.size() + " students in " + commits.size() + " batch(es)");
+        Tasks.whenAllSuccess(written)
+                .addOnSuccessListener(counts -> {
+                    int updated = 0;
+                    for (Object count : counts) updated += (Integer) count;
+                    callback.onComplete(updated);
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ ClassSummaryManager: Summary propagation failed for " + classCode + ": " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    // Resolves to the number of memberships updated; a missing membership (student removed) is skipped
+    private static Task<Integer> updateIndividually(String classCode, List<String> studentIds, Map<String, Object> summary) {
+        List<Task<Void>> updates = new ArrayList<>();
+        for (String studentId : studentIds) {
+            updates.add(membershipRef(studentId, classCode).update(summary));
+        }
+        return Tasks.whenAllComplete(updates).continueWith(done -> {
+            int updated = 0;
+            for (Task<Void> update : updates) {
+                if (update.isSuccessful()) {
+                    updated++;
+                } else if (!isNotFound(update.getException())) {
+                    throw update.getException();
+                }
+            }
+            return updated;
+        });
+    }
+
+    private static boolean isNotFound(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND;
+    }
+
+    private static DocumentReference membershipRef(String studentId, String classCode) {
+        return getDb().collection("Users").document(studentId)
+                .collection("MyJoinedClasses").document(classCode);
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.codeclash;
 
+import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.DocumentSnapshot;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class FCMHelper {
@@ -36,20 +40,48 @@ public class FCMHelper {
             });
     }
     
-    private static void createNotificationDocument(String userId, String type, String title, String body, Map<String, String> extraData) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", type);
-        notification.put("title", title);
-        notification.put("body", body);
-        notification.put("timestamp", System.currentTimeMillis());
-        notification.put("read", false);
+    /**
+     * Same notification to many users: tokens are read with chunked whereIn queries and the
+     * notification documents are written in batches, instead of one read and one write per user
+     */
+    public static void sendNotificationToUsers(Collection<String> userIds, String type, String title, String body, Map<String, String> extraData) {
+        List<String> ids = new ArrayList<>(userIds);
+        if (ids.isEmpty()) return;
         
-        // Add extra data
-        if (extraData != null) {
-            for (Map.Entry<String, String> entry : extraData.entrySet()) {
-                notification.put(entry.getKey(), entry.getValue());
+        // Chunks the rules refuse to list are re-read per user, so the rest still get their push
+        FirestoreChunks.readByIds(db.collection("Users"), ids).addOnCompleteListener(read -> {
+            if (!read.getResult().complete) {
+                System.out.println("❌ FCM: Failed to get some user tokens");
+            }
+            for (DocumentSnapshot userDoc : read.getResult().documents.values()) {
+                String fcmToken = userDoc.getString("fcmToken");
+                if (fcmToken != null && !fcmToken.isEmpty()) {
+                    sendFCMPushNotification(fcmToken, type, title, body, extraData);
+                }
             }
+            
+            // Notification documents are written even if the token reads failed
+            createNotificationDocuments(ids, type, title, body, extraData);
+        });
+    }
+    
+    private static void createNotificationDocuments(List<String> userIds, String type, String title, String body, Map<String, String> extraData) {
+        Map<String, Object> notification = buildNotification(type, title, body, extraData);
+        List<Task<Integer>> commits = FirestoreChunks.commitInBatches(userIds, (batch, userId) ->
+            batch.set(db.collection("Users").document(userId).collection("Notifications").document(), notification));
+        for (Task<Integer> commit : commits) {
+            commit
+                .addOnSuccessListener(count -> {
+                    System.out.println("📬 FCM: Notification documents created for " + count + " users");
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ FCM: Failed to create notification documents: " + e.getMessage());
+                });
         }
+    }
+    
+    private static void createNotificationDocument(String userId, String type, String title, String body, Map<String, String> extraData) {
+        Map<String, Object> notification = buildNotification(type, title, body, extraData);
         
         db.collection("Users")
             .document(userId)
@@ -64,6 +96,23 @@ public class FCMHelper {
             });
     }
     
+    private static Map<String, Object> buildNotification(String type, String title, String body, Map<String, String> extraData) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("type", type);
+        notification.put("title", title);
+        notification.put("body", body);
+        notification.put("timestamp", System.currentTimeMillis());
+        notification.put("read", false);
+        
+        // Add extra data
+        if (extraData != null) {
+            for (Map.Entry<String, String> entry : extraData.entrySet()) {
+                notification.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return notification;
+    }
+    
     private static void sendFCMPushNotification(String fcmToken, String type, String title, String body, Map<String, String> extraData) {
         // For now, we'll use a simple HTTP request to FCM REST API
         // In production, this should be done server-side for security
@@ -118,6 +167,21 @@ public class FCMHelper {
         sendNotificationToUser(studentId, approved ? "join_approved" : "join_rejected", title, body, data);
     }
     
+    /**
+     * Join request notifications for a whole batch of students
+     */
+    public static void sendJoinRequestNotifications(Collection<String> studentIds, String classCode, boolean approved) {
+        Map<String, String> data = new HashMap<>();
+        data.put("classCode", classCode);
+        
+        String title = approved ? "Join Request Approved" : "Join Request Rejected";
+        String body = approved 
+            ? "Your request to join class " + classCode + " was approved!" 
+            : "Your request to join class " + classCode + " was rejected";
+        
+        sendNotificationToUsers(studentIds, approved ? "join_approved" : "join_rejected", title, body, data);
+    }
+    
     /**
      * Send leave request approval/rejection notifications
      */
@@ -133,5 +197,20 @@ public class FCMHelper {
         
         sendNotificationToUser(studentId, approved ? "leave_approved" : "leave_rejected", title, body, data);
     }
+    
+    /**
+     * Leave request notifications for a whole batch of students
+     */
+    public static void sendLeaveRequestNotifications(Collection<String> studentIds, String classCode, String className, boolean approved) {
+        Map<String, String> data = new HashMap<>();
+        data.put("classCode", classCode);
+        if (className != null) data.put("className", className);
+        
+        String title = approved ? "Leave Request Approved" : "Leave Request Rejected";
+        String body = approved
+            ? "You have been removed from class " + (className != null ? className : classCode)
+            : "Your request to leave class " + (className != null ? className : classCode) + " was rejected";
+        
+        sendNotificationToUsers(studentIds, approved ? "leave_approved" : "leave_rejected", title, body, data);
+    }
 }
-
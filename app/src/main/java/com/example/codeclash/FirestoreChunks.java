@@ -0,0 +1,155 @@
+package com.example.codeclash;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits work to fit Firestore's per-request limits: id lookups go out as whereIn(documentId)
+ * chunks of 30, writes as batches of up to 500.
+ */
+final class FirestoreChunks {
+    // Firestore's limit on values in a single whereIn filter
+    static final int WHERE_IN_CHUNK_SIZE = 30;
+    // Firestore's limit on writes in one batch
+    static final int MAX_BATCH_OPERATIONS = 500;
+
+    // Collection paths whose rules refused a list query; reads there go straight to per-document gets
+    private static final Set<String> listingRefused = new HashSet<>();
+
+    private FirestoreChunks() {}
+
+    /**
+     * Documents read by id, keyed by id (only those that exist); complete is false if any read
+     * failed, so callers can tell "not found" from "not known"
+     */
+    static class IdReadResult {
+        final Map<String, DocumentSnapshot> documents;
+        final boolean complete;
+
+        IdReadResult(Map<String, DocumentSnapshot> documents, boolean complete) {
+            this.documents = documents;
+            this.complete = complete;
+        }
+    }
+
+    interface BatchWriter<T> {
+        void write(WriteBatch batch, T item);
+    }
+
+    /**
+     * Read documents by id with concurrent whereIn chunks. A chunk whose query fails is re-read
+     * with one get per document; PERMISSION_DENIED marks the collection so later reads skip the
+     * query. Never fails.
+     */
+    static Task<IdReadResult> readByIds(CollectionReference collection, Collection<String> ids) {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Task<IdReadResult>> chunks = new ArrayList<>();
+        for (List<String> chunk : partition(unique, WHERE_IN_CHUNK_SIZE)) {
+            chunks.add(readChunk(collection, new ArrayList<>(chunk)));
+        }
+
+        return Tasks.whenAllComplete(chunks).continueWith(done -> {
+            Map<String, DocumentSnapshot> documents = new HashMap<>();
+            boolean complete = true;
+            for (Task<IdReadResult> chunk : chunks) {
+                if (!chunk.isSuccessful()) {
+                    complete = false;
+                    continue;
+                }
+                documents.putAll(chunk.getResult().documents);
+                complete &= chunk.getResult().complete;
+            }
+            return new IdReadResult(documents, complete);
+        });
+    }
+
+    private static Task<IdReadResult> readChunk(CollectionReference collection, List<String> chunk) {
+        String path = collection.getPath();
+        synchronized (listingRefused) {
+            if (listingRefused.contains(path)) return getIndividually(collection, chunk);
+        }
+        return collection.whereIn(FieldPath.documentId(), chunk)
+                .get()
+                .continueWithTask(query -> {
+                    if (query.isSuccessful()) {
+                        Map<String, DocumentSnapshot> documents = new HashMap<>();
+                        for (DocumentSnapshot doc : query.getResult().getDocuments()) {
+                            documents.put(doc.getId(), doc);
+                        }
+                        return Tasks.forResult(new IdReadResult(documents, true));
+                    }
+                    Exception e = query.getException();
+                    if (e instanceof FirebaseFirestoreException
+                            && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.PERMISSION_DENIED) {
+                        synchronized (listingRefused) {
+                            listingRefused.add(path);
+                        }
+                    }
+                    System.out.println("❌ FirestoreChunks: whereIn on " + path + " failed, reading "
+                            + chunk.size() + " documents individually: " + (e != null ? e.getMessage() : "unknown error"));
+                    return getIndividually(collection, chunk);
+                });
+    }
+
+    private static Task<IdReadResult> getIndividually(CollectionReference collection, List<String> ids) {
+        List<Task<DocumentSnapshot>> reads = new ArrayList<>();
+        for (String id : ids) {
+            reads.add(collection.document(id).get());
+        }
+        return Tasks.whenAllComplete(reads).continueWith(done -> {
+            Map<String, DocumentSnapshot> documents = new HashMap<>();
+            boolean complete = true;
+            for (Task<DocumentSnapshot> read : reads) {
+                if (!read.isSuccessful()) {
+                    complete = false;
+                } else if (read.getResult().exists()) {
+                    documents.put(read.getResult().getId(), read.getResult());
+                }
+            }
+            return new IdReadResult(documents, complete);
+        });
+    }
+
+    /**
+     * Consecutive slices of at most size items (views onto the list)
+     */
+    static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += size) {
+            chunks.add(items.subList(start, Math.min(start + size, items.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Write the items through batches of MAX_BATCH_OPERATIONS committed in parallel; each task
+     * resolves to the number of items its batch committed
+     */
+    static <T> List<Task<Integer>> commitInBatches(List<T> items, BatchWriter<T> writer) {
+        List<Task<Integer>> commits = new ArrayList<>();
+        for (List<T> chunk : partition(items, MAX_BATCH_OPERATIONS)) {
+            WriteBatch batch = FirebaseFirestore.getInstance().batch();
+            for (T item : chunk) {
+                writer.write(batch, item);
+            }
+            int count = chunk.size();
+            commits.add(batch.commit().onSuccessTask(unused -> Tasks.forResult(count)));
+        }
+        return commits;
+    }
+}
@@ -15,17 +15,21 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import com.example.codeclash.LeaderboardCache;
 import com.example.codeclash.LeaderboardManager;
+import com.example.codeclash.LeaderboardRanking;
 import com.example.codeclash.NetworkManager;
 import com.example.codeclash.R;
 import com.google.android.material.tabs.TabLayout;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 public class Leaderboards extends Fragment {
 
@@ -50,6 +54,19 @@ public class Leaderboards extends Fragment {
             "ARRAYS"
     };
     private ListenerRegistration currentLeaderboardListener;
+    // Entries shown in the cross-class (general) leaderboard
+    private static final int GENERAL_LEADERBOARD_SIZE = 20;
+    // Teacher class view loads the full leaderboard page by page while scrolling
+    private static final int TEACHER_PAGE_SIZE = 25;
+    private static final int PAGE_PREFETCH_ROWS = 5;
+    private boolean isTeacherView = false;
+    private DocumentSnapshot pageCursor;
+    private boolean hasMorePages = false;
+    private boolean pageLoading = false;
+    // Bumped on every reload so late callbacks from a replaced listener are ignored
+    private int loadGeneration = 0;
+    // True while the list shows the on-device copy and fresh data has not arrived yet
+    private boolean showingCachedEntries = false;
 
     @Nullable
     @Override
@@ -88,9 +105,20 @@ public class Leaderboards extends Fragment {
         System.out.println("🏆 Leaderboards: initViews - emptyStateText found? " + (emptyStateText != null));
         System.out.println("🏆 Leaderboards: initViews - recyclerView found? " + (recyclerView != null));
 
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
         adapter = new LeaderboardAdapter(leaderboardEntries);
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                // Fetch the next page shortly before the teacher reaches the end of the list
+                if (!isTeacherView || pageLoading || !hasMorePages || dy <= 0) return;
+                if (layoutManager.findLastVisibleItemPosition() >= leaderboardEntries.size() - PAGE_PREFETCH_ROWS) {
+                    loadScoresPage(loadGeneration);
+                }
+            }
+        });
 
         // Set initial empty state
         if (emptyStateText != null && emptyStateContainer != null) {
@@ -107,6 +135,7 @@ public class Leaderboards extends Fragment {
         if (args != null) {
             currentClassCode = args.getString("classCode", null);
             currentLesson = args.getString("lessonName", null);
+            isTeacherView = args.getBoolean("isTeacher", false);
             System.out.println("🏆 Leaderboards: From args - Class: " + currentClassCode + ", Lesson: " + currentLesson);
         } else {
             System.out.println("❌ Leaderboards: No arguments provided");
@@ -116,6 +145,7 @@ public class Leaderboards extends Fragment {
             if (getActivity() != null && getActivity().getIntent() != null) {
                 currentClassCode = getActivity().getIntent().getStringExtra("classCode");
                 currentLesson = getActivity().getIntent().getStringExtra("lessonName");
+                isTeacherView = isTeacherView || getActivity().getIntent().getBooleanExtra("isTeacher", false);
                 System.out.println("🏆 Leaderboards: From activity intent - Class: " + currentClassCode + ", Lesson: " + currentLesson);
             } else {
                 System.out.println("❌ Leaderboards: No activity or intent available");
@@ -142,6 +172,13 @@ public class Leaderboards extends Fragment {
         activityTabLayout.addTab(activityTabLayout.newTab().setText("Quiz"));
         activityTabLayout.addTab(activityTabLayout.newTab().setText("Code Builder"));
         activityTabLayout.addTab(activityTabLayout.newTab().setText("Compiler"));
+        activityTabLayout.addTab(activityTabLayout.newTab().setText("Overall"));
+
+        // Teachers land on the combined lesson standing
+        if (isTeacherView) {
+            currentActivityType = LeaderboardManager.ACTIVITY_OVERALL;
+            activityTabLayout.selectTab(activityTabLayout.getTabAt(3));
+        }
 
         activityTabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
@@ -156,6 +193,9 @@ public class Leaderboards extends Fragment {
                     case 2:
                         currentActivityType = LeaderboardManager.ACTIVITY_COMPILER;
                         break;
+                    case 3:
+                        currentActivityType = LeaderboardManager.ACTIVITY_OVERALL;
+                        break;
                 }
                 loadLeaderboard();
             }
@@ -214,12 +254,14 @@ public class Leaderboards extends Fragment {
         System.out.println("🏆 Leaderboards: currentLesson = " + currentLesson);
         System.out.println("🏆 Leaderboards: currentActivityType = " + currentActivityType);
 
-        // Remove old listener if exists
+        // Remove old listener if exists; loads still in flight for the previous tab are dropped
         if (currentLeaderboardListener != null) {
             currentLeaderboardListener.remove();
             currentLeaderboardListener = null;
             System.out.println("🏆 Leaderboards: Removed old listener");
         }
+        final int generation = ++loadGeneration;
+        adapter.activityType = currentActivityType;
 
         // Check network connectivity first
         if (getContext() != null && !NetworkManager.isNetworkAvailable(getContext())) {
@@ -230,43 +272,48 @@ public class Leaderboards extends Fragment {
         if (currentClassCode == null) {
             System.out.println("🏆 Leaderboards: Missing classCode, loading general leaderboard");
             // Try to load a general leaderboard from all classes
-            loadGeneralLeaderboard();
+            loadGeneralLeaderboard(generation);
             return;
         }
         
-        // Clear existing data first
-        leaderboardEntries.clear();
-        adapter.notifyDataSetChanged();
-
-        // Show loading state
-        emptyStateText.setText("Loading...");
-        emptyStateContainer.setVisibility(View.VISIBLE);
-        recyclerView.setVisibility(View.GONE);
-
-        // Determine if user is teacher (check if they created classes)
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        boolean isTeacher = false;
-        if (currentUser != null) {
-            // Quick check - if they're viewing a specific class, assume student view
-            // For real-time, we'll use top 10 for now (can be enhanced later)
-            isTeacher = false; // Simplified for now
+        // Render the last known leaderboard instantly, the listener below revalidates it
+        showCachedOrLoading(currentClassCode, currentLesson, currentActivityType);
+        final String cacheClassCode = currentClassCode;
+        final String cacheLesson = currentLesson;
+        final String cacheActivity = currentActivityType;
+
+        // Teachers (opened with isTeacher=true) see every student, loaded page by page
+        if (isTeacherView) {
+            pageCursor = null;
+            hasMorePages = false;
+            pageLoading = false;
+            loadScoresPage(generation);
+            return;
         }
 
         // Add real-time listener - limit to top 10 for students
-        currentLeaderboardListener = LeaderboardManager.addRealtimeScoresListener(
+        currentLeaderboardListener = LeaderboardManager.addRealtimeRankingListener(
             currentClassCode, currentLesson, currentActivityType, 
             10, // Limit to top 10
-            new LeaderboardManager.OnLeaderboardCallback() {
+            new LeaderboardManager.OnRankingChangeCallback() {
                 @Override
-                public void onSuccess(List<LeaderboardManager.LeaderboardEntry> entries) {
-                        if (!isAdded() || getActivity() == null) return;
+                public void onRankingChanged(List<LeaderboardManager.LeaderboardEntry> ranking,
+                                             List<LeaderboardRanking.Change> changes) {
+                        if (!isAdded() || getActivity() == null || generation != loadGeneration) return;
 
                     leaderboardEntries.clear();
-                    leaderboardEntries.addAll(entries);
-                    adapter.notifyDataSetChanged();
+                    leaderboardEntries.addAll(ranking);
+                    if (showingCachedEntries) {
+                        // Deltas are relative to an empty list, not to the cached rows on screen
+                        showingCachedEntries = false;
+                        adapter.notifyDataSetChanged();
+                    } else {
+                        dispatchRankingChanges(changes);
+                    }
+                    LeaderboardCache.getInstance(requireContext()).put(cacheClassCode, cacheLesson, cacheActivity, ranking);
                         if (swipeRefreshLayout != null) swipeRefreshLayout.setRefreshing(false);
 
-                    if (entries.isEmpty()) {
+                    if (ranking.isEmpty()) {
                             System.out.println("🏆 Leaderboards: No entries found, showing empty state");
                             if (emptyStateText != null && emptyStateContainer != null) {
                                 if (currentActivityType.equals(LeaderboardManager.ACTIVITY_QUIZ)) {
@@ -275,6 +322,8 @@ public class Leaderboards extends Fragment {
                                     emptyStateText.setText("No code builder scores yet");
                                 } else if (currentActivityType.equals(LeaderboardManager.ACTIVITY_COMPILER)) {
                                     emptyStateText.setText("No compiler scores yet");
+                                } else if (currentActivityType.equals(LeaderboardManager.ACTIVITY_OVERALL)) {
+                                    emptyStateText.setText("No overall scores yet");
                                 } else {
                                     emptyStateText.setText("No scores yet");
                                 }
@@ -284,7 +333,7 @@ public class Leaderboards extends Fragment {
                         recyclerView.setVisibility(View.GONE);
                             }
                     } else {
-                        System.out.println("🏆 Leaderboards: Real-time update - Showing " + entries.size() + " entries");
+                        System.out.println("🏆 Leaderboards: Real-time update - Showing " + ranking.size() + " entries (" + changes.size() + " changes)");
                             if (emptyStateContainer != null) {
                                 emptyStateContainer.setVisibility(View.GONE);
                             }
@@ -296,7 +345,7 @@ public class Leaderboards extends Fragment {
 
                 @Override
                 public void onFailure(Exception e) {
-                        if (!isAdded() || getActivity() == null) return;
+                        if (!isAdded() || getActivity() == null || generation != loadGeneration) return;
 
                     emptyStateText.setText("Failed to load leaderboard");
                         emptyStateContainer.setVisibility(View.VISIBLE);
@@ -309,9 +358,131 @@ public class Leaderboards extends Fragment {
             });
     }
 
+    /**
+     * Load the next page of the teacher class leaderboard (the first one when pageCursor is null)
+     */
+    private void loadScoresPage(int generation) {
+        pageLoading = true;
+        boolean firstPage = pageCursor == null;
+        String classCode = currentClassCode;
+        String lessonName = currentLesson;
+        String activityType = currentActivityType;
+
+        LeaderboardManager.getScoresPage(classCode, lessonName, activityType, TEACHER_PAGE_SIZE, pageCursor,
+                new LeaderboardManager.OnScoresPageCallback() {
+                    @Override
+                    public void onSuccess(LeaderboardManager.ScoresPage page) {
+                        if (!isAdded() || getActivity() == null || generation != loadGeneration) return;
+                        pageLoading = false;
+                        pageCursor = page.cursor;
+                        hasMorePages = page.hasMore;
+                        if (swipeRefreshLayout != null) swipeRefreshLayout.setRefreshing(false);
+
+                        if (firstPage) {
+                            // Replace whatever was shown (cached copy or loading state)
+                            showingCachedEntries = false;
+                            leaderboardEntries.clear();
+                            leaderboardEntries.addAll(page.entries);
+                            adapter.notifyDataSetChanged();
+                            LeaderboardCache.getInstance(requireContext()).put(classCode, lessonName, activityType, page.entries);
+                        } else {
+                            int start = leaderboardEntries.size();
+                            leaderboardEntries.addAll(page.entries);
+                            adapter.notifyItemRangeInserted(start, page.entries.size());
+                        }
+
+                        if (leaderboardEntries.isEmpty()) {
+                            emptyStateText.setText("No scores yet");
+                            emptyStateContainer.setVisibility(View.VISIBLE);
+                            recyclerView.setVisibility(View.GONE);
+                        } else {
+                            emptyStateContainer.setVisibility(View.GONE);
+                            recyclerView.setVisibility(View.VISIBLE);
+                        }
+                        System.out.println("🏆 Leaderboards: Page added " + page.entries.size() + " entries, total " + leaderboardEntries.size() + ", hasMore=" + hasMorePages);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        if (!isAdded() || getActivity() == null || generation != loadGeneration) return;
+                        pageLoading = false;
+                        if (swipeRefreshLayout != null) swipeRefreshLayout.setRefreshing(false);
+                        if (firstPage && leaderboardEntries.isEmpty()) {
+                            emptyStateText.setText("Failed to load leaderboard");
+                            emptyStateContainer.setVisibility(View.VISIBLE);
+                            recyclerView.setVisibility(View.GONE);
+                        }
+                        if (getContext() != null) {
+                            Toast.makeText(getContext(), "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Fill the list from the on-device cache if this leaderboard was shown before,
+     * otherwise clear it and show the loading state
+     */
+    private void showCachedOrLoading(String classCode, String lessonName, String activityType) {
+        leaderboardEntries.clear();
+        LeaderboardCache.CachedLeaderboard cached = getContext() == null ? null
+                : LeaderboardCache.getInstance(getContext()).get(classCode, lessonName, activityType);
+        showingCachedEntries = cached != null && !cached.entries.isEmpty();
+
+        if (showingCachedEntries) {
+            leaderboardEntries.addAll(cached.entries);
+            adapter.notifyDataSetChanged();
+            emptyStateContainer.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+            System.out.println("🏆 Leaderboards: Showing " + cached.entries.size() + " cached entries saved at " + cached.savedAt);
+        } else {
+            adapter.notifyDataSetChanged();
+            emptyStateText.setText("Loading...");
+            emptyStateContainer.setVisibility(View.VISIBLE);
+            recyclerView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Replay ranking deltas on the adapter so RecyclerView animates them,
+     * then refresh only the rank labels of rows whose position shifted
+     */
+    private void dispatchRankingChanges(List<LeaderboardRanking.Change> changes) {
+        int firstShifted = -1;
+        for (LeaderboardRanking.Change change : changes) {
+            switch (change.type) {
+                case LeaderboardRanking.CHANGE_INSERT:
+                    adapter.notifyItemInserted(change.toPosition);
+                    break;
+                case LeaderboardRanking.CHANGE_REMOVE:
+                    adapter.notifyItemRemoved(change.fromPosition);
+                    break;
+                case LeaderboardRanking.CHANGE_MOVE:
+                    adapter.notifyItemMoved(change.fromPosition, change.toPosition);
+                    break;
+                case LeaderboardRanking.CHANGE_UPDATE:
+                    adapter.notifyItemChanged(change.toPosition);
+                    break;
+            }
+            if (change.type != LeaderboardRanking.CHANGE_UPDATE) {
+                int shifted = Math.min(change.fromPosition, change.toPosition);
+                firstShifted = firstShifted < 0 ? shifted : Math.min(firstShifted, shifted);
+            }
+        }
+
+        if (firstShifted >= 0 && firstShifted < leaderboardEntries.size()) {
+            adapter.notifyItemRangeChanged(firstShifted, leaderboardEntries.size() - firstShifted, LeaderboardAdapter.PAYLOAD_RANK);
+        }
+    }
+
     // Adapter for leaderboard entries
     private static class LeaderboardAdapter extends RecyclerView.Adapter<LeaderboardViewHolder> {
+        // Rebind only the rank label of a row whose position changed
+        static final Object PAYLOAD_RANK = new Object();
+
         private List<LeaderboardManager.LeaderboardEntry> entries;
+        // Activity of the leaderboard on screen, for entries that do not carry their own
+        String activityType = LeaderboardManager.ACTIVITY_QUIZ;
 
         public LeaderboardAdapter(List<LeaderboardManager.LeaderboardEntry> entries) {
             this.entries = entries;
@@ -325,11 +496,20 @@ public class Leaderboards extends Fragment {
             return new LeaderboardViewHolder(view);
         }
 
+        @Override
+        public void onBindViewHolder(@NonNull LeaderboardViewHolder holder, int position, @NonNull List<Object> payloads) {
+            if (!payloads.isEmpty() && payloads.stream().allMatch(p -> p == PAYLOAD_RANK)) {
+                bindRank(holder, position);
+                return;
+            }
+            super.onBindViewHolder(holder, position, payloads);
+        }
+
         @Override
         public void onBindViewHolder(@NonNull LeaderboardViewHolder holder, int position) {
             LeaderboardManager.LeaderboardEntry entry = entries.get(position);
             
-            holder.rankText.setText("#" + (position + 1));
+            bindRank(holder, position);
 
             // Show student name with class and lesson info
             String displayName = entry.studentName;
@@ -341,6 +521,8 @@ public class Leaderboards extends Fragment {
                     activityDisplay = "Code Builder";
                 } else if (entry.activityType.equals(LeaderboardManager.ACTIVITY_COMPILER)) {
                     activityDisplay = "Compiler";
+                } else if (entry.activityType.equals(LeaderboardManager.ACTIVITY_OVERALL)) {
+                    activityDisplay = "Overall";
                 } else {
                     activityDisplay = "Unknown";
                 }
@@ -349,7 +531,17 @@ public class Leaderboards extends Fragment {
             holder.studentNameText.setText(displayName);
 
             holder.scoreText.setText(String.valueOf(entry.score));
-            holder.attemptsText.setText(entry.attemptsUsed + "/" + LeaderboardManager.MAX_ATTEMPTS + " attempts");
+            String entryActivity = entry.activityType != null ? entry.activityType : activityType;
+            if (LeaderboardManager.ACTIVITY_OVERALL.equals(entryActivity)) {
+                // Overall score is out of 100 and attempts are summed over all activities
+                holder.attemptsText.setText(entry.attemptsUsed + " attempts");
+            } else {
+                holder.attemptsText.setText(entry.attemptsUsed + "/" + LeaderboardManager.MAX_ATTEMPTS + " attempts");
+            }
+        }
+
+        private void bindRank(LeaderboardViewHolder holder, int position) {
+            holder.rankText.setText("#" + (position + 1));
 
             // Highlight top 3 positions
             if (position == 0) {
@@ -381,16 +573,10 @@ public class Leaderboards extends Fragment {
         }
     }
 
-    private void loadGeneralLeaderboard() {
+    private void loadGeneralLeaderboard(int generation) {
         System.out.println("🏆 Leaderboards: Loading general leaderboard from all classes...");
 
-        // Clear existing data first
-        leaderboardEntries.clear();
-        adapter.notifyDataSetChanged();
-
-        emptyStateText.setText("Loading...");
-        emptyStateContainer.setVisibility(View.VISIBLE);
-        recyclerView.setVisibility(View.GONE);
+        showCachedOrLoading(LeaderboardCache.ALL_CLASSES, currentLesson, currentActivityType);
 
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser == null) {
@@ -408,17 +594,19 @@ public class Leaderboards extends Fragment {
                 .whereEqualTo("createdBy", userId)
                 .get()
                 .addOnSuccessListener(teacherClassesSnapshot -> {
+                    if (generation != loadGeneration) return;
                     if (!teacherClassesSnapshot.isEmpty()) {
                         System.out.println("🏆 Leaderboards: User is a teacher, loading from " + teacherClassesSnapshot.size() + " classes");
-                        loadAllClassLeaderboards(teacherClassesSnapshot);
+                        loadAllClassLeaderboards(teacherClassesSnapshot, generation);
                     } else {
                         // Try to load as student
-                        loadStudentClassesAsFallback();
+                        loadStudentClassesAsFallback(generation);
                     }
                 })
                 .addOnFailureListener(e -> {
+                    if (generation != loadGeneration) return;
                     System.out.println("❌ Leaderboards: Failed to load teacher classes: " + e.getMessage());
-                    loadStudentClassesAsFallback();
+                    loadStudentClassesAsFallback(generation);
                 });
     }
 
@@ -448,22 +636,22 @@ public class Leaderboards extends Fragment {
                 .addOnSuccessListener(teacherClassesSnapshot -> {
                     if (!teacherClassesSnapshot.isEmpty()) {
                         System.out.println("🏆 Leaderboards: User is a teacher with " + teacherClassesSnapshot.size() + " classes");
-                        loadAllClassLeaderboards(teacherClassesSnapshot);
+                        loadAllClassLeaderboards(teacherClassesSnapshot, loadGeneration);
                     } else {
                         // Teacher with no classes - try to load as student
                         System.out.println("🏆 Leaderboards: No classes found with createdBy: " + userId);
                         System.out.println("🏆 Leaderboards: User is not a teacher, checking student classes...");
-                        loadStudentClassesAsFallback();
+                        loadStudentClassesAsFallback(loadGeneration);
                     }
                 })
                 .addOnFailureListener(e -> {
                     System.out.println("❌ Leaderboards: Failed to check teacher classes: " + e.getMessage());
                     // If teacher check fails, try to load as student
-                    loadStudentClassesAsFallback();
+                    loadStudentClassesAsFallback(loadGeneration);
                 });
     }
 
-    private void loadStudentClassesAsFallback() {
+    private void loadStudentClassesAsFallback(int generation) {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser == null) {
             if (getActivity() != null) {
@@ -480,6 +668,7 @@ public class Leaderboards extends Fragment {
                 .collection("MyJoinedClasses")
                 .get()
                 .addOnSuccessListener(querySnapshot -> {
+                    if (generation != loadGeneration) return;
                     System.out.println("🏆 Leaderboards: Student classes query result: " + querySnapshot.size() + " classes");
                     if (querySnapshot.isEmpty()) {
                         System.out.println("🏆 Leaderboards: Student has no joined classes");
@@ -495,9 +684,10 @@ public class Leaderboards extends Fragment {
                         System.out.println("🏆 Leaderboards: Student joined class: " + doc.getId() + " - " + doc.getString("classCode"));
                     }
                     // Load leaderboards from all classes - convert student classes to class documents
-                    loadStudentClassLeaderboards(querySnapshot);
+                    loadStudentClassLeaderboards(querySnapshot, generation);
                 })
                 .addOnFailureListener(e -> {
+                    if (generation != loadGeneration) return;
                     System.out.println("❌ Leaderboards: Failed to load student classes: " + e.getMessage());
                     emptyStateText.setText("Failed to load your classes");
                     emptyStateContainer.setVisibility(View.VISIBLE);
@@ -506,98 +696,52 @@ public class Leaderboards extends Fragment {
                 });
     }
 
-    private void loadStudentClassLeaderboards(com.google.firebase.firestore.QuerySnapshot studentClassesSnapshot) {
+    private void loadStudentClassLeaderboards(com.google.firebase.firestore.QuerySnapshot studentClassesSnapshot, int generation) {
         System.out.println("🏆 Leaderboards: Loading leaderboards from " + studentClassesSnapshot.size() + " student classes");
 
-        leaderboardEntries.clear();
-        java.util.concurrent.atomic.AtomicInteger completedQueries = new java.util.concurrent.atomic.AtomicInteger(0);
-        int totalQueries = studentClassesSnapshot.size(); // Only 1 lesson per class now
-
         String lessonToLoad = currentLesson != null ? currentLesson : lessons[0];
-        System.out.println("🏆 Leaderboards: Loading student class leaderboards for lesson: " + lessonToLoad + ", activity: " + currentActivityType);
+        String activityToLoad = currentActivityType;
+        System.out.println("🏆 Leaderboards: Loading student class leaderboards for lesson: " + lessonToLoad + ", activity: " + activityToLoad);
 
+        TopEntriesMerge merge = new TopEntriesMerge(GENERAL_LEADERBOARD_SIZE, studentClassesSnapshot.size(), lessonToLoad, activityToLoad);
         for (com.google.firebase.firestore.DocumentSnapshot studentClassDoc : studentClassesSnapshot) {
             String classCode = studentClassDoc.getString("classCode");
             if (classCode == null) {
                 classCode = studentClassDoc.getId(); // fallback to document ID
             }
-            final String finalClassCode = classCode; // Make it final for lambda
-            System.out.println("🏆 Leaderboards: Loading leaderboard for student class: " + finalClassCode);
+            System.out.println("🏆 Leaderboards: Loading leaderboard for student class: " + classCode);
 
             // Load leaderboard for selected lesson and activity type only (student: top 10)
-            loadClassLeaderboardStudent(finalClassCode, lessonToLoad, currentActivityType, completedQueries, totalQueries);
+            loadClassLeaderboard(classCode, lessonToLoad, activityToLoad, 10, merge, generation);
         }
     }
 
-    private void loadAllClassLeaderboards(com.google.firebase.firestore.QuerySnapshot classSnapshot) {
+    private void loadAllClassLeaderboards(com.google.firebase.firestore.QuerySnapshot classSnapshot, int generation) {
         System.out.println("🏆 Leaderboards: Loading leaderboards from " + classSnapshot.size() + " classes");
 
-        leaderboardEntries.clear();
-        java.util.concurrent.atomic.AtomicInteger completedQueries = new java.util.concurrent.atomic.AtomicInteger(0);
-        int totalQueries = classSnapshot.size(); // Only 1 lesson per class now
-
         String lessonToLoad = currentLesson != null ? currentLesson : lessons[0];
-        System.out.println("🏆 Leaderboards: Loading leaderboards for lesson: " + lessonToLoad + ", activity: " + currentActivityType);
+        String activityToLoad = currentActivityType;
+        System.out.println("🏆 Leaderboards: Loading leaderboards for lesson: " + lessonToLoad + ", activity: " + activityToLoad);
 
+        TopEntriesMerge merge = new TopEntriesMerge(GENERAL_LEADERBOARD_SIZE, classSnapshot.size(), lessonToLoad, activityToLoad);
         for (com.google.firebase.firestore.DocumentSnapshot classDoc : classSnapshot) {
             String classCode = classDoc.getId();
             System.out.println("🏆 Leaderboards: Loading leaderboard for class: " + classCode);
 
-            // Load leaderboard for selected lesson and activity type only (teacher: all)
-            loadClassLeaderboardTeacher(classCode, lessonToLoad, currentActivityType, completedQueries, totalQueries);
+            // Teacher: only the global top GENERAL_LEADERBOARD_SIZE is shown, so no class needs to send more
+            loadClassLeaderboard(classCode, lessonToLoad, activityToLoad, GENERAL_LEADERBOARD_SIZE, merge, generation);
         }
     }
 
-    private void loadClassLeaderboardStudent(String classCode, String lessonName, String activityType,
-                                      java.util.concurrent.atomic.AtomicInteger completedQueries, int totalQueries) {
-        System.out.println("🏆 Leaderboards (Student): Loading " + classCode + " " + lessonName + " " + activityType);
-
-        LeaderboardManager.getTopScores(classCode, lessonName, activityType,
-                new LeaderboardManager.OnLeaderboardCallback() {
-                    @Override
-                    public void onSuccess(List<LeaderboardManager.LeaderboardEntry> entries) {
-                        System.out.println("🏆 Leaderboards: Found " + entries.size() + " entries for " + classCode + " " + lessonName + " " + activityType);
-
-                        // Add class and lesson info to entries
-                        for (LeaderboardManager.LeaderboardEntry entry : entries) {
-                            entry.classCode = classCode;
-                            entry.lessonName = lessonName;
-                            entry.activityType = activityType;
-                        }
-                        leaderboardEntries.addAll(entries);
-
-                        int currentCompleted = completedQueries.incrementAndGet();
-                        System.out.println("🏆 Leaderboards: Completed " + currentCompleted + "/" + totalQueries + " queries");
-                        if (currentCompleted >= totalQueries) {
-                            // All queries completed, update UI
-                            System.out.println("🏆 Leaderboards: All queries completed, updating UI with " + leaderboardEntries.size() + " total entries");
-                            updateLeaderboardUI();
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        System.out.println("❌ Leaderboards: Failed to load " + classCode + " " + lessonName + " " + activityType + ": " + e.getMessage());
-
-                        int currentCompleted = completedQueries.incrementAndGet();
-                        System.out.println("🏆 Leaderboards: Completed " + currentCompleted + "/" + totalQueries + " queries (failed)");
-                        if (currentCompleted >= totalQueries) {
-                            // All queries completed, update UI
-                            System.out.println("🏆 Leaderboards: All queries completed, updating UI with " + leaderboardEntries.size() + " total entries");
-                            updateLeaderboardUI();
-                        }
-                    }
-                });
-    }
-
-    private void loadClassLeaderboardTeacher(String classCode, String lessonName, String activityType,
-                                      java.util.concurrent.atomic.AtomicInteger completedQueries, int totalQueries) {
-        System.out.println("🏆 Leaderboards (Teacher): Loading " + classCode + " " + lessonName + " " + activityType);
+    private void loadClassLeaderboard(String classCode, String lessonName, String activityType, int limit,
+                                      TopEntriesMerge merge, int generation) {
+        System.out.println("🏆 Leaderboards: Loading " + classCode + " " + lessonName + " " + activityType + " (top " + limit + ")");
 
-        LeaderboardManager.getAllScores(classCode, lessonName, activityType,
+        LeaderboardManager.getTopScores(classCode, lessonName, activityType, limit,
                 new LeaderboardManager.OnLeaderboardCallback() {
                     @Override
                     public void onSuccess(List<LeaderboardManager.LeaderboardEntry> entries) {
+                        if (generation != loadGeneration) return; // Tab changed, result no longer wanted
                         System.out.println("🏆 Leaderboards: Found " + entries.size() + " entries for " + classCode + " " + lessonName + " " + activityType);
 
                         // Add class and lesson info to entries
@@ -606,50 +750,50 @@ public class Leaderboards extends Fragment {
                             entry.lessonName = lessonName;
                             entry.activityType = activityType;
                         }
-                        leaderboardEntries.addAll(entries);
-
-                        int currentCompleted = completedQueries.incrementAndGet();
-                        System.out.println("🏆 Leaderboards: Completed " + currentCompleted + "/" + totalQueries + " queries");
-                        if (currentCompleted >= totalQueries) {
-                            // All queries completed, update UI
-                            System.out.println("🏆 Leaderboards: All queries completed, updating UI with " + leaderboardEntries.size() + " total entries");
-                            updateLeaderboardUI();
+                        boolean changed = merge.offer(entries);
+                        // Render as each class arrives, but only when the visible top list moved
+                        if (changed || merge.isComplete()) {
+                            updateLeaderboardUI(merge);
                         }
                     }
 
                     @Override
                     public void onFailure(Exception e) {
+                        if (generation != loadGeneration) return;
                         System.out.println("❌ Leaderboards: Failed to load " + classCode + " " + lessonName + " " + activityType + ": " + e.getMessage());
 
-                        int currentCompleted = completedQueries.incrementAndGet();
-                        System.out.println("🏆 Leaderboards: Completed " + currentCompleted + "/" + totalQueries + " queries (failed)");
-                        if (currentCompleted >= totalQueries) {
-                            // All queries completed, update UI
-                            System.out.println("🏆 Leaderboards: All queries completed, updating UI with " + leaderboardEntries.size() + " total entries");
-                            updateLeaderboardUI();
+                        merge.offer(new ArrayList<>());
+                        if (merge.isComplete()) {
+                            updateLeaderboardUI(merge);
                         }
                     }
                 });
     }
 
-    private void updateLeaderboardUI() {
+    private void updateLeaderboardUI(TopEntriesMerge merge) {
         if (!isAdded() || getActivity() == null) return;
 
-        System.out.println("🏆 Leaderboards: updateLeaderboardUI() called with " + leaderboardEntries.size() + " entries");
+        // A partial merge would look worse than the cached full list, so keep the cache until all classes report
+        if (showingCachedEntries && !merge.isComplete()) return;
 
-        // Sort by score (highest first)
-        leaderboardEntries.sort((a, b) -> Integer.compare(b.score, a.score));
+        List<LeaderboardManager.LeaderboardEntry> top = merge.snapshot();
+        System.out.println("🏆 Leaderboards: updateLeaderboardUI() with " + top.size() + " entries (" + merge.completed + "/" + merge.expected + " classes)");
 
-        // Keep only top 20 entries
-        if (leaderboardEntries.size() > 20) {
-            leaderboardEntries = leaderboardEntries.subList(0, 20);
-            System.out.println("🏆 Leaderboards: Trimmed to top 20 entries");
+        // The adapter holds leaderboardEntries, so refill it rather than replacing the list
+        showingCachedEntries = false;
+        leaderboardEntries.clear();
+        leaderboardEntries.addAll(top);
+        adapter.notifyDataSetChanged();
+        if (merge.isComplete()) {
+            LeaderboardCache.getInstance(requireContext()).put(LeaderboardCache.ALL_CLASSES, merge.lessonName, merge.activityType, top);
         }
 
-        adapter.notifyDataSetChanged();
+        if (!merge.isComplete() && top.isEmpty()) {
+            return; // Keep the loading state until something arrives
+        }
 
         // CRITICAL: Stop the swipe refresh animation
-        if (swipeRefreshLayout != null) {
+        if (swipeRefreshLayout != null && merge.isComplete()) {
             swipeRefreshLayout.setRefreshing(false);
             System.out.println("🏆 Leaderboards: Stopped swipe refresh animation");
         }
@@ -662,6 +806,8 @@ public class Leaderboards extends Fragment {
                 emptyStateText.setText("No code builder scores yet");
             } else if (currentActivityType.equals(LeaderboardManager.ACTIVITY_COMPILER)) {
                 emptyStateText.setText("No compiler scores yet");
+            } else if (currentActivityType.equals(LeaderboardManager.ACTIVITY_OVERALL)) {
+                emptyStateText.setText("No overall scores yet");
             } else {
                 emptyStateText.setText("No scores yet");
             }
@@ -673,4 +819,56 @@ public class Leaderboards extends Fragment {
             recyclerView.setVisibility(View.VISIBLE);
         }
     }
+
+    /**
+     * Keeps only the global top-K of several already-sorted class leaderboards.
+     * The heap's head is the weakest kept entry; each class list is consumed best-first
+     * and abandoned as soon as an entry cannot beat that head.
+     */
+    private static class TopEntriesMerge {
+        final int capacity;
+        final int expected;
+        final String lessonName;
+        final String activityType;
+        int completed = 0;
+        private final PriorityQueue<LeaderboardManager.LeaderboardEntry> heap;
+
+        TopEntriesMerge(int capacity, int expected, String lessonName, String activityType) {
+            this.capacity = capacity;
+            this.expected = expected;
+            this.lessonName = lessonName;
+            this.activityType = activityType;
+            this.heap = new PriorityQueue<>(capacity + 1, LeaderboardManager.ENTRY_ORDER.reversed());
+        }
+
+        /**
+         * Merge one class's sorted entries; returns true if the kept top-K changed
+         */
+        boolean offer(List<LeaderboardManager.LeaderboardEntry> sortedEntries) {
+            completed++;
+            boolean changed = false;
+            for (LeaderboardManager.LeaderboardEntry entry : sortedEntries) {
+                if (heap.size() < capacity) {
+                    heap.add(entry);
+                } else if (LeaderboardManager.ENTRY_ORDER.compare(entry, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(entry);
+                } else {
+                    break; // Rest of this class ranks lower still
+                }
+                changed = true;
+            }
+            return changed;
+        }
+
+        boolean isComplete() {
+            return completed >= expected;
+        }
+
+        List<LeaderboardManager.LeaderboardEntry> snapshot() {
+            List<LeaderboardManager.LeaderboardEntry> sorted = new ArrayList<>(heap);
+            sorted.sort(LeaderboardManager.ENTRY_ORDER);
+            return sorted;
+        }
+    }
 }
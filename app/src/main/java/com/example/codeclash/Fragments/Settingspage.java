@@ -13,7 +13,12 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.example.codeclash.AttemptLedger;
+import com.example.codeclash.LeaderboardCache;
+import com.example.codeclash.LessonGraph;
+import com.example.codeclash.JoinedClassRepository;
 import com.example.codeclash.R;
+import com.example.codeclash.ScoreLedger;
 import com.example.codeclash.LoginActivity; // Changed to LoginActivity
 import com.google.firebase.auth.FirebaseAuth; // Added Firebase Auth
 
@@ -63,6 +68,11 @@ public class Settingspage extends Fragment {
                     .edit()
                     .clear()
                     .apply();
+            LeaderboardCache.getInstance(getActivity()).clear();
+            ScoreLedger.getInstance(getActivity()).clear();
+            AttemptLedger.getInstance(getActivity()).clear();
+            LessonGraph.clear();
+            JoinedClassRepository.clear();
         }
 
         // Show logout success message
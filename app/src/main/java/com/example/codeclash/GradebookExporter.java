@@ -0,0 +1,236 @@
+package com.example.codeclash;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a class gradebook (student × lesson × activity score and attempt count) to a CSV file.
+ * Students are read one page at a time and each page is written out before the next is fetched,
+ * so memory stays bounded by the page size rather than the class size.
+ */
+public class GradebookExporter {
+    private static final String EXPORT_DIR = "exports";
+    private static final int STUDENT_PAGE_SIZE = 30; // Also the whereIn limit, so one query per board per page
+    private static final long QUERY_TIMEOUT_SECONDS = 30;
+
+    private static final String[] ACTIVITIES = {
+            LeaderboardManager.ACTIVITY_QUIZ,
+            LeaderboardManager.ACTIVITY_CODE_BUILDER,
+            LeaderboardManager.ACTIVITY_COMPILER
+    };
+
+    private static final String HEADER =
+            "student_id,student_name,year_level,block,lesson,activity,best_score,attempts_used";
+
+    public interface ExportCallback {
+        void onProgress(int studentsExported);
+        void onComplete(File file, int studentsExported);
+        void onFailure(Exception e);
+    }
+
+    // One export at a time; pages are fetched and written on this thread, never on the UI thread
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Export every student of the class for the given lessons. Callbacks arrive on the main thread.
+     */
+    public static void exportClass(Context context, String classCode, List<String> lessonNames, ExportCallback callback) {
+        if (classCode == null || lessonNames == null || lessonNames.isEmpty()) {
+            callback.onFailure(new IllegalArgumentException("Class code and lessons are required"));
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        List<String> lessons = new ArrayList<>(lessonNames);
+
+        executor.execute(() -> {
+            File file = createExportFile(appContext, classCode);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                int exported = writeGradebook(writer, classCode, lessons, callback);
+                writer.flush();
+                System.out.println("📄 GradebookExporter: Exported " + exported + " students to " + file.getAbsolutePath());
+                mainHandler.post(() -> callback.onComplete(file, exported));
+            } catch (Exception e) {
+                System.out.println("❌ GradebookExporter: Export failed for " + classCode + ": " + e.getMessage());
+                file.delete();
+                mainHandler.post(() -> callback.onFailure(e));
+            }
+        });
+    }
+
+    private static int writeGradebook(Writer writer, String classCode, List<String> lessons,
+                                      ExportCallback callback) throws Exception {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        CollectionReference students = db.collection("Classes").document(classCode).collection("Students");
+
+        writer.write(HEADER);
+        writer.write('\n');
+
+        int exported = 0;
+        DocumentSnapshot cursor = null;
+        while (true) {
+            Query query = students.orderBy(FieldPath.documentId()).limit(STUDENT_PAGE_SIZE);
+            if (cursor != null) {
+                query = query.startAfter(cursor);
+            }
+            List<DocumentSnapshot> page = await(query.get()).getDocuments();
+            if (page.isEmpty()) break;
+
+            writePage(writer, db, classCode, lessons, page);
+            exported += page.size();
+            cursor = page.get(page.size() - 1);
+
+            int progress = exported;
+            mainHandler.post(() -> callback.onProgress(progress));
+
+            if (page.size() < STUDENT_PAGE_SIZE) break;
+        }
+        return exported;
+    }
+
+    // Fetches the scores and attempts for one page of students, then writes their rows
+    private static void writePage(Writer writer, FirebaseFirestore db, String classCode,
+                                  List<String> lessons, List<DocumentSnapshot> page) throws Exception {
+        List<String> studentIds = new ArrayList<>();
+        for (DocumentSnapshot student : page) {
+            studentIds.add(student.getId());
+        }
+
+        // Issue every read for the page up front and wait once
+        Map<String, Task<QuerySnapshot>> scoreTasks = new HashMap<>();
+        List<Task<?>> pending = new ArrayList<>();
+        for (String lesson : lessons) {
+            for (String activity : ACTIVITIES) {
+                Task<QuerySnapshot> task = db.collection("Classes").document(classCode)
+                        .collection("Leaderboards").document(lesson + "_" + activity)
+                        .collection("Scores")
+                        .whereIn(FieldPath.documentId(), studentIds)
+                        .get();
+                scoreTasks.put(lesson + "_" + activity, task);
+                pending.add(task);
+            }
+        }
+        Map<String, Task<QuerySnapshot>> attemptTasks = new HashMap<>();
+        for (String studentId : studentIds) {
+            Task<QuerySnapshot> task = db.collection("Classes").document(classCode)
+                    .collection("Students").document(studentId)
+                    .collection("Attempts")
+                    .get();
+            attemptTasks.put(studentId, task);
+            pending.add(task);
+        }
+        await(Tasks.whenAll(pending));
+
+        // boardKey -> studentId -> best score
+        Map<String, Map<String, Long>> scores = new HashMap<>();
+        for (Map.Entry<String, Task<QuerySnapshot>> board : scoreTasks.entrySet()) {
+            Map<String, Long> byStudent = new HashMap<>();
+            for (DocumentSnapshot doc : board.getValue().getResult()) {
+                Long score = doc.getLong("score");
+                if (score != null) byStudent.put(doc.getId(), score);
+            }
+            scores.put(board.getKey(), byStudent);
+        }
+
+        for (DocumentSnapshot student : page) {
+            String studentId = student.getId();
+            String fullName = student.getString("fullName");
+            String yearLevel = "";
+            String block = "";
+            String yearBlock = student.getString("yearBlock");
+            if (yearBlock != null && yearBlock.contains(" - ")) {
+                String[] parts = yearBlock.split(" - ");
+                yearLevel = parts[0];
+                block = parts[1];
+            }
+
+            Map<String, Long> attempts = new HashMap<>();
+            for (DocumentSnapshot doc : attemptTasks.get(studentId).getResult()) {
+                Long used = doc.getLong("attemptsUsed");
+                if (used != null) attempts.put(doc.getId(), used);
+            }
+
+            for (String lesson : lessons) {
+                for (String activity : ACTIVITIES) {
+                    String boardKey = lesson + "_" + activity;
+                    Long score = scores.get(boardKey).get(studentId);
+                    Long used = attempts.get(boardKey);
+
+                    writer.write(csv(studentId));
+                    writer.write(',');
+                    writer.write(csv(fullName));
+                    writer.write(',');
+                    writer.write(csv(yearLevel));
+                    writer.write(',');
+                    writer.write(csv(block));
+                    writer.write(',');
+                    writer.write(csv(lesson));
+                    writer.write(',');
+                    writer.write(activity);
+                    writer.write(',');
+                    writer.write(score != null ? String.valueOf(score) : "");
+                    writer.write(',');
+                    writer.write(String.valueOf(used != null ? used : 0L));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static File createExportFile(Context context, String classCode) {
+        File base = context.getExternalFilesDir(EXPORT_DIR);
+        if (base == null) {
+            base = new File(context.getFilesDir(), EXPORT_DIR);
+        }
+        if (!base.exists() && !base.mkdirs()) {
+            System.out.println("⚠️ GradebookExporter: Could not create " + base.getAbsolutePath());
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        String safeCode = classCode.replaceAll("[^A-Za-z0-9_-]", "_");
+        return new File(base, "gradebook_" + safeCode + "_" + stamp + ".csv");
+    }
+
+    // RFC 4180 quoting; fields that could be read as spreadsheet formulas are prefixed with a quote
+    private static String csv(String value) {
+        if (value == null) return "";
+        String escaped = value;
+        if (!escaped.isEmpty() && "=+-@".indexOf(escaped.charAt(0)) >= 0) {
+            escaped = "'" + escaped;
+        }
+        if (escaped.contains(",") || escaped.contains("\"") || escaped.contains("\n") || escaped.contains("\r")) {
+            escaped = "\"" + escaped.replace("\"", "\"\"") + "\"";
+        }
+        return escaped;
+    }
+}
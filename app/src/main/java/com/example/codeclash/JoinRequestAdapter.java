@@ -4,17 +4,23 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public class JoinRequestAdapter extends RecyclerView.Adapter<JoinRequestAdapter.JoinRequestViewHolder> {
     private List<TeacherApprovalActivity.JoinRequest> joinRequests;
     private OnRequestActionListener actionListener;
+    private final Set<String> selectedRequestIds = new HashSet<>();
+    private Runnable selectionChangedListener;
     
     public interface OnRequestActionListener {
         void onRequestAction(TeacherApprovalActivity.JoinRequest request, String action);
@@ -25,6 +31,27 @@ public class JoinRequestAdapter extends RecyclerView.Adapter<JoinRequestAdapter.
         this.actionListener = actionListener;
     }
     
+    public void setOnSelectionChangedListener(Runnable listener) {
+        this.selectionChangedListener = listener;
+    }
+    
+    /**
+     * Checked requests that are still in the list
+     */
+    public List<TeacherApprovalActivity.JoinRequest> getSelectedRequests() {
+        List<TeacherApprovalActivity.JoinRequest> selected = new ArrayList<>();
+        for (TeacherApprovalActivity.JoinRequest request : joinRequests) {
+            if (selectedRequestIds.contains(request.getRequestId())) selected.add(request);
+        }
+        return selected;
+    }
+    
+    public void clearSelection() {
+        selectedRequestIds.clear();
+        notifyDataSetChanged();
+        if (selectionChangedListener != null) selectionChangedListener.run();
+    }
+    
     @NonNull
     @Override
     public JoinRequestViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -48,6 +75,7 @@ public class JoinRequestAdapter extends RecyclerView.Adapter<JoinRequestAdapter.
         private TextView requestTimeText;
         private Button approveButton;
         private Button rejectButton;
+        private CheckBox selectCheckBox;
         
         public JoinRequestViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -55,6 +83,7 @@ public class JoinRequestAdapter extends RecyclerView.Adapter<JoinRequestAdapter.
             requestTimeText = itemView.findViewById(R.id.requestTimeText);
             approveButton = itemView.findViewById(R.id.approveButton);
             rejectButton = itemView.findViewById(R.id.rejectButton);
+            selectCheckBox = itemView.findViewById(R.id.selectCheckBox);
         }
         
         public void bind(TeacherApprovalActivity.JoinRequest request) {
@@ -65,6 +94,18 @@ public class JoinRequestAdapter extends RecyclerView.Adapter<JoinRequestAdapter.
             String formattedTime = sdf.format(new Date(request.getRequestTime()));
             requestTimeText.setText("Requested: " + formattedTime);
             
+            // Selection for bulk approve/reject
+            selectCheckBox.setOnCheckedChangeListener(null);
+            selectCheckBox.setChecked(selectedRequestIds.contains(request.getRequestId()));
+            selectCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                if (isChecked) {
+                    selectedRequestIds.add(request.getRequestId());
+                } else {
+                    selectedRequestIds.remove(request.getRequestId());
+                }
+                if (selectionChangedListener != null) selectionChangedListener.run();
+            });
+            
             // Set button listeners
             approveButton.setOnClickListener(v -> {
                 if (actionListener != null) {
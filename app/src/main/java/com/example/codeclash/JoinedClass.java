@@ -4,6 +4,9 @@ public class JoinedClass {
     private String classCode;
     private String yearLevel;
     private String block;
+    private String teacherId;
+    private String teacherName;
+    private int lessonCount = -1; // -1 when unknown
 
     public JoinedClass() {
         // Needed for Firestore
@@ -15,6 +18,18 @@ public class JoinedClass {
         this.block = block;
     }
 
+    public JoinedClass(String classCode, String yearLevel, String block, String teacherId, String teacherName) {
+        this(classCode, yearLevel, block);
+        this.teacherId = teacherId;
+        this.teacherName = teacherName;
+    }
+
+    public JoinedClass(String classCode, String yearLevel, String block, String teacherId, String teacherName,
+                       int lessonCount) {
+        this(classCode, yearLevel, block, teacherId, teacherName);
+        this.lessonCount = lessonCount;
+    }
+
     public String getClassCode() {
         return classCode;
     }
@@ -26,4 +41,16 @@ public class JoinedClass {
     public String getBlock() {
         return block;
     }
+
+    public String getTeacherId() {
+        return teacherId;
+    }
+
+    public String getTeacherName() {
+        return teacherName;
+    }
+
+    public int getLessonCount() {
+        return lessonCount;
+    }
 }
@@ -39,7 +39,7 @@ public class JoinedClassAdapter extends RecyclerView.Adapter<JoinedClassAdapter.
     }
 
     public static class ClassViewHolder extends RecyclerView.ViewHolder {
-        TextView tvClassCode, tvYearBlock, tvTeacherName, tvClassCodeDisplay;
+        TextView tvClassCode, tvYearBlock, tvTeacherName, tvClassCodeDisplay, tvLessonCount;
         View btnLessons, btnLeaveClass;
 
         public ClassViewHolder(@NonNull View itemView) {
@@ -48,6 +48,7 @@ public class JoinedClassAdapter extends RecyclerView.Adapter<JoinedClassAdapter.
             tvYearBlock = itemView.findViewById(R.id.tvYearBlock);
             tvTeacherName = itemView.findViewById(R.id.tvTeacherName);
             tvClassCodeDisplay = itemView.findViewById(R.id.tvClassCodeDisplay);
+            tvLessonCount = itemView.findViewById(R.id.tvLessonCount);
 
             btnLessons = itemView.findViewById(R.id.btnLessons);
             btnLeaveClass = itemView.findViewById(R.id.btnLeaveClass);
@@ -69,11 +70,18 @@ public class JoinedClassAdapter extends RecyclerView.Adapter<JoinedClassAdapter.
         holder.tvYearBlock.setText("Year " + joinedClass.getYearLevel() + " • Block " + joinedClass.getBlock());
         holder.tvClassCodeDisplay.setText("Class Code: " + joinedClass.getClassCode());
         
-        // Load teacher name for this class
-        loadTeacherName(joinedClass.getClassCode(), holder.tvTeacherName);
+        // Teacher name was resolved with the rest of the list by JoinedClassRepository
+        String teacherName = joinedClass.getTeacherName();
+        holder.tvTeacherName.setText("Teacher: " + (teacherName != null ? teacherName : "Unknown"));
         
-        // Set progress (demo: 2/6 lessons completed)
-
+        // Lesson count comes from the class summary on the membership doc
+        int lessonCount = joinedClass.getLessonCount();
+        if (lessonCount >= 0) {
+            holder.tvLessonCount.setText("📚 " + lessonCount + (lessonCount == 1 ? " lesson" : " lessons"));
+            holder.tvLessonCount.setVisibility(View.VISIBLE);
+        } else {
+            holder.tvLessonCount.setVisibility(View.GONE);
+        }
         
         // Lessons button with animation
         holder.btnLessons.setOnClickListener(v -> {
@@ -107,38 +115,6 @@ public class JoinedClassAdapter extends RecyclerView.Adapter<JoinedClassAdapter.
         });
     }
 
-    private void loadTeacherName(String classCode, TextView teacherTextView) {
-        // First get the class document to find the teacher ID
-        db.collection("Classes").document(classCode)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        String teacherId = documentSnapshot.getString("createdBy");
-                        if (teacherId != null && !teacherId.isEmpty()) {
-                            // Use UserNameManager to get teacher name
-                            UserNameManager.getTeacherName(teacherId, new UserNameManager.NameCallback() {
-                                @Override
-                                public void onSuccess(String teacherName) {
-                                    teacherTextView.setText("Teacher: " + teacherName);
-                                }
-                                
-                                @Override
-                                public void onFailure(String fallbackName) {
-                                    teacherTextView.setText("Teacher: " + fallbackName);
-                                }
-                            });
-                        } else {
-                            teacherTextView.setText("Teacher: Unknown");
-                        }
-                    } else {
-                        teacherTextView.setText("Teacher: Unknown");
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    teacherTextView.setText("Teacher: Unknown");
-                });
-    }
-
     private void showLeaveClassConfirmation(JoinedClass joinedClass, int position, android.content.Context context) {
         new AlertDialog.Builder(context)
             .setTitle("🚪 Leave Class")
@@ -0,0 +1,140 @@
+package com.example.codeclash;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the student's joined-class cards (year, block, teacher) in a fixed number of round trips:
+ * MyJoinedClasses, then (for memberships without a denormalized summary) the Classes docs through
+ * chunked whereIn(documentId) queries, then any missing teacher names through one bulk lookup.
+ * The finished view models are cached per student so screens can render immediately and
+ * adapters bind from memory.
+ */
+public class JoinedClassRepository {
+
+    // studentId -> last resolved class cards, in MyJoinedClasses order
+    private static final Map<String, List<JoinedClass>> cache = new HashMap<>();
+
+    public interface OnJoinedClassesCallback {
+        void onSuccess(List<JoinedClass> classes);
+        void onFailure(Exception e);
+    }
+
+    private static FirebaseFirestore getDb() {
+        return FirebaseFirestore.getInstance();
+    }
+
+    /**
+     * Last resolved cards for the student, or null if nothing has been loaded yet
+     */
+    public static synchronized List<JoinedClass> getCached(String studentId) {
+        List<JoinedClass> classes = cache.get(studentId);
+        return classes != null ? new ArrayList<>(classes) : null;
+    }
+
+    public static synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Read MyJoinedClasses and resolve it into class cards
+     */
+    public static void load(String studentId, OnJoinedClassesCallback callback) {
+        getDb().collection("Users").document(studentId)
+                .collection("MyJoinedClasses")
+                .get()
+                .addOnSuccessListener(snapshot -> resolve(studentId, snapshot.getDocuments(), callback))
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ JoinedClassRepository: Failed to load MyJoinedClasses: " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    /**
+     * Resolve MyJoinedClasses documents (e.g. from a snapshot listener) into class cards.
+     * Memberships carrying a denormalized summary are used as-is; only the others need their class doc.
+     */
+    public static void resolve(String studentId, List<DocumentSnapshot> memberships, OnJoinedClassesCallback callback) {
+        List<String> classCodes = new ArrayList<>();
+        Map<String, DocumentSnapshot> membershipByCode = new HashMap<>();
+        List<String> withoutSummary = new ArrayList<>();
+        Set<String> teacherIds = new HashSet<>();
+        for (DocumentSnapshot membership : memberships) {
+            classCodes.add(membership.getId());
+            membershipByCode.put(membership.getId(), membership);
+            if (!hasSummary(membership)) {
+                withoutSummary.add(membership.getId());
+            } else if (membership.getString("teacherName") == null && membership.getString("teacherId") != null) {
+                teacherIds.add(membership.getString("teacherId"));
+            }
+        }
+        if (classCodes.isEmpty()) {
+            store(studentId, Collections.emptyList());
+            callback.onSuccess(new ArrayList<>());
+            return;
+        }
+
+        Task<Map<String, DocumentSnapshot>> classReads = withoutSummary.isEmpty()
+                ? Tasks.<Map<String, DocumentSnapshot>>forResult(new HashMap<>())
+                : fetchClassDocs(withoutSummary);
+        classReads.addOnCompleteListener(done -> {
+            Map<String, DocumentSnapshot> classDocs = done.isSuccessful() ? done.getResult() : new HashMap<>();
+            for (DocumentSnapshot classDoc : classDocs.values()) {
+                String teacherId = classDoc.getString("createdBy");
+                if (teacherId != null && !teacherId.isEmpty()) teacherIds.add(teacherId);
+            }
+
+            UserNameManager.getUserNames(teacherIds, teacherNames -> {
+                List<JoinedClass> classes = new ArrayList<>();
+                for (String classCode : classCodes) {
+                    DocumentSnapshot membership = membershipByCode.get(classCode);
+                    DocumentSnapshot classDoc = classDocs.get(classCode);
+                    if (hasSummary(membership)) {
+                        String teacherId = membership.getString("teacherId");
+                        String teacherName = membership.getString("teacherName");
+                        if (teacherName == null && teacherId != null) teacherName = teacherNames.get(teacherId);
+                        Long lessonCount = membership.getLong("lessonCount");
+                        classes.add(new JoinedClass(classCode, membership.getString("yearLevel"), membership.getString("block"),
+                                teacherId, teacherName, lessonCount != null ? lessonCount.intValue() : -1));
+                    } else if (classDoc != null) {
+                        String teacherId = classDoc.getString("createdBy");
+                        classes.add(new JoinedClass(classCode, classDoc.getString("yearLevel"), classDoc.getString("block"),
+                                teacherId, teacherId != null ? teacherNames.get(teacherId) : null,
+                                LessonManager.readLessonOrder(classDoc).size()));
+                    } else {
+                        // Class doc unreadable; fall back to what the membership recorded
+                        classes.add(new JoinedClass(classCode, membership.getString("yearLevel"), membership.getString("block")));
+                    }
+                }
+                System.out.println("📚 JoinedClassRepository: Resolved " + classes.size() + " classes ("
+                        + withoutSummary.size() + " without a summary) for " + studentId);
+                store(studentId, classes);
+                callback.onSuccess(classes);
+            });
+        });
+    }
+
+    private static boolean hasSummary(DocumentSnapshot membership) {
+        return membership.contains(ClassSummaryManager.FIELD_SUMMARY_UPDATED_AT);
+    }
+
+    private static synchronized void store(String studentId, List<JoinedClass> classes) {
+        cache.put(studentId, new ArrayList<>(classes));
+    }
+
+    // classCode -> existing class doc. Chunks the rules refuse to list fall back to per-document gets.
+    private static Task<Map<String, DocumentSnapshot>> fetchClassDocs(List<String> classCodes) {
+        return FirestoreChunks.readByIds(getDb().collection("Classes"), classCodes)
+                .continueWith(read -> read.getResult().documents);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.codeclash;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * On-device store of the last leaderboard shown per (classCode, lesson, activity)
+ * Screens render it immediately and then replace it with fresh data (stale-while-revalidate).
+ * Holds at most MAX_LEADERBOARDS lists; the least recently used one is evicted first.
+ * Recency is tracked in memory on every read and written to disk with the next put.
+ */
+public class LeaderboardCache {
+    private static final String PREFS_NAME = "leaderboard_cache";
+    private static final String KEY_INDEX = "lru_index";
+    private static final String KEY_PREFIX = "board_";
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_LEADERBOARDS = 40;
+
+    // Class code used for the cross-class (general) leaderboard
+    public static final String ALL_CLASSES = "*";
+
+    private static LeaderboardCache instance;
+    private final SharedPreferences preferences;
+    // Access-ordered: iteration starts at the least recently used key
+    private final LinkedHashMap<String, CachedLeaderboard> boards = new LinkedHashMap<>(16, 0.75f, true);
+
+    public static class CachedLeaderboard {
+        public final List<LeaderboardManager.LeaderboardEntry> entries;
+        public final long savedAt;
+
+        CachedLeaderboard(List<LeaderboardManager.LeaderboardEntry> entries, long savedAt) {
+            this.entries = entries;
+            this.savedAt = savedAt;
+        }
+    }
+
+    private LeaderboardCache(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        loadIndex();
+    }
+
+    public static synchronized LeaderboardCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new LeaderboardCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Last saved leaderboard, or null if none is cached
+     */
+    public synchronized CachedLeaderboard get(String classCode, String lessonName, String activityType) {
+        String key = key(classCode, lessonName, activityType);
+        if (!boards.containsKey(key)) return null;
+
+        CachedLeaderboard board = boards.get(key);
+        if (board == null) {
+            board = readBoard(key);
+            if (board == null) {
+                boards.remove(key);
+                saveIndex();
+                return null;
+            }
+            boards.put(key, board);
+        }
+        // Access order is only persisted by the next put(); reads stay free of disk writes
+        return new CachedLeaderboard(copyEntries(board.entries), board.savedAt);
+    }
+
+    public synchronized void put(String classCode, String lessonName, String activityType,
+                                 List<LeaderboardManager.LeaderboardEntry> entries) {
+        String key = key(classCode, lessonName, activityType);
+        CachedLeaderboard board = new CachedLeaderboard(copyEntries(entries), System.currentTimeMillis());
+        boards.put(key, board);
+
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putString(KEY_PREFIX + key, toJson(board));
+
+        Iterator<String> eldest = boards.keySet().iterator();
+        while (boards.size() > MAX_LEADERBOARDS && eldest.hasNext()) {
+            String evicted = eldest.next();
+            eldest.remove();
+            editor.remove(KEY_PREFIX + evicted);
+            System.out.println("🗂️ LeaderboardCache: Evicted " + evicted);
+        }
+        editor.putString(KEY_INDEX, new JSONArray(new ArrayList<>(boards.keySet())).toString());
+        editor.apply();
+    }
+
+    /**
+     * Clear everything (useful for logout/login scenarios)
+     */
+    public synchronized void clear() {
+        boards.clear();
+        preferences.edit().clear().apply();
+    }
+
+    private static String key(String classCode, String lessonName, String activityType) {
+        return classCode + "|" + lessonName + "|" + activityType;
+    }
+
+    // Only the key order is read at startup; entry lists are parsed on first use
+    private void loadIndex() {
+        String raw = preferences.getString(KEY_INDEX, null);
+        if (raw == null) return;
+        try {
+            JSONArray index = new JSONArray(raw);
+            for (int i = 0; i < index.length(); i++) {
+                boards.put(index.getString(i), null);
+            }
+        } catch (JSONException e) {
+            System.out.println("❌ LeaderboardCache: Corrupt index, starting empty: " + e.getMessage());
+            preferences.edit().clear().apply();
+            boards.clear();
+        }
+    }
+
+    private void saveIndex() {
+        preferences.edit()
+                .putString(KEY_INDEX, new JSONArray(new ArrayList<>(boards.keySet())).toString())
+                .apply();
+    }
+
+    private CachedLeaderboard readBoard(String key) {
+        String raw = preferences.getString(KEY_PREFIX + key, null);
+        if (raw == null) return null;
+        try {
+            JSONObject json = new JSONObject(raw);
+            if (json.optInt("version") != FORMAT_VERSION) return null;
+
+            List<LeaderboardManager.LeaderboardEntry> entries = new ArrayList<>();
+            JSONArray array = json.getJSONArray("entries");
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                LeaderboardManager.LeaderboardEntry entry = new LeaderboardManager.LeaderboardEntry(
+                        item.optString("studentId", null),
+                        item.optString("studentName", null),
+                        item.getInt("score"),
+                        item.getInt("attemptsUsed"));
+                entry.classCode = item.optString("classCode", null);
+                entry.lessonName = item.optString("lessonName", null);
+                entry.activityType = item.optString("activityType", null);
+                entries.add(entry);
+            }
+            return new CachedLeaderboard(entries, json.getLong("savedAt"));
+        } catch (JSONException e) {
+            System.out.println("❌ LeaderboardCache: Failed to read " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String toJson(CachedLeaderboard board) {
+        try {
+            JSONArray array = new JSONArray();
+            for (LeaderboardManager.LeaderboardEntry entry : board.entries) {
+                JSONObject item = new JSONObject();
+                item.put("studentId", entry.studentId);
+                item.put("studentName", entry.studentName);
+                item.put("score", entry.score);
+                item.put("attemptsUsed", entry.attemptsUsed);
+                item.put("classCode", entry.classCode);
+                item.put("lessonName", entry.lessonName);
+                item.put("activityType", entry.activityType);
+                array.put(item);
+            }
+            JSONObject json = new JSONObject();
+            json.put("version", FORMAT_VERSION);
+            json.put("savedAt", board.savedAt);
+            json.put("entries", array);
+            return json.toString();
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    // Entries are mutable, so callers never share instances with the cache
+    private static List<LeaderboardManager.LeaderboardEntry> copyEntries(List<LeaderboardManager.LeaderboardEntry> entries) {
+        List<LeaderboardManager.LeaderboardEntry> copy = new ArrayList<>();
+        for (LeaderboardManager.LeaderboardEntry entry : entries) {
+            LeaderboardManager.LeaderboardEntry clone = new LeaderboardManager.LeaderboardEntry(
+                    entry.studentId, entry.studentName, entry.score, entry.attemptsUsed);
+            clone.classCode = entry.classCode;
+            clone.lessonName = entry.lessonName;
+            clone.activityType = entry.activityType;
+            copy.add(clone);
+        }
+        return copy;
+    }
+}
@@ -1,16 +1,31 @@
 package com.example.codeclash;
 
+import android.content.Context;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
 import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class LeaderboardManager {
     private static FirebaseFirestore db = null;
@@ -33,10 +48,61 @@ public class LeaderboardManager {
     public static final String ACTIVITY_QUIZ = "quiz";
     public static final String ACTIVITY_CODE_BUILDER = "code_builder";
     public static final String ACTIVITY_COMPILER = "compiler";
+    // Per-lesson composite of the three activities above, stored as its own leaderboard
+    public static final String ACTIVITY_OVERALL = "overall";
+    
+    // Activities that feed the overall leaderboard, with their maximum score and weight (weights sum to 100)
+    private static final String[] OVERALL_ACTIVITIES = {ACTIVITY_QUIZ, ACTIVITY_CODE_BUILDER, ACTIVITY_COMPILER};
+    private static final int[] OVERALL_MAX_SCORES = {15, 25, 100};
+    private static final int[] OVERALL_WEIGHTS = {30, 30, 40};
+    // Passing thresholds in the same order: quiz 8/15, code builder 15/25, compiler 50/100
+    private static final int[] PASSING_SCORES = {8, 15, 50};
     
     // Maximum attempts per activity
     public static final int MAX_ATTEMPTS = 3;
     
+    // Number of entries kept in the per-activity rollup document
+    // (Classes/{code}/Leaderboards/{lesson_activity}), which leaderboard screens read instead of Scores
+    public static final int ROLLUP_SIZE = 100;
+    
+    // Set on a lesson's overall rollup once rebuildOverallScores has folded in every earlier score
+    private static final String FIELD_OVERALL_BUILT = "overallBuilt";
+    
+    // Highest score first, fewer attempts breaks ties
+    public static final Comparator<LeaderboardEntry> ENTRY_ORDER = (a, b) -> {
+        int scoreCompare = Integer.compare(b.score, a.score);
+        if (scoreCompare != 0) return scoreCompare;
+        return Integer.compare(a.attemptsUsed, b.attemptsUsed);
+    };
+    
+    private static DocumentReference leaderboardDoc(String classCode, String lessonName, String activityType) {
+        return getDb().collection("Classes").document(classCode)
+                .collection("Leaderboards").document(lessonName + "_" + activityType);
+    }
+    
+    private static DocumentReference scoreDoc(String classCode, String lessonName, String activityType, String studentId) {
+        return leaderboardDoc(classCode, lessonName, activityType)
+                .collection("Scores").document(studentId);
+    }
+    
+    // Score submissions waiting for the in-flight transaction on the same student/activity key
+    private static final Map<String, PendingScore> pendingScores = new HashMap<>();
+    
+    // Lessons (class/lesson) whose overall rebuild is running on this device
+    private static final Set<String> overallRebuilds = new HashSet<>();
+    
+    // Keeps submissions until their transaction commits; null until init() is called
+    private static ScoreLedger scoreLedger;
+    
+    /**
+     * Enable the on-device score ledger and replay scores left unconfirmed by a previous session
+     */
+    public static void init(Context context) {
+        if (scoreLedger != null) return;
+        scoreLedger = ScoreLedger.getInstance(context);
+        scoreLedger.replay();
+    }
+    
     /**
      * Record a student's score for an activity
      * Only keeps the highest score if multiple attempts exist
@@ -53,164 +119,556 @@ public class LeaderboardManager {
             return;
         }
         
-        // Compiler activity is now scored (manual grading by teacher)
-        // No longer skipping compiler activity
+        // While a transaction for this key is in flight, fold the new result into the next write
+        // instead of starting another one; only the final best result reaches Firestore
+        String key = classCode + "/" + lessonName + "_" + activityType + "/" + studentId;
+        PendingScore submission = new PendingScore(studentName, score, attemptsUsed);
+        if (scoreLedger != null) {
+            // On disk before the transaction starts, so a failed or interrupted write can be replayed
+            ScoreLedger.Entry saved = scoreLedger.get(key);
+            PendingScore best = saved != null
+                    ? new PendingScore(saved.studentName, saved.score, saved.attemptsUsed).merge(submission)
+                    : submission;
+            scoreLedger.put(key, new ScoreLedger.Entry(classCode, lessonName, activityType, studentId,
+                    best.studentName, best.score, best.attemptsUsed));
+        }
+        synchronized (pendingScores) {
+            if (pendingScores.containsKey(key)) {
+                PendingScore queued = pendingScores.get(key);
+                pendingScores.put(key, queued == null ? submission : queued.merge(submission));
+                System.out.println("🏆 LeaderboardManager: Coalesced score submission for " + key);
+                return;
+            }
+            // Mark the key as in flight with nothing queued behind it
+            pendingScores.put(key, null);
+        }
         
-        // Check if student already has a score for this activity
-        getDb().collection("Classes").document(classCode)
-          .collection("Leaderboards").document(lessonName + "_" + activityType)
-          .collection("Scores").document(studentId)
-          .get()
-          .addOnSuccessListener(documentSnapshot -> {
+        writeBestScore(classCode, lessonName, activityType, studentId, key, submission);
+    }
+    
+    /**
+     * Compare-and-keep-best in one transaction: reads the existing score and the rollup,
+     * then writes both only if something changed. Afterwards flushes any coalesced submission.
+     * A transient failure leaves the submission in the ScoreLedger for a later replay; a permanent
+     * one (no longer on the roster, permission denied, class gone) drops it.
+     */
+    private static void writeBestScore(String classCode, String lessonName, String activityType,
+                                       String studentId, String key, PendingScore submission) {
+        String path = "Classes/" + classCode + "/Leaderboards/" + lessonName + "_" + activityType + "/Scores/" + studentId;
+        DocumentReference rollupRef = leaderboardDoc(classCode, lessonName, activityType);
+        DocumentReference scoreRef = scoreDoc(classCode, lessonName, activityType, studentId);
+        boolean feedsOverall = overallIndex(activityType) >= 0;
+        DocumentReference overallRollupRef = leaderboardDoc(classCode, lessonName, ACTIVITY_OVERALL);
+        DocumentReference overallScoreRef = scoreDoc(classCode, lessonName, ACTIVITY_OVERALL, studentId);
+        DocumentReference rosterRef = getDb().collection("Classes").document(classCode)
+                .collection("Students").document(studentId);
+        boolean[] written = {false};
+        
+        getDb().runTransaction(transaction -> {
+              // Transactions must read everything before the first write
+              DocumentSnapshot rosterSnapshot = transaction.get(rosterRef);
+              if (!rosterSnapshot.exists()) {
+                  // Removed (or left) since the attempt: never recreate their leaderboard data
+                  throw new FirebaseFirestoreException("Student " + studentId + " is not in class " + classCode,
+                          FirebaseFirestoreException.Code.NOT_FOUND);
+              }
+              DocumentSnapshot rollupSnapshot = transaction.get(rollupRef);
+              DocumentSnapshot documentSnapshot = transaction.get(scoreRef);
+              DocumentSnapshot overallRollupSnapshot = feedsOverall ? transaction.get(overallRollupRef) : null;
+              DocumentSnapshot overallSnapshot = feedsOverall ? transaction.get(overallScoreRef) : null;
+              // First overall doc for this student: seed it from their other activities so the composite is complete
+              Map<String, DocumentSnapshot> otherActivityScores = new HashMap<>();
+              if (feedsOverall && !overallSnapshot.exists()) {
+                  for (String activity : OVERALL_ACTIVITIES) {
+                      if (activity.equals(activityType)) continue;
+                      otherActivityScores.put(activity, transaction.get(scoreDoc(classCode, lessonName, activity, studentId)));
+                  }
+              }
               
+              PendingScore result = submission;
               if (documentSnapshot.exists()) {
-                  // Student already has a score
-                  int existingScore = documentSnapshot.getLong("score").intValue();
-                  int existingAttempts = documentSnapshot.getLong("attemptsUsed").intValue();
+                  Long existingScore = documentSnapshot.getLong("score");
+                  Long existingAttempts = documentSnapshot.getLong("attemptsUsed");
+                  String existingName = documentSnapshot.getString("studentName");
+                  PendingScore existing = new PendingScore(
+                          existingName != null ? existingName : submission.studentName,
+                          existingScore != null ? existingScore.intValue() : 0,
+                          existingAttempts != null ? existingAttempts.intValue() : 0);
                   
-                  // Always update attemptsUsed to reflect current attempt count
-                  // But only update score if it's better
-                  if (score > existingScore) {
-                      // Update with higher score and current attempts
-                      updateScore(classCode, lessonName, activityType, studentId, studentName, score, attemptsUsed);
-                  } else if (score == existingScore && attemptsUsed < existingAttempts) {
-                      // Same score but fewer attempts used
-                      updateScore(classCode, lessonName, activityType, studentId, studentName, score, attemptsUsed);
-                  } else if (attemptsUsed != existingAttempts) {
-                      // Score didn't improve, but attempts changed - update attempts only
-                      // Using set() instead of update() ensures listeners are always triggered
-                      updateAttemptsOnly(classCode, lessonName, activityType, studentId, attemptsUsed);
-                  }
+                  result = existing.merge(submission);
                   // If score and attempts are both the same, no update needed
+                  if (existingScore != null && existingAttempts != null
+                          && result.score == existing.score && result.attemptsUsed == existing.attemptsUsed) {
+                      return result;
+                  }
+              }
+              
+              Map<String, Object> scoreData = new HashMap<>();
+              scoreData.put("studentId", studentId);
+              scoreData.put("studentName", result.studentName);
+              scoreData.put("score", result.score);
+              scoreData.put("attemptsUsed", result.attemptsUsed);
+              scoreData.put("timestamp", System.currentTimeMillis());
+              System.out.println("🏆 LeaderboardManager: Writing score → " + path + " data=" + scoreData);
+              
+              // Using set() instead of update() ensures listeners are always triggered
+              transaction.set(scoreRef, scoreData);
+              writeRollup(transaction, rollupRef, rollupSnapshot,
+                      new LeaderboardEntry(studentId, result.studentName, result.score, result.attemptsUsed));
+              
+              if (feedsOverall) {
+                  Map<String, Object> overallData = overallSnapshot.exists() && overallSnapshot.getData() != null
+                          ? new HashMap<>(overallSnapshot.getData()) : new HashMap<>();
+                  for (Map.Entry<String, DocumentSnapshot> other : otherActivityScores.entrySet()) {
+                      DocumentSnapshot otherScore = other.getValue();
+                      Long score = otherScore.exists() ? otherScore.getLong("score") : null;
+                      if (score == null) continue;
+                      Long attempts = otherScore.getLong("attemptsUsed");
+                      overallData.put("score_" + other.getKey(), score);
+                      overallData.put("attempts_" + other.getKey(), attempts != null ? attempts : 0L);
+                  }
+                  overallData.put("studentId", studentId);
+                  overallData.put("studentName", result.studentName);
+                  overallData.put("score_" + activityType, result.score);
+                  overallData.put("attempts_" + activityType, result.attemptsUsed);
+                  LeaderboardEntry overallEntry = applyOverallComposite(studentId, result.studentName, overallData);
+                  
+                  transaction.set(overallScoreRef, overallData);
+                  writeRollup(transaction, overallRollupRef, overallRollupSnapshot, overallEntry);
+              }
+              written[0] = true;
+              return result;
+          })
+          .addOnSuccessListener(stored -> {
+              System.out.println(written[0]
+                      ? "✅ LeaderboardManager: Score write success: " + path
+                      : "🏆 LeaderboardManager: Score unchanged, nothing written: " + path);
+              if (scoreLedger != null) {
+                  scoreLedger.acknowledge(key, stored.score, stored.attemptsUsed);
+              }
+          })
+          .addOnFailureListener(e -> {
+              boolean retry = isTransient(e);
+              System.out.println("❌ LeaderboardManager: Score write FAILED: " + path + " error=" + e.getMessage()
+                      + (scoreLedger != null ? (retry ? " (kept for retry)" : " (dropped)") : ""));
+              if (scoreLedger == null) return;
+              // Offline or contended: the ledger still holds the submission and replays it later
+              if (retry) {
+                  scoreLedger.scheduleRetry();
               } else {
-                  // First attempt, record the score
-                  updateScore(classCode, lessonName, activityType, studentId, studentName, score, attemptsUsed);
+                  scoreLedger.discard(key);
               }
+          })
+          .addOnCompleteListener(task -> {
+              PendingScore next;
+              synchronized (pendingScores) {
+                  next = pendingScores.get(key);
+                  if (next == null) {
+                      pendingScores.remove(key);
+                      return;
+                  }
+                  pendingScores.put(key, null);
+              }
+              writeBestScore(classCode, lessonName, activityType, studentId, key, next);
           });
     }
     
-    private static void updateScore(String classCode, String lessonName, String activityType,
-                                   String studentId, String studentName, int score, int attemptsUsed) {
+    // Only these can succeed on a later replay; anything else would fail the same way forever
+    private static boolean isTransient(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) return false;
+        FirebaseFirestoreException.Code code = ((FirebaseFirestoreException) e).getCode();
+        return code == FirebaseFirestoreException.Code.UNAVAILABLE
+                || code == FirebaseFirestoreException.Code.ABORTED
+                || code == FirebaseFirestoreException.Code.DEADLINE_EXCEEDED;
+    }
+    
+    /**
+     * Minimum score that counts as passing the activity, or -1 for activities without one
+     */
+    public static int passingScore(String activityType) {
+        int index = overallIndex(activityType);
+        return index >= 0 ? PASSING_SCORES[index] : -1;
+    }
+    
+    private static int overallIndex(String activityType) {
+        for (int i = 0; i < OVERALL_ACTIVITIES.length; i++) {
+            if (OVERALL_ACTIVITIES[i].equals(activityType)) return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Recompute the weighted composite (0-100) and total attempts from the per-activity
+     * fields (score_{activity}, attempts_{activity}) of an overall score document
+     */
+    private static LeaderboardEntry applyOverallComposite(String studentId, String studentName, Map<String, Object> overallData) {
+        double composite = 0;
+        int totalAttempts = 0;
+        for (int i = 0; i < OVERALL_ACTIVITIES.length; i++) {
+            Object score = overallData.get("score_" + OVERALL_ACTIVITIES[i]);
+            Object attempts = overallData.get("attempts_" + OVERALL_ACTIVITIES[i]);
+            if (score instanceof Number) {
+                double fraction = Math.min(1.0, ((Number) score).doubleValue() / OVERALL_MAX_SCORES[i]);
+                composite += fraction * OVERALL_WEIGHTS[i];
+            }
+            if (attempts instanceof Number) {
+                totalAttempts += ((Number) attempts).intValue();
+            }
+        }
+        int overallScore = (int) Math.round(composite);
+        overallData.put("score", overallScore);
+        overallData.put("attemptsUsed", totalAttempts);
+        overallData.put("timestamp", System.currentTimeMillis());
+        return new LeaderboardEntry(studentId, studentName, overallScore, totalAttempts);
+    }
+    
+    /**
+     * Build a lesson's overall leaderboard from its three activity leaderboards.
+     * Only needed for lessons scored before overall scores existed (their overall rollup has no
+     * overallBuilt flag); afterwards every recordScore keeps it current.
+     * Returns the entries computed from one scan (names unresolved) right away; the stored
+     * overall board is then rebuilt in the background, one student at a time.
+     */
+    private static void rebuildOverallScores(String classCode, String lessonName, OnLeaderboardCallback callback) {
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (String activity : OVERALL_ACTIVITIES) {
+            queries.add(leaderboardDoc(classCode, lessonName, activity).collection("Scores").get());
+        }
         
-        Map<String, Object> scoreData = new HashMap<>();
-        scoreData.put("studentId", studentId);
-        scoreData.put("studentName", studentName);
-        scoreData.put("score", score);
-        scoreData.put("attemptsUsed", attemptsUsed);
-        scoreData.put("timestamp", System.currentTimeMillis());
+        Tasks.whenAllSuccess(queries)
+                .addOnSuccessListener(results -> {
+                    Map<String, Map<String, Object>> byStudent = new HashMap<>();
+                    for (int i = 0; i < OVERALL_ACTIVITIES.length; i++) {
+                        for (DocumentSnapshot doc : queries.get(i).getResult().getDocuments()) {
+                            Long score = doc.getLong("score");
+                            if (score == null) continue;
+                            Map<String, Object> data = byStudent.get(doc.getId());
+                            if (data == null) {
+                                data = new HashMap<>();
+                                byStudent.put(doc.getId(), data);
+                            }
+                            if (doc.getString("studentName") != null) {
+                                data.put("studentName", doc.getString("studentName"));
+                            }
+                            Long attempts = doc.getLong("attemptsUsed");
+                            data.put("score_" + OVERALL_ACTIVITIES[i], score);
+                            data.put("attempts_" + OVERALL_ACTIVITIES[i], attempts != null ? attempts : 0L);
+                        }
+                    }
+                    
+                    List<LeaderboardEntry> entries = new ArrayList<>();
+                    for (Map.Entry<String, Map<String, Object>> student : byStudent.entrySet()) {
+                        Map<String, Object> data = student.getValue();
+                        entries.add(applyOverallComposite(student.getKey(), (String) data.get("studentName"), data));
+                    }
+                    System.out.println("🏆 LeaderboardManager: Computed overall scores for " + lessonName + " (" + entries.size() + " students)");
+                    callback.onSuccess(entries);
+                    
+                    storeOverallScores(classCode, lessonName, new ArrayList<>(byStudent.keySet()));
+                })
+                .addOnFailureListener(callback::onFailure);
+    }
+    
+    /**
+     * Write each student's overall Score doc and rollup entry in its own transaction that re-reads
+     * their activity scores, so a recordScore landing meanwhile is never overwritten. The
+     * transactions run one after another since they all write the same rollup. The flag is only
+     * set once every student went through, so a failed rebuild runs again.
+     */
+    private static void storeOverallScores(String classCode, String lessonName, List<String> studentIds) {
+        String rebuildKey = classCode + "/" + lessonName;
+        synchronized (overallRebuilds) {
+            if (!overallRebuilds.add(rebuildKey)) return;
+        }
         
-        String path = "Classes/" + classCode + "/Leaderboards/" + lessonName + "_" + activityType + "/Scores/" + studentId;
-        System.out.println("🏆 LeaderboardManager: Writing score → " + path + " data=" + scoreData);
-        getDb().collection("Classes").document(classCode)
-          .collection("Leaderboards").document(lessonName + "_" + activityType)
-          .collection("Scores").document(studentId)
-          .set(scoreData)
-          .addOnSuccessListener(v -> System.out.println("✅ LeaderboardManager: Score write success: " + path))
-          .addOnFailureListener(e -> System.out.println("❌ LeaderboardManager: Score write FAILED: " + path + " error=" + e.getMessage()));
+        Task<Void> chain = Tasks.forResult(null);
+        for (String studentId : studentIds) {
+            chain = chain.onSuccessTask(v -> storeOverallScore(classCode, lessonName, studentId));
+        }
+        chain.onSuccessTask(v -> leaderboardDoc(classCode, lessonName, ACTIVITY_OVERALL)
+                        .set(Collections.singletonMap(FIELD_OVERALL_BUILT, true), SetOptions.merge()))
+                .addOnCompleteListener(task -> {
+                    synchronized (overallRebuilds) {
+                        overallRebuilds.remove(rebuildKey);
+                    }
+                    System.out.println(task.isSuccessful()
+                            ? "✅ LeaderboardManager: Overall leaderboard built for " + lessonName + " (" + studentIds.size() + " students)"
+                            : "❌ LeaderboardManager: Overall rebuild FAILED: "
+                                    + (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
+                });
+    }
+    
+    private static Task<Void> storeOverallScore(String classCode, String lessonName, String studentId) {
+        DocumentReference overallRollupRef = leaderboardDoc(classCode, lessonName, ACTIVITY_OVERALL);
+        DocumentReference overallScoreRef = scoreDoc(classCode, lessonName, ACTIVITY_OVERALL, studentId);
+        
+        return getDb().runTransaction(transaction -> {
+            DocumentSnapshot overallRollupSnapshot = transaction.get(overallRollupRef);
+            DocumentSnapshot overallSnapshot = transaction.get(overallScoreRef);
+            Map<String, DocumentSnapshot> activityScores = new HashMap<>();
+            for (String activity : OVERALL_ACTIVITIES) {
+                activityScores.put(activity, transaction.get(scoreDoc(classCode, lessonName, activity, studentId)));
+            }
+            
+            Map<String, Object> overallData = overallSnapshot.exists() && overallSnapshot.getData() != null
+                    ? new HashMap<>(overallSnapshot.getData()) : new HashMap<>();
+            String studentName = overallSnapshot.getString("studentName");
+            boolean hasScore = false;
+            for (Map.Entry<String, DocumentSnapshot> activity : activityScores.entrySet()) {
+                DocumentSnapshot activityScore = activity.getValue();
+                Long score = activityScore.exists() ? activityScore.getLong("score") : null;
+                if (score == null) continue;
+                Long attempts = activityScore.getLong("attemptsUsed");
+                overallData.put("score_" + activity.getKey(), score);
+                overallData.put("attempts_" + activity.getKey(), attempts != null ? attempts : 0L);
+                if (studentName == null) studentName = activityScore.getString("studentName");
+                hasScore = true;
+            }
+            // Removed since the scan: nothing to put back
+            if (!hasScore) return null;
+            
+            overallData.put("studentId", studentId);
+            overallData.put("studentName", studentName);
+            LeaderboardEntry overallEntry = applyOverallComposite(studentId, studentName, overallData);
+            transaction.set(overallScoreRef, overallData);
+            writeRollup(transaction, overallRollupRef, overallRollupSnapshot, overallEntry);
+            return null;
+        });
+    }
+    
+    private static boolean needsOverallRebuild(String activityType, DocumentSnapshot rollupSnapshot) {
+        return ACTIVITY_OVERALL.equals(activityType)
+                && (rollupSnapshot == null || !rollupSnapshot.exists()
+                    || !Boolean.TRUE.equals(rollupSnapshot.getBoolean(FIELD_OVERALL_BUILT)));
+    }
+    
+    // Rebuild the overall board and hand back the requested slice of it
+    private static void serveRebuiltOverall(String classCode, String lessonName, Integer limit,
+                                            OnLeaderboardCallback callback) {
+        rebuildOverallScores(classCode, lessonName, new OnLeaderboardCallback() {
+            @Override
+            public void onSuccess(List<LeaderboardEntry> entries) {
+                callback.onSuccess(new ArrayList<>(trimToLimit(sortedCopy(entries), limit)));
+            }
+            
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
     }
     
     /**
-     * Update only attemptsUsed field without changing score
-     * Uses set with merge to ensure the update always succeeds and triggers listeners
+     * Replace (or insert) one student's entry in the rollup and write it back within the transaction.
+     * The rollup keeps the top ROLLUP_SIZE entries pre-sorted; "truncated" records that
+     * lower-ranked students exist only in the Scores subcollection.
      */
-    private static void updateAttemptsOnly(String classCode, String lessonName, String activityType,
-                                           String studentId, int attemptsUsed) {
-        // First, get the existing document to preserve score and studentName
-        getDb().collection("Classes").document(classCode)
-          .collection("Leaderboards").document(lessonName + "_" + activityType)
-          .collection("Scores").document(studentId)
-          .get()
-          .addOnSuccessListener(documentSnapshot -> {
-              if (documentSnapshot.exists()) {
-                  // Preserve existing data and only update attempts and timestamp
-                  Map<String, Object> updateData = new HashMap<>();
-                  updateData.put("studentId", documentSnapshot.getString("studentId"));
-                  updateData.put("studentName", documentSnapshot.getString("studentName"));
-                  updateData.put("score", documentSnapshot.getLong("score"));
-                  updateData.put("attemptsUsed", attemptsUsed);
-                  updateData.put("timestamp", System.currentTimeMillis());
-                  
-                  String path = "Classes/" + classCode + "/Leaderboards/" + lessonName + "_" + activityType + "/Scores/" + studentId;
-                  System.out.println("🏆 LeaderboardManager: Updating attempts only → " + path + " attemptsUsed=" + attemptsUsed);
-                  getDb().collection("Classes").document(classCode)
-                    .collection("Leaderboards").document(lessonName + "_" + activityType)
-                    .collection("Scores").document(studentId)
-                    .set(updateData)
-                    .addOnSuccessListener(v -> System.out.println("✅ LeaderboardManager: Attempts update success: " + path))
-                    .addOnFailureListener(e -> System.out.println("❌ LeaderboardManager: Attempts update FAILED: " + path + " error=" + e.getMessage()));
-              } else {
-                  System.out.println("❌ LeaderboardManager: Document does not exist for attempts update");
+    private static void writeRollup(Transaction transaction, DocumentReference rollupRef,
+                                    DocumentSnapshot rollupSnapshot, LeaderboardEntry changed) {
+        List<LeaderboardEntry> entries = readRollupEntries(rollupSnapshot);
+        boolean truncated = rollupSnapshot.exists() && Boolean.TRUE.equals(rollupSnapshot.getBoolean("truncated"));
+        
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (changed.studentId.equals(entries.get(i).studentId)) {
+                entries.remove(i);
+            }
+        }
+        entries.add(changed);
+        entries.sort(ENTRY_ORDER);
+        if (entries.size() > ROLLUP_SIZE) {
+            entries = new ArrayList<>(entries.subList(0, ROLLUP_SIZE));
+            truncated = true;
+        }
+        
+        transaction.set(rollupRef, buildRollupData(entries, truncated), SetOptions.merge());
+    }
+    
+    private static Map<String, Object> buildRollupData(List<LeaderboardEntry> entries, boolean truncated) {
+        List<Map<String, Object>> topEntries = new ArrayList<>();
+        for (LeaderboardEntry entry : entries) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("studentId", entry.studentId);
+            item.put("studentName", entry.studentName);
+            item.put("score", entry.score);
+            item.put("attemptsUsed", entry.attemptsUsed);
+            topEntries.add(item);
+        }
+        
+        Map<String, Object> rollupData = new HashMap<>();
+        rollupData.put("topEntries", topEntries);
+        rollupData.put("truncated", truncated);
+        rollupData.put("updatedAt", System.currentTimeMillis());
+        // Server clock, so readers can order rollup changes across devices
+        rollupData.put("serverUpdatedAt", FieldValue.serverTimestamp());
+        return rollupData;
+    }
+    
+    /**
+     * Parse the pre-sorted entries stored on a rollup document (empty if it has none yet)
+     */
+    @SuppressWarnings("unchecked")
+    private static List<LeaderboardEntry> readRollupEntries(DocumentSnapshot rollupSnapshot) {
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        if (rollupSnapshot == null || !rollupSnapshot.exists()) return entries;
+        
+        Object raw = rollupSnapshot.get("topEntries");
+        if (!(raw instanceof List)) return entries;
+        
+        for (Object item : (List<Object>) raw) {
+            if (!(item instanceof Map)) continue;
+            Map<String, Object> map = (Map<String, Object>) item;
+            Object studentId = map.get("studentId");
+            Object score = map.get("score");
+            Object attempts = map.get("attemptsUsed");
+            if (!(studentId instanceof String) || !(score instanceof Number) || !(attempts instanceof Number)) continue;
+            Object name = map.get("studentName");
+            entries.add(new LeaderboardEntry((String) studentId, name instanceof String ? (String) name : null,
+                    ((Number) score).intValue(), ((Number) attempts).intValue()));
+        }
+        return entries;
+    }
+    
+    private static boolean hasRollup(DocumentSnapshot rollupSnapshot) {
+        return rollupSnapshot != null && rollupSnapshot.exists() && rollupSnapshot.get("topEntries") instanceof List;
+    }
+    
+    /**
+     * Top a truncated rollup back up to ROLLUP_SIZE after entries were pulled out of it (student
+     * removal), since the next-ranked students are only in Scores. Entries already in the rollup
+     * win over the scan, so a score written in between is kept.
+     */
+    static Task<Void> refillRollup(String classCode, String lessonName, String activityType) {
+        DocumentReference rollupRef = leaderboardDoc(classCode, lessonName, activityType);
+        return rollupRef.collection("Scores")
+                .orderBy("score", Query.Direction.DESCENDING)
+                .limit(ROLLUP_SIZE)
+                .get()
+                .onSuccessTask(scan -> getDb().runTransaction(transaction -> {
+                    DocumentSnapshot rollupSnapshot = transaction.get(rollupRef);
+                    if (!hasRollup(rollupSnapshot)) return null;
+                    List<LeaderboardEntry> entries = readRollupEntries(rollupSnapshot);
+                    if (entries.size() >= ROLLUP_SIZE) return null;
+                    
+                    Set<String> listed = new HashSet<>();
+                    for (LeaderboardEntry entry : entries) listed.add(entry.studentId);
+                    for (LeaderboardEntry scanned : parseScoreDocuments(scan)) {
+                        if (listed.add(scanned.studentId)) entries.add(scanned);
+                    }
+                    entries.sort(ENTRY_ORDER);
+                    // A scan shorter than the rollup size saw every score, so nothing is left out
+                    boolean truncated = scan.size() >= ROLLUP_SIZE;
+                    if (entries.size() > ROLLUP_SIZE) {
+                        entries = new ArrayList<>(entries.subList(0, ROLLUP_SIZE));
+                        truncated = true;
+                    }
+                    transaction.set(rollupRef, buildRollupData(entries, truncated), SetOptions.merge());
+                    return null;
+                }));
+    }
+    
+    /**
+     * Build the rollup for a leaderboard that predates it, from one full scan of Scores.
+     * Only writes if no rollup appeared in the meantime, so it never overwrites newer data.
+     */
+    private static void backfillRollup(String classCode, String lessonName, String activityType,
+                                       List<LeaderboardEntry> allEntries) {
+        if (allEntries.isEmpty()) return;
+        
+        List<LeaderboardEntry> sorted = new ArrayList<>(allEntries);
+        sorted.sort(ENTRY_ORDER);
+        boolean truncated = sorted.size() > ROLLUP_SIZE;
+        List<LeaderboardEntry> top = truncated ? new ArrayList<>(sorted.subList(0, ROLLUP_SIZE)) : sorted;
+        
+        DocumentReference rollupRef = leaderboardDoc(classCode, lessonName, activityType);
+        getDb().runTransaction(transaction -> {
+              DocumentSnapshot rollupSnapshot = transaction.get(rollupRef);
+              if (!hasRollup(rollupSnapshot)) {
+                  transaction.set(rollupRef, buildRollupData(top, truncated), SetOptions.merge());
               }
+              return null;
           })
-          .addOnFailureListener(e -> {
-              String path = "Classes/" + classCode + "/Leaderboards/" + lessonName + "_" + activityType + "/Scores/" + studentId;
-              System.out.println("❌ LeaderboardManager: Failed to get document for attempts update: " + path + " error=" + e.getMessage());
-          });
+          .addOnSuccessListener(v -> System.out.println("✅ LeaderboardManager: Rollup backfilled for " + lessonName + "_" + activityType + " (" + top.size() + " entries)"))
+          .addOnFailureListener(e -> System.out.println("❌ LeaderboardManager: Rollup backfill FAILED: " + e.getMessage()));
     }
     
     /**
      * Internal helper to fetch leaderboard scores with optional limit.
      * If limit is null or <= 0, returns all scores ordered by score desc.
+     * Reads the single rollup document when it can answer the request, otherwise scans Scores.
      */
     private static void getScoresInternal(String classCode, String lessonName, String activityType,
                                           Integer limit, OnLeaderboardCallback callback) {
         System.out.println("🏆 LeaderboardManager: getScoresInternal() called - Class: " + classCode + ", Lesson: " + lessonName + ", Activity: " + activityType + ", limit=" + limit);
 
-        // Compiler activity is now included in leaderboards
-        // No longer skipping
-
-        String documentPath = "Classes/" + classCode + "/Leaderboards/" + lessonName + "_" + activityType + "/Scores";
-        System.out.println("🏆 LeaderboardManager: Querying path: " + documentPath);
-
         if (classCode == null || lessonName == null || activityType == null) {
             System.out.println("❌ LeaderboardManager: Invalid input parameters for getScoresInternal");
             callback.onSuccess(new ArrayList<>());
             return;
         }
 
-        com.google.firebase.firestore.Query query = getDb().collection("Classes").document(classCode)
-                .collection("Leaderboards").document(lessonName + "_" + activityType)
+        leaderboardDoc(classCode, lessonName, activityType)
+                .get()
+                .addOnSuccessListener(rollupSnapshot -> {
+                    if (needsOverallRebuild(activityType, rollupSnapshot)) {
+                        // Lesson scored before overall scores were kept: derive them once from the activities
+                        serveRebuiltOverall(classCode, lessonName, limit, new OnLeaderboardCallback() {
+                            @Override
+                            public void onSuccess(List<LeaderboardEntry> entries) {
+                                resolveAndSort(entries, callback);
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                callback.onFailure(e);
+                            }
+                        });
+                        return;
+                    }
+                    // A truncated rollup that lost entries (removal not yet refilled) only covers as many ranks as it lists
+                    List<LeaderboardEntry> listed = readRollupEntries(rollupSnapshot);
+                    boolean fitsRollup = limit != null && limit > 0 && limit <= listed.size();
+                    boolean truncated = Boolean.TRUE.equals(rollupSnapshot.getBoolean("truncated"));
+                    if (hasRollup(rollupSnapshot) && (fitsRollup || !truncated)) {
+                        List<LeaderboardEntry> entries = trimToLimit(readRollupEntries(rollupSnapshot), limit);
+                        System.out.println("🏆 LeaderboardManager: Served " + entries.size() + " entries from rollup");
+                        resolveAndSort(entries, callback);
+                    } else {
+                        queryScoresCollection(classCode, lessonName, activityType, limit, !hasRollup(rollupSnapshot), callback);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ LeaderboardManager: Rollup read failed, scanning Scores: " + e.getMessage());
+                    queryScoresCollection(classCode, lessonName, activityType, limit, false, callback);
+                });
+    }
+
+    /**
+     * Fallback for leaderboards without a usable rollup: query the Scores subcollection directly.
+     * A full (unlimited) scan of a leaderboard with no rollup also backfills the rollup.
+     */
+    private static void queryScoresCollection(String classCode, String lessonName, String activityType,
+                                              Integer limit, boolean backfill, OnLeaderboardCallback callback) {
+        String documentPath = "Classes/" + classCode + "/Leaderboards/" + lessonName + "_" + activityType + "/Scores";
+        System.out.println("🏆 LeaderboardManager: Querying path: " + documentPath);
+
+        Query query = leaderboardDoc(classCode, lessonName, activityType)
                 .collection("Scores")
                 .orderBy("score", Query.Direction.DESCENDING);
 
-        if (limit != null && limit > 0) {
+        boolean limited = limit != null && limit > 0;
+        if (limited) {
             query = query.limit(limit);
         }
 
         query.get()
                 .addOnSuccessListener(querySnapshot -> {
                     System.out.println("🏆 LeaderboardManager: Query successful - Found " + querySnapshot.size() + " documents");
-                    List<LeaderboardEntry> rawEntries = new ArrayList<>();
-
-                    for (DocumentSnapshot doc : querySnapshot) {
-                        System.out.println("🏆 LeaderboardManager: Processing document: " + doc.getId() + " - Score: " + doc.getLong("score") + ", Student: " + doc.getString("studentName"));
-                        LeaderboardEntry entry = new LeaderboardEntry(
-                                doc.getString("studentId"),
-                                doc.getString("studentName"),
-                                doc.getLong("score").intValue(),
-                                doc.getLong("attemptsUsed").intValue()
-                        );
-                        rawEntries.add(entry);
-                    }
-
-                    resolveStudentNames(rawEntries, new OnLeaderboardCallback() {
-                        @Override
-                        public void onSuccess(List<LeaderboardEntry> resolvedEntries) {
-                            resolvedEntries.sort((a, b) -> {
-                                int scoreCompare = Integer.compare(b.score, a.score);
-                                if (scoreCompare != 0) return scoreCompare;
-                                return Integer.compare(a.attemptsUsed, b.attemptsUsed);
-                            });
-                            System.out.println("🏆 LeaderboardManager: Returning " + resolvedEntries.size() + " entries with resolved names");
-                            callback.onSuccess(resolvedEntries);
-                        }
+                    List<LeaderboardEntry> rawEntries = parseScoreDocuments(querySnapshot);
 
-                        @Override
-                        public void onFailure(Exception e) {
-                            System.out.println("❌ LeaderboardManager: Failed to resolve names: " + e.getMessage());
-                            callback.onFailure(e);
-                        }
-                    });
+                    if (backfill && !limited) {
+                        backfillRollup(classCode, lessonName, activityType, rawEntries);
+                    }
+                    resolveAndSort(rawEntries, callback);
                 })
                 .addOnFailureListener(e -> {
                     System.out.println("❌ LeaderboardManager: Query failed for " + documentPath + ": " + e.getMessage());
@@ -218,6 +676,40 @@ public class LeaderboardManager {
                 });
     }
 
+    private static List<LeaderboardEntry> parseScoreDocuments(QuerySnapshot querySnapshot) {
+        List<LeaderboardEntry> rawEntries = new ArrayList<>();
+        for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
+            Long scoreLong = doc.getLong("score");
+            Long attemptsLong = doc.getLong("attemptsUsed");
+            if (scoreLong == null || attemptsLong == null) continue;
+
+            rawEntries.add(new LeaderboardEntry(
+                    doc.getString("studentId"),
+                    doc.getString("studentName"),
+                    scoreLong.intValue(),
+                    attemptsLong.intValue()
+            ));
+        }
+        return rawEntries;
+    }
+
+    private static void resolveAndSort(List<LeaderboardEntry> rawEntries, OnLeaderboardCallback callback) {
+        resolveStudentNames(rawEntries, new OnLeaderboardCallback() {
+            @Override
+            public void onSuccess(List<LeaderboardEntry> resolvedEntries) {
+                resolvedEntries.sort(ENTRY_ORDER);
+                System.out.println("🏆 LeaderboardManager: Returning " + resolvedEntries.size() + " entries with resolved names");
+                callback.onSuccess(resolvedEntries);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                System.out.println("❌ LeaderboardManager: Failed to resolve names: " + e.getMessage());
+                callback.onFailure(e);
+            }
+        });
+    }
+
     /**
      * Get top 10 scores for an activity (student view)
      */
@@ -226,6 +718,14 @@ public class LeaderboardManager {
         getScoresInternal(classCode, lessonName, activityType, 10, callback);
     }
 
+    /**
+     * Get the top N scores for an activity
+     */
+    public static void getTopScores(String classCode, String lessonName, String activityType,
+                                    int limit, OnLeaderboardCallback callback) {
+        getScoresInternal(classCode, lessonName, activityType, limit, callback);
+    }
+
     /**
      * Get all scores for an activity (teacher view)
      */
@@ -234,88 +734,248 @@ public class LeaderboardManager {
         getScoresInternal(classCode, lessonName, activityType, null, callback);
     }
     
+    /**
+     * Get one page of an activity's full leaderboard (teacher view of large classes)
+     * Pass null as startAfter for the first page, then the previous page's cursor.
+     * Names are resolved only for the entries of this page. Ordering by score and then
+     * attemptsUsed needs a composite index on Scores (score desc, attemptsUsed asc).
+     */
+    public static void getScoresPage(String classCode, String lessonName, String activityType,
+                                     int pageSize, DocumentSnapshot startAfter, OnScoresPageCallback callback) {
+        System.out.println("🏆 LeaderboardManager: getScoresPage() called - Class: " + classCode + ", Lesson: " + lessonName + ", Activity: " + activityType + ", after=" + (startAfter != null ? startAfter.getId() : "start"));
+
+        if (classCode == null || lessonName == null || activityType == null) {
+            System.out.println("❌ LeaderboardManager: Invalid input parameters for getScoresPage");
+            callback.onSuccess(new ScoresPage(new ArrayList<>(), null, false));
+            return;
+        }
+
+        if (startAfter == null && ACTIVITY_OVERALL.equals(activityType)) {
+            // The first overall page checks whether the lesson's overall scores were ever built
+            leaderboardDoc(classCode, lessonName, activityType)
+                    .get()
+                    .addOnSuccessListener(rollupSnapshot -> {
+                        if (!needsOverallRebuild(activityType, rollupSnapshot)) {
+                            queryScoresPage(classCode, lessonName, activityType, pageSize, null, callback);
+                            return;
+                        }
+                        // Rebuild them and serve everything as one page
+                        serveRebuiltOverall(classCode, lessonName, null, new OnLeaderboardCallback() {
+                            @Override
+                            public void onSuccess(List<LeaderboardEntry> entries) {
+                                resolveAndSort(entries, new OnLeaderboardCallback() {
+                                    @Override
+                                    public void onSuccess(List<LeaderboardEntry> resolved) {
+                                        callback.onSuccess(new ScoresPage(resolved, null, false));
+                                    }
+
+                                    @Override
+                                    public void onFailure(Exception e) {
+                                        callback.onFailure(e);
+                                    }
+                                });
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                callback.onFailure(e);
+                            }
+                        });
+                    })
+                    .addOnFailureListener(e -> queryScoresPage(classCode, lessonName, activityType, pageSize, null, callback));
+            return;
+        }
+        queryScoresPage(classCode, lessonName, activityType, pageSize, startAfter, callback);
+    }
+
+    private static void queryScoresPage(String classCode, String lessonName, String activityType,
+                                        int pageSize, DocumentSnapshot startAfter, OnScoresPageCallback callback) {
+        Query query = leaderboardDoc(classCode, lessonName, activityType)
+                .collection("Scores")
+                .orderBy("score", Query.Direction.DESCENDING)
+                .orderBy("attemptsUsed", Query.Direction.ASCENDING);
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<DocumentSnapshot> documents = querySnapshot.getDocuments();
+                    DocumentSnapshot cursor = documents.isEmpty() ? startAfter : documents.get(documents.size() - 1);
+                    boolean hasMore = documents.size() == pageSize;
+                    System.out.println("🏆 LeaderboardManager: Page loaded - " + documents.size() + " documents, hasMore=" + hasMore);
+
+                    // Query order is already final, so only names need resolving
+                    resolveStudentNames(parseScoreDocuments(querySnapshot), new OnLeaderboardCallback() {
+                        @Override
+                        public void onSuccess(List<LeaderboardEntry> entries) {
+                            callback.onSuccess(new ScoresPage(entries, cursor, hasMore));
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            callback.onFailure(e);
+                        }
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ LeaderboardManager: Page query failed: " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
     /**
      * Add real-time listener for leaderboard scores
+     * Listens to the single rollup document, so at most ROLLUP_SIZE entries are delivered.
      * Returns ListenerRegistration that must be removed to stop listening
      */
     public static ListenerRegistration addRealtimeScoresListener(String classCode, String lessonName, String activityType,
                                                                  Integer limit, OnLeaderboardCallback callback) {
         System.out.println("🏆 LeaderboardManager: addRealtimeScoresListener() called - Class: " + classCode + ", Lesson: " + lessonName + ", Activity: " + activityType + ", limit=" + limit);
 
-        // Compiler activity is now included in leaderboards
-        // No longer skipping
+        return listenToRollup(classCode, lessonName, activityType, limit, new OnLeaderboardCallback() {
+            @Override
+            public void onSuccess(List<LeaderboardEntry> rawEntries) {
+                resolveAndSort(rawEntries, callback);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
 
+    /**
+     * Add real-time listener that keeps a sorted ranking and reports only what changed
+     * Each rollup update is diffed by studentId against the previous ranking; names are
+     * resolved only for students who were not ranked before.
+     * Returns ListenerRegistration that must be removed to stop listening
+     */
+    public static ListenerRegistration addRealtimeRankingListener(String classCode, String lessonName, String activityType,
+                                                                  Integer limit, OnRankingChangeCallback callback) {
+        System.out.println("🏆 LeaderboardManager: addRealtimeRankingListener() called - Class: " + classCode + ", Lesson: " + lessonName + ", Activity: " + activityType + ", limit=" + limit);
+
+        LeaderboardRanking ranking = new LeaderboardRanking();
+        final int[] latestGeneration = {0};
+        return listenToRollup(classCode, lessonName, activityType, limit, new OnLeaderboardCallback() {
+            @Override
+            public void onSuccess(List<LeaderboardEntry> rawEntries) {
+                int generation = ++latestGeneration[0];
+
+                List<String> newStudentIds = new ArrayList<>();
+                for (LeaderboardEntry entry : rawEntries) {
+                    if (entry.studentId != null && !ranking.contains(entry.studentId)) {
+                        newStudentIds.add(entry.studentId);
+                    }
+                }
+
+                UserNameManager.getUserNames(newStudentIds, names -> {
+                    // A newer snapshot arrived while names were resolving; it supersedes this one
+                    if (generation != latestGeneration[0]) return;
+
+                    for (LeaderboardEntry entry : rawEntries) {
+                        if (entry.studentId == null) continue;
+                        LeaderboardEntry known = ranking.get(entry.studentId);
+                        if (known != null) {
+                            entry.studentName = known.studentName;
+                        } else {
+                            String name = names.get(entry.studentId);
+                            entry.studentName = name != null ? name : "Unknown Student";
+                        }
+                    }
+
+                    List<LeaderboardRanking.Change> changes = ranking.replaceAll(rawEntries);
+                    System.out.println("🏆 LeaderboardManager: Ranking update - " + changes.size() + " changes");
+                    callback.onRankingChanged(ranking.getEntries(), changes);
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Listen to the rollup document and deliver its entries (names not yet resolved), trimmed to limit
+     */
+    private static ListenerRegistration listenToRollup(String classCode, String lessonName, String activityType,
+                                                       Integer limit, OnLeaderboardCallback callback) {
         if (classCode == null || lessonName == null || activityType == null) {
-            System.out.println("❌ LeaderboardManager: Invalid input parameters for addRealtimeScoresListener");
+            System.out.println("❌ LeaderboardManager: Invalid input parameters for realtime listener");
             callback.onSuccess(new ArrayList<>());
             return null;
         }
 
-        Query query = getDb().collection("Classes").document(classCode)
-                .collection("Leaderboards").document(lessonName + "_" + activityType)
-                .collection("Scores")
-                .orderBy("score", Query.Direction.DESCENDING);
-
-        if (limit != null && limit > 0) {
-            query = query.limit(limit);
-        }
-
-        return query.addSnapshotListener((querySnapshot, error) -> {
+        final boolean[] backfillRequested = {false};
+        return leaderboardDoc(classCode, lessonName, activityType).addSnapshotListener((rollupSnapshot, error) -> {
             if (error != null) {
                 System.out.println("❌ LeaderboardManager: Real-time listener error: " + error.getMessage());
                 callback.onFailure(error);
                 return;
             }
 
-            if (querySnapshot == null) {
-                System.out.println("🏆 LeaderboardManager: Real-time listener - querySnapshot is null");
-                callback.onSuccess(new ArrayList<>());
+            if (needsOverallRebuild(activityType, rollupSnapshot)) {
+                // Overall board never built for this lesson: rebuild once; the rollup write brings the listener back
+                if (backfillRequested[0]) {
+                    if (!hasRollup(rollupSnapshot)) callback.onSuccess(new ArrayList<>());
+                    else callback.onSuccess(trimToLimit(readRollupEntries(rollupSnapshot), limit));
+                    return;
+                }
+                backfillRequested[0] = true;
+                System.out.println("🏆 LeaderboardManager: Real-time listener - overall not built yet, rebuilding once");
+                serveRebuiltOverall(classCode, lessonName, limit, callback);
                 return;
             }
 
-            System.out.println("🏆 LeaderboardManager: Real-time update - Found " + querySnapshot.size() + " documents");
-            List<LeaderboardEntry> rawEntries = new ArrayList<>();
+            if (!hasRollup(rollupSnapshot)) {
+                // Leaderboard predates rollups: serve one full scan, which also writes the rollup
+                // and brings this listener back with live data
+                if (backfillRequested[0]) {
+                    callback.onSuccess(new ArrayList<>());
+                    return;
+                }
+                backfillRequested[0] = true;
+                System.out.println("🏆 LeaderboardManager: Real-time listener - no rollup yet, scanning Scores once");
+                queryScoresCollection(classCode, lessonName, activityType, null, true, new OnLeaderboardCallback() {
+                    @Override
+                    public void onSuccess(List<LeaderboardEntry> entries) {
+                        callback.onSuccess(trimToLimit(entries, limit));
+                    }
 
-            for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                if (doc.exists()) {
-                    Long scoreLong = doc.getLong("score");
-                    Long attemptsLong = doc.getLong("attemptsUsed");
-                    
-                    if (scoreLong != null && attemptsLong != null) {
-                        LeaderboardEntry entry = new LeaderboardEntry(
-                                doc.getString("studentId"),
-                                doc.getString("studentName"),
-                                scoreLong.intValue(),
-                                attemptsLong.intValue()
-                        );
-                        rawEntries.add(entry);
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
                     }
-                }
+                });
+                return;
             }
 
-            resolveStudentNames(rawEntries, new OnLeaderboardCallback() {
-                @Override
-                public void onSuccess(List<LeaderboardEntry> resolvedEntries) {
-                    resolvedEntries.sort((a, b) -> {
-                        int scoreCompare = Integer.compare(b.score, a.score);
-                        if (scoreCompare != 0) return scoreCompare;
-                        return Integer.compare(a.attemptsUsed, b.attemptsUsed);
-                    });
-                    System.out.println("🏆 LeaderboardManager: Real-time update - Returning " + resolvedEntries.size() + " entries");
-                    callback.onSuccess(resolvedEntries);
-                }
-
-                @Override
-                public void onFailure(Exception e) {
-                    System.out.println("❌ LeaderboardManager: Failed to resolve names in real-time: " + e.getMessage());
-                    callback.onFailure(e);
-                }
-            });
+            List<LeaderboardEntry> rawEntries = trimToLimit(readRollupEntries(rollupSnapshot), limit);
+            System.out.println("🏆 LeaderboardManager: Real-time update - " + rawEntries.size() + " entries from rollup");
+            callback.onSuccess(rawEntries);
         });
     }
+
+    private static List<LeaderboardEntry> sortedCopy(List<LeaderboardEntry> entries) {
+        List<LeaderboardEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(ENTRY_ORDER);
+        return sorted;
+    }
+
+    private static List<LeaderboardEntry> trimToLimit(List<LeaderboardEntry> entries, Integer limit) {
+        if (limit != null && limit > 0 && entries.size() > limit) {
+            return new ArrayList<>(entries.subList(0, limit));
+        }
+        return entries;
+    }
     
     /**
      * Resolve student names using signup names from users collection
+     * All missing names are fetched in one bulk lookup, so the cost does not grow per entry
      */
     private static void resolveStudentNames(List<LeaderboardEntry> entries, OnLeaderboardCallback callback) {
         if (entries.isEmpty()) {
@@ -323,65 +983,68 @@ public class LeaderboardManager {
             return;
         }
         
-        final int totalEntries = entries.size();
-        final int[] resolvedCount = {0};
-        
+        List<String> studentIds = new ArrayList<>();
         for (LeaderboardEntry entry : entries) {
             if (entry.studentId != null && !entry.studentId.isEmpty()) {
-                UserNameManager.getUserName(entry.studentId, new UserNameManager.NameCallback() {
-                    @Override
-                    public void onSuccess(String name) {
-                        entry.studentName = name;
-                        resolvedCount[0]++;
-                        if (resolvedCount[0] == totalEntries) {
-                            callback.onSuccess(entries);
-                        }
-                    }
-                    
-                    @Override
-                    public void onFailure(String fallbackName) {
-                        entry.studentName = fallbackName;
-                        resolvedCount[0]++;
-                        if (resolvedCount[0] == totalEntries) {
-                            callback.onSuccess(entries);
-                        }
-                    }
-                });
-            } else {
-                // No studentId, keep original name
-                resolvedCount[0]++;
-                if (resolvedCount[0] == totalEntries) {
-                    callback.onSuccess(entries);
-                }
+                studentIds.add(entry.studentId);
             }
         }
+        
+        UserNameManager.getUserNames(studentIds, names -> {
+            for (LeaderboardEntry entry : entries) {
+                // No studentId, keep original name
+                if (entry.studentId == null || entry.studentId.isEmpty()) continue;
+                String name = names.get(entry.studentId);
+                entry.studentName = name != null ? name : "Unknown Student";
+            }
+            callback.onSuccess(entries);
+        });
     }
     
     /**
-     * Get student's current ranking (if in top 10)
+     * Get student's current ranking in the whole class
+     * Counts students with a higher score, plus ties with fewer attempts, using server-side
+     * count aggregation: one document read and two aggregate reads regardless of class size.
+     * The tie query (score ==, attemptsUsed <) needs a composite index on Scores (score, attemptsUsed).
      */
     public static void getStudentRanking(String classCode, String lessonName, String activityType,
                                         String studentId, OnRankingCallback callback) {
-        // Compiler activity now supports ranking
-        // No longer skipping compiler activity
+        if (classCode == null || lessonName == null || activityType == null || studentId == null) {
+            System.out.println("❌ LeaderboardManager: Invalid input parameters for getStudentRanking");
+            callback.onSuccess(-1);
+            return;
+        }
         
-        getTopScores(classCode, lessonName, activityType, new OnLeaderboardCallback() {
-            @Override
-            public void onSuccess(List<LeaderboardEntry> entries) {
-                for (int i = 0; i < entries.size(); i++) {
-                    if (entries.get(i).studentId.equals(studentId)) {
-                        callback.onSuccess(i + 1); // 1-based ranking
-                        return;
-                    }
-                }
-                callback.onSuccess(-1); // Not in top 10
-            }
-            
-            @Override
-            public void onFailure(Exception e) {
-                callback.onFailure(e);
-            }
-        });
+        scoreDoc(classCode, lessonName, activityType, studentId)
+          .get()
+          .addOnSuccessListener(documentSnapshot -> {
+              Long scoreLong = documentSnapshot.getLong("score");
+              Long attemptsLong = documentSnapshot.getLong("attemptsUsed");
+              if (!documentSnapshot.exists() || scoreLong == null || attemptsLong == null) {
+                  callback.onSuccess(-1); // No score recorded yet
+                  return;
+              }
+              
+              CollectionReference scores = leaderboardDoc(classCode, lessonName, activityType).collection("Scores");
+              Task<AggregateQuerySnapshot> higherScores = scores
+                      .whereGreaterThan("score", scoreLong)
+                      .count()
+                      .get(AggregateSource.SERVER);
+              Task<AggregateQuerySnapshot> betterTies = scores
+                      .whereEqualTo("score", scoreLong)
+                      .whereLessThan("attemptsUsed", attemptsLong)
+                      .count()
+                      .get(AggregateSource.SERVER);
+              
+              Tasks.whenAllSuccess(higherScores, betterTies)
+                      .addOnSuccessListener(results -> {
+                          long ahead = higherScores.getResult().getCount() + betterTies.getResult().getCount();
+                          System.out.println("🏆 LeaderboardManager: Ranking for " + studentId + " = " + (ahead + 1));
+                          callback.onSuccess((int) ahead + 1); // 1-based ranking
+                      })
+                      .addOnFailureListener(callback::onFailure);
+          })
+          .addOnFailureListener(callback::onFailure);
     }
     
     /**
@@ -397,8 +1060,9 @@ public class LeaderboardManager {
           .addOnSuccessListener(documentSnapshot -> {
               
               int attemptsUsed = 0;
-              if (documentSnapshot.exists()) {
-                  attemptsUsed = documentSnapshot.getLong("attemptsUsed").intValue();
+              Long used = documentSnapshot.getLong("attemptsUsed");
+              if (used != null) {
+                  attemptsUsed = used.intValue();
               }
               
               boolean canAttempt = attemptsUsed < MAX_ATTEMPTS;
@@ -411,75 +1075,56 @@ public class LeaderboardManager {
      * Record an attempt (increment attempt counter)
      */
     public static void recordAttempt(String classCode, String lessonName, String activityType, String studentId) {
+        recordAttempt(null, classCode, lessonName, activityType, studentId);
+    }
+    
+    /**
+     * Record an attempt with a blind FieldValue.increment(1), so no read is needed and the write is
+     * queued by Firestore while offline. With a context the attempt is also appended to the
+     * AttemptLedger until the server acknowledges it.
+     */
+    public static void recordAttempt(Context context, String classCode, String lessonName, String activityType, String studentId) {
+        AttemptLedger.Entry entry = context != null
+                ? AttemptLedger.getInstance(context).append(classCode, lessonName, activityType, studentId)
+                : new AttemptLedger.Entry(java.util.UUID.randomUUID().toString(), classCode, lessonName,
+                        activityType, studentId, System.currentTimeMillis());
         
-        getDb().collection("Classes").document(classCode)
-          .collection("Students").document(studentId)
-          .collection("Attempts").document(lessonName + "_" + activityType)
-          .get()
-          .addOnSuccessListener(documentSnapshot -> {
-              
-              int currentAttempts = 0;
-              if (documentSnapshot.exists()) {
-                  currentAttempts = documentSnapshot.getLong("attemptsUsed").intValue();
-              }
-              
-              Map<String, Object> attemptData = new HashMap<>();
-              attemptData.put("attemptsUsed", currentAttempts + 1);
-              attemptData.put("lastAttempt", System.currentTimeMillis());
-              
         String attemptPath = "Classes/" + classCode + "/Students/" + studentId + "/Attempts/" + lessonName + "_" + activityType;
-        System.out.println("🎯 LeaderboardManager: Recording attempt → " + attemptPath + " current=" + currentAttempts);
-        getDb().collection("Classes").document(classCode)
-                .collection("Students").document(studentId)
-                .collection("Attempts").document(lessonName + "_" + activityType)
-          .set(attemptData)
-          .addOnSuccessListener(v -> System.out.println("✅ LeaderboardManager: Attempt write success: " + attemptPath))
+        System.out.println("🎯 LeaderboardManager: Recording attempt → " + attemptPath + " id=" + entry.attemptId);
+        writeAttempt(entry)
+          .addOnSuccessListener(v -> {
+              System.out.println("✅ LeaderboardManager: Attempt write success: " + attemptPath);
+              if (context != null) {
+                  AttemptLedger.getInstance(context).acknowledge(entry.attemptId);
+              }
+          })
           .addOnFailureListener(e -> System.out.println("❌ LeaderboardManager: Attempt write FAILED: " + attemptPath + " error=" + e.getMessage()));
-          });
+    }
+    
+    // The attempt id is stored next to the counter so a ledger replay can tell whether it already landed
+    static Task<Void> writeAttempt(AttemptLedger.Entry entry) {
+        Map<String, Object> attemptData = new HashMap<>();
+        attemptData.put("attemptsUsed", FieldValue.increment(1));
+        attemptData.put("lastAttempt", entry.recordedAt);
+        attemptData.put("attemptIds", FieldValue.arrayUnion(entry.attemptId));
+        return attemptDoc(entry.classCode, entry.lessonName, entry.activityType, entry.studentId)
+                .set(attemptData, SetOptions.merge());
+    }
+    
+    static DocumentReference attemptDoc(String classCode, String lessonName, String activityType, String studentId) {
+        return getDb().collection("Classes").document(classCode)
+                .collection("Students").document(studentId)
+                .collection("Attempts").document(lessonName + "_" + activityType);
     }
     
     /**
      * Teacher: Increase attempts for a student (direct control)
+     * Blind FieldValue.increment merged into the doc, so attemptIds survives and a concurrent
+     * student attempt is never overwritten
      */
     public static void teacherIncreaseAttempts(String classCode, String lessonName, String activityType,
                                              String studentId, String teacherId, AttemptUpdateCallback callback) {
-        
-        getDb().collection("Classes").document(classCode)
-          .collection("Students").document(studentId)
-          .collection("Attempts").document(lessonName + "_" + activityType)
-          .get()
-          .addOnSuccessListener(documentSnapshot -> {
-              
-              int currentAttempts = 0;
-              if (documentSnapshot.exists()) {
-                  Long attemptsLong = documentSnapshot.getLong("attemptsUsed");
-                  if (attemptsLong != null) {
-                      currentAttempts = attemptsLong.intValue();
-                  }
-              }
-              
-              int newAttempts = currentAttempts + 1;
-              
-              Map<String, Object> attemptData = new HashMap<>();
-              attemptData.put("attemptsUsed", newAttempts);
-              attemptData.put("lastUpdated", System.currentTimeMillis());
-              attemptData.put("updatedBy", "teacher");
-              attemptData.put("teacherId", teacherId);
-              
-              getDb().collection("Classes").document(classCode)
-                .collection("Students").document(studentId)
-                .collection("Attempts").document(lessonName + "_" + activityType)
-                .set(attemptData)
-                .addOnSuccessListener(v -> {
-                    System.out.println("✅ Teacher increased attempts: " + studentId + " " + newAttempts);
-                    callback.onSuccess(newAttempts);
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("❌ Teacher attempt increase FAILED: " + e.getMessage());
-                    callback.onFailure(e);
-                });
-          })
-          .addOnFailureListener(callback::onFailure);
+        teacherAdjustAttempts(classCode, lessonName, activityType, studentId, teacherId, 1, "increased", callback);
     }
     
     /**
@@ -487,47 +1132,48 @@ public class LeaderboardManager {
      */
     public static void teacherDecreaseAttempts(String classCode, String lessonName, String activityType,
                                              String studentId, String teacherId, AttemptUpdateCallback callback) {
+        teacherAdjustAttempts(classCode, lessonName, activityType, studentId, teacherId, -1, "decreased", callback);
+    }
+    
+    // Applies the increment, then reads the counter back (clamping a decrement below zero) to report it
+    private static void teacherAdjustAttempts(String classCode, String lessonName, String activityType,
+                                              String studentId, String teacherId, int delta, String verb,
+                                              AttemptUpdateCallback callback) {
+        DocumentReference attemptRef = attemptDoc(classCode, lessonName, activityType, studentId);
         
-        getDb().collection("Classes").document(classCode)
-          .collection("Students").document(studentId)
-          .collection("Attempts").document(lessonName + "_" + activityType)
-          .get()
+        Map<String, Object> attemptData = new HashMap<>();
+        attemptData.put("attemptsUsed", FieldValue.increment(delta));
+        attemptData.put("lastUpdated", System.currentTimeMillis());
+        attemptData.put("updatedBy", "teacher");
+        attemptData.put("teacherId", teacherId);
+        
+        attemptRef.set(attemptData, SetOptions.merge())
+          .continueWithTask(write -> {
+              if (!write.isSuccessful()) throw write.getException();
+              return attemptRef.get();
+          })
           .addOnSuccessListener(documentSnapshot -> {
-              
-              int currentAttempts = 0;
-              if (documentSnapshot.exists()) {
-                  Long attemptsLong = documentSnapshot.getLong("attemptsUsed");
-                  if (attemptsLong != null) {
-                      currentAttempts = attemptsLong.intValue();
-                  }
+              Long attemptsLong = documentSnapshot.getLong("attemptsUsed");
+              int newAttempts = attemptsLong != null ? attemptsLong.intValue() : 0;
+              if (newAttempts < 0) {
+                  // Decrement raced below zero; floor it without touching attemptIds
+                  Map<String, Object> floor = new HashMap<>();
+                  floor.put("attemptsUsed", FieldValue.increment(-newAttempts));
+                  attemptRef.set(floor, SetOptions.merge());
+                  newAttempts = 0;
               }
-              
-              int newAttempts = Math.max(0, currentAttempts - 1);
-              
-              Map<String, Object> attemptData = new HashMap<>();
-              attemptData.put("attemptsUsed", newAttempts);
-              attemptData.put("lastUpdated", System.currentTimeMillis());
-              attemptData.put("updatedBy", "teacher");
-              attemptData.put("teacherId", teacherId);
-              
-              getDb().collection("Classes").document(classCode)
-                .collection("Students").document(studentId)
-                .collection("Attempts").document(lessonName + "_" + activityType)
-                .set(attemptData)
-                .addOnSuccessListener(v -> {
-                    System.out.println("✅ Teacher decreased attempts: " + studentId + " " + newAttempts);
-                    callback.onSuccess(newAttempts);
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("❌ Teacher attempt decrease FAILED: " + e.getMessage());
-                    callback.onFailure(e);
-                });
+              System.out.println("✅ Teacher " + verb + " attempts: " + studentId + " " + newAttempts);
+              callback.onSuccess(newAttempts);
           })
-          .addOnFailureListener(callback::onFailure);
+          .addOnFailureListener(e -> {
+              System.out.println("❌ Teacher attempt update FAILED: " + e.getMessage());
+              callback.onFailure(e);
+          });
     }
     
     /**
      * Teacher: Reset attempts to 0 for a student
+     * Merged so the recorded attemptIds stay and a ledger replay still recognises old attempts
      */
     public static void teacherResetAttempts(String classCode, String lessonName, String activityType,
                                           String studentId, String teacherId, AttemptUpdateCallback callback) {
@@ -538,10 +1184,8 @@ public class LeaderboardManager {
         attemptData.put("updatedBy", "teacher");
         attemptData.put("teacherId", teacherId);
         
-        getDb().collection("Classes").document(classCode)
-          .collection("Students").document(studentId)
-          .collection("Attempts").document(lessonName + "_" + activityType)
-          .set(attemptData)
+        attemptDoc(classCode, lessonName, activityType, studentId)
+          .set(attemptData, SetOptions.merge())
           .addOnSuccessListener(v -> {
               System.out.println("✅ Teacher reset attempts: " + studentId + " to 0");
               callback.onSuccess(0);
@@ -552,6 +1196,89 @@ public class LeaderboardManager {
           });
     }
     
+    // Bulk attempt operations
+    public static final int BULK_RESET = 0;  // attemptsUsed = 0
+    public static final int BULK_ADD = 1;    // attemptsUsed += value (same direction as teacherIncreaseAttempts)
+    public static final int BULK_SET = 2;    // attemptsUsed = value
+    
+    /**
+     * Teacher: Reset, add to, or set attempts for many students on one lesson/activity at once.
+     * Writes are blind (no per-student read): BULK_ADD uses FieldValue.increment, and everything is
+     * committed in chunked batches, so a whole class takes one commit per 500 students.
+     * Pass null studentIds to apply to the whole class roster (one extra read).
+     */
+    public static void teacherBulkUpdateAttempts(String classCode, String lessonName, String activityType,
+                                                 List<String> studentIds, int operation, int value,
+                                                 String teacherId, BulkAttemptCallback callback) {
+        if (classCode == null || lessonName == null || activityType == null) {
+            callback.onFailure(new IllegalArgumentException("Class, lesson and activity are required"));
+            return;
+        }
+        if ((operation == BULK_ADD && value <= 0) || (operation == BULK_SET && value < 0)) {
+            callback.onFailure(new IllegalArgumentException("Invalid attempt value: " + value));
+            return;
+        }
+        
+        if (studentIds == null) {
+            getDb().collection("Classes").document(classCode)
+              .collection("Students")
+              .get()
+              .addOnSuccessListener(roster -> {
+                  List<String> allIds = new ArrayList<>();
+                  for (DocumentSnapshot doc : roster) {
+                      allIds.add(doc.getId());
+                  }
+                  writeBulkAttempts(classCode, lessonName, activityType, allIds, operation, value, teacherId, callback);
+              })
+              .addOnFailureListener(callback::onFailure);
+        } else {
+            writeBulkAttempts(classCode, lessonName, activityType, studentIds, operation, value, teacherId, callback);
+        }
+    }
+    
+    private static void writeBulkAttempts(String classCode, String lessonName, String activityType,
+                                          List<String> studentIds, int operation, int value,
+                                          String teacherId, BulkAttemptCallback callback) {
+        int total = studentIds.size();
+        if (total == 0) {
+            callback.onComplete(0);
+            return;
+        }
+        
+        Map<String, Object> attemptData = new HashMap<>();
+        if (operation == BULK_ADD) {
+            attemptData.put("attemptsUsed", FieldValue.increment(value));
+        } else {
+            attemptData.put("attemptsUsed", operation == BULK_SET ? value : 0);
+        }
+        attemptData.put("lastUpdated", System.currentTimeMillis());
+        attemptData.put("updatedBy", "teacher");
+        attemptData.put("teacherId", teacherId);
+        
+        String attemptDocId = lessonName + "_" + activityType;
+        List<Task<Integer>> commits = FirestoreChunks.commitInBatches(studentIds, (batch, studentId) ->
+                batch.set(getDb().collection("Classes").document(classCode)
+                        .collection("Students").document(studentId)
+                        .collection("Attempts").document(attemptDocId), attemptData, SetOptions.merge()));
+        int[] written = {0};
+        for (Task<Integer> commit : commits) {
+            commit.addOnSuccessListener(count -> {
+                written[0] += count;
+                callback.onProgress(written[0], total);
+            });
+        }
+        
+        Tasks.whenAll(commits)
+          .addOnSuccessListener(v -> {
+              System.out.println("✅ Teacher bulk attempt update (" + operation + ", " + value + "): " + total + " students on " + attemptDocId);
+              callback.onComplete(total);
+          })
+          .addOnFailureListener(e -> {
+              System.out.println("❌ Teacher bulk attempt update FAILED after " + written[0] + "/" + total + ": " + e.getMessage());
+              callback.onFailure(e);
+          });
+    }
+    
     /**
      * Request additional attempts (for teacher approval) - DEPRECATED, use direct controls instead
      */
@@ -578,8 +1305,19 @@ public class LeaderboardManager {
         void onFailure(Exception e);
     }
     
+    public interface OnScoresPageCallback {
+        void onSuccess(ScoresPage page);
+        void onFailure(Exception e);
+    }
+    
+    public interface OnRankingChangeCallback {
+        // ranking is the full sorted list after applying changes, in order
+        void onRankingChanged(List<LeaderboardEntry> ranking, List<LeaderboardRanking.Change> changes);
+        void onFailure(Exception e);
+    }
+    
     public interface OnRankingCallback {
-        void onSuccess(int ranking); // -1 if not in top 10
+        void onSuccess(int ranking); // -1 if the student has no score yet
         void onFailure(Exception e);
     }
     
@@ -593,6 +1331,49 @@ public class LeaderboardManager {
         void onFailure(Exception e);
     }
     
+    public interface BulkAttemptCallback {
+        void onProgress(int studentsUpdated, int totalStudents);
+        void onComplete(int studentsUpdated);
+        void onFailure(Exception e);
+    }
+    
+    // One page of a leaderboard plus the cursor to continue from
+    public static class ScoresPage {
+        public final List<LeaderboardEntry> entries;
+        public final DocumentSnapshot cursor;
+        public final boolean hasMore;
+        
+        public ScoresPage(List<LeaderboardEntry> entries, DocumentSnapshot cursor, boolean hasMore) {
+            this.entries = entries;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+    }
+    
+    // A score submission that is waiting to be written
+    private static class PendingScore {
+        final String studentName;
+        final int score;
+        final int attemptsUsed;
+        
+        PendingScore(String studentName, int score, int attemptsUsed) {
+            this.studentName = studentName;
+            this.score = score;
+            this.attemptsUsed = attemptsUsed;
+        }
+        
+        /**
+         * Result of applying a later submission on top of this one: a higher score (or the same
+         * score in fewer attempts) replaces it, otherwise only attemptsUsed follows the later one
+         */
+        PendingScore merge(PendingScore later) {
+            if (later.score > score || (later.score == score && later.attemptsUsed < attemptsUsed)) {
+                return later;
+            }
+            return new PendingScore(studentName, score, later.attemptsUsed);
+        }
+    }
+    
     // Data class for leaderboard entries
     public static class LeaderboardEntry {
         public String studentId;
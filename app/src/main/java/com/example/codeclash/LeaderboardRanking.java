@@ -0,0 +1,131 @@
+package com.example.codeclash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Sorted in-memory leaderboard that repositions only the students whose score changed
+ * and reports each step as a positional delta a RecyclerView can animate
+ */
+public class LeaderboardRanking {
+
+    // Change types, applied in the order they are reported
+    public static final int CHANGE_INSERT = 0;
+    public static final int CHANGE_REMOVE = 1;
+    public static final int CHANGE_MOVE = 2;
+    public static final int CHANGE_UPDATE = 3;
+
+    // Leaderboard order, with studentId as the final tie-break so every entry has one position
+    private static final Comparator<LeaderboardManager.LeaderboardEntry> RANK_ORDER =
+            LeaderboardManager.ENTRY_ORDER.thenComparing(entry -> entry.studentId);
+
+    public static class Change {
+        public final int type;
+        public final int fromPosition;
+        public final int toPosition;
+
+        Change(int type, int fromPosition, int toPosition) {
+            this.type = type;
+            this.fromPosition = fromPosition;
+            this.toPosition = toPosition;
+        }
+    }
+
+    private final List<LeaderboardManager.LeaderboardEntry> entries = new ArrayList<>();
+    private final Map<String, LeaderboardManager.LeaderboardEntry> byStudent = new HashMap<>();
+
+    /**
+     * Current ranking (copy, safe to hand to an adapter)
+     */
+    public List<LeaderboardManager.LeaderboardEntry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public LeaderboardManager.LeaderboardEntry get(String studentId) {
+        return byStudent.get(studentId);
+    }
+
+    public boolean contains(String studentId) {
+        return byStudent.containsKey(studentId);
+    }
+
+    /**
+     * Bring the ranking in line with the latest full list: students missing from it are removed,
+     * new or changed students are repositioned, unchanged students are left alone
+     */
+    public List<Change> replaceAll(List<LeaderboardManager.LeaderboardEntry> latest) {
+        List<Change> changes = new ArrayList<>();
+
+        Set<String> latestIds = new HashSet<>();
+        for (LeaderboardManager.LeaderboardEntry entry : latest) {
+            if (entry.studentId != null) latestIds.add(entry.studentId);
+        }
+        for (LeaderboardManager.LeaderboardEntry existing : new ArrayList<>(entries)) {
+            if (!latestIds.contains(existing.studentId)) {
+                changes.addAll(remove(existing.studentId));
+            }
+        }
+        for (LeaderboardManager.LeaderboardEntry entry : latest) {
+            if (entry.studentId != null) {
+                changes.addAll(upsert(entry));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Insert a student or move them to their new position
+     */
+    public List<Change> upsert(LeaderboardManager.LeaderboardEntry entry) {
+        List<Change> changes = new ArrayList<>();
+        LeaderboardManager.LeaderboardEntry existing = byStudent.get(entry.studentId);
+
+        if (existing == null) {
+            int position = insertionPoint(entry);
+            entries.add(position, entry);
+            byStudent.put(entry.studentId, entry);
+            changes.add(new Change(CHANGE_INSERT, position, position));
+            return changes;
+        }
+
+        if (existing.score == entry.score && existing.attemptsUsed == entry.attemptsUsed
+                && Objects.equals(existing.studentName, entry.studentName)) {
+            return changes;
+        }
+
+        int from = entries.indexOf(existing);
+        entries.remove(from);
+        int to = insertionPoint(entry);
+        entries.add(to, entry);
+        byStudent.put(entry.studentId, entry);
+
+        if (from != to) {
+            changes.add(new Change(CHANGE_MOVE, from, to));
+        }
+        changes.add(new Change(CHANGE_UPDATE, to, to));
+        return changes;
+    }
+
+    public List<Change> remove(String studentId) {
+        List<Change> changes = new ArrayList<>();
+        LeaderboardManager.LeaderboardEntry existing = byStudent.remove(studentId);
+        if (existing == null) return changes;
+
+        int position = entries.indexOf(existing);
+        entries.remove(position);
+        changes.add(new Change(CHANGE_REMOVE, position, position));
+        return changes;
+    }
+
+    private int insertionPoint(LeaderboardManager.LeaderboardEntry entry) {
+        int index = Collections.binarySearch(entries, entry, RANK_ORDER);
+        return index >= 0 ? index : -(index + 1);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.codeclash;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered lessons of a class plus one student's unlock/completion state per lesson, kept live by
+ * listeners (class doc for the order, LessonStateRepository for statuses and Progress).
+ * One shared instance per class and student, so every screen asking "what's next" or
+ * "can I proceed" gets a synchronous answer from memory. A graph stops (and is forgotten) when
+ * its last screen listener is removed or a Firestore listener fails, so the next get() starts fresh.
+ */
+public class LessonGraph {
+
+    private static final Map<String, LessonGraph> graphs = new HashMap<>();
+
+    private final String key;
+    private final String classCode;
+    private final String studentId;
+    private final LessonStateRepository states;
+    private final List<String> lessonOrder = new ArrayList<>();
+    private final Map<String, Integer> lessonPositions = new HashMap<>();
+    private final List<LessonStateRepository.OnLessonStateChangedListener> listeners = new ArrayList<>();
+
+    private ListenerRegistration orderRegistration;
+    private boolean orderLoaded = false;
+    private boolean stopped = false;
+
+    /**
+     * Shared graph for a class and student, started on first use. Call on the main thread.
+     */
+    public static synchronized LessonGraph get(String classCode, String studentId) {
+        String key = classCode + "|" + studentId;
+        LessonGraph graph = graphs.get(key);
+        if (graph == null) {
+            graph = new LessonGraph(key, classCode, studentId);
+            graph.start();
+            graphs.put(key, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * The running graph for a class and student, or null; never starts one
+     */
+    public static synchronized LessonGraph peek(String classCode, String studentId) {
+        return graphs.get(classCode + "|" + studentId);
+    }
+
+    private static synchronized void evict(LessonGraph graph) {
+        if (graphs.get(graph.key) == graph) {
+            graphs.remove(graph.key);
+        }
+        graph.stop();
+    }
+
+    /**
+     * Detach every graph's listeners (sign-out)
+     */
+    public static synchronized void clear() {
+        for (LessonGraph graph : graphs.values()) {
+            graph.stop();
+        }
+        graphs.clear();
+    }
+
+    private LessonGraph(String key, String classCode, String studentId) {
+        this.key = key;
+        this.classCode = classCode;
+        this.studentId = studentId;
+        this.states = new LessonStateRepository(classCode, studentId);
+    }
+
+    private void start() {
+        orderRegistration = FirebaseFirestore.getInstance()
+                .collection("Classes").document(classCode)
+                .addSnapshotListener((classDoc, error) -> {
+                    if (error != null) {
+                        System.out.println("❌ LessonGraph: Class listener failed for " + classCode + ": " + error.getMessage());
+                        fail(error);
+                        return;
+                    }
+                    if (classDoc == null) return;
+
+                    List<String> order = LessonManager.readLessonOrder(classDoc);
+                    if (orderLoaded && order.equals(lessonOrder)) return; // Some other class field changed
+                    lessonOrder.clear();
+                    lessonOrder.addAll(order);
+                    lessonPositions.clear();
+                    for (int i = 0; i < order.size(); i++) {
+                        lessonPositions.put(order.get(i), i);
+                    }
+                    orderLoaded = true;
+                    System.out.println("📚 LessonGraph: " + order.size() + " lessons in order for " + classCode);
+                    if (isLoaded()) dispatchChanged();
+                });
+
+        states.start(new LessonStateRepository.OnLessonStateChangedListener() {
+            @Override
+            public void onLessonStatesChanged() {
+                if (isLoaded()) dispatchChanged();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail(e);
+            }
+        });
+    }
+
+    // A failed Firestore listener is terminated; drop the graph instead of serving its frozen state
+    private void fail(Exception e) {
+        if (stopped) return;
+        dispatchFailure(e);
+        evict(this);
+    }
+
+    private void stop() {
+        stopped = true;
+        if (orderRegistration != null) {
+            orderRegistration.remove();
+            orderRegistration = null;
+        }
+        states.stop();
+        listeners.clear();
+    }
+
+    public void addListener(LessonStateRepository.OnLessonStateChangedListener listener) {
+        listeners.add(listener);
+        if (isLoaded()) listener.onLessonStatesChanged();
+    }
+
+    /**
+     * Removing the last listener stops the graph
+     */
+    public void removeListener(LessonStateRepository.OnLessonStateChangedListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && !stopped) evict(this);
+    }
+
+    /**
+     * True once the lesson order, statuses and Progress have all arrived, and until the graph stops
+     */
+    public boolean isLoaded() {
+        return !stopped && orderLoaded && states.isLoaded();
+    }
+
+    public List<String> getLessonOrder() {
+        return Collections.unmodifiableList(lessonOrder);
+    }
+
+    public LessonStateRepository.LessonState getLessonState(String lessonName) {
+        return states.getLessonState(lessonName);
+    }
+
+    /**
+     * Served from memory once loaded; falls back to LessonManager.getLessonStatus before that
+     */
+    public void getLessonStatus(String lessonName, LessonManager.OnLessonStatusCallback callback) {
+        if (stopped) {
+            LessonManager.getLessonStatus(classCode, lessonName, studentId, callback);
+            return;
+        }
+        states.getLessonStatus(lessonName, callback);
+    }
+
+    /**
+     * Lesson after the given one in class order, or null if it is the last (or unknown)
+     */
+    public String getNextLessonName(String lessonName) {
+        Integer position = lessonPositions.get(lessonName);
+        if (position == null || position + 1 >= lessonOrder.size()) return null;
+        return lessonOrder.get(position + 1);
+    }
+
+    /**
+     * Same answer LessonManager.canProceedToNextLesson gives, without any reads. Only valid once loaded.
+     */
+    public void canProceedToNextLesson(String currentLesson, LessonManager.OnProceedCallback callback) {
+        if (!getLessonState(currentLesson).isCompleted) {
+            callback.onSuccess(false, null, null);
+            return;
+        }
+        String nextLesson = getNextLessonName(currentLesson);
+        if (nextLesson == null) {
+            callback.onSuccess(false, null, null); // Completed all lessons
+            return;
+        }
+        String nextStatus = getLessonState(nextLesson).lessonStatus;
+        callback.onSuccess(!nextStatus.equals(LessonManager.STATUS_LOCKED), nextLesson, nextStatus);
+    }
+
+    private void dispatchChanged() {
+        for (LessonStateRepository.OnLessonStateChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onLessonStatesChanged();
+        }
+    }
+
+    private void dispatchFailure(Exception e) {
+        for (LessonStateRepository.OnLessonStateChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onFailure(e);
+        }
+    }
+}
@@ -4,7 +4,9 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class LessonManager {
@@ -80,23 +82,8 @@ public class LessonManager {
           .get()
           .addOnSuccessListener(progressDoc -> {
               
-              Map<String, String> activityStatus = new HashMap<>();
-              activityStatus.put("quiz", ACTIVITY_NOT_STARTED);
-              activityStatus.put("code_builder", ACTIVITY_NOT_STARTED);
-              activityStatus.put("compiler", ACTIVITY_NOT_STARTED);
-              
-              if (progressDoc.exists()) {
-                  Map<String, Object> data = progressDoc.getData();
-                  if (data != null) {
-                      activityStatus.put("quiz", (String) data.getOrDefault("quiz", ACTIVITY_NOT_STARTED));
-                      activityStatus.put("code_builder", (String) data.getOrDefault("code_builder", ACTIVITY_NOT_STARTED));
-                      activityStatus.put("compiler", (String) data.getOrDefault("compiler", ACTIVITY_NOT_STARTED));
-                  }
-              }
-              
-              boolean isCompleted = activityStatus.get("quiz").equals(ACTIVITY_COMPLETED) &&
-                                   activityStatus.get("code_builder").equals(ACTIVITY_COMPLETED) &&
-                                   activityStatus.get("compiler").equals(ACTIVITY_COMPLETED);
+              Map<String, String> activityStatus = readActivityStatus(progressDoc.exists() ? progressDoc.getData() : null);
+              boolean isCompleted = isLessonCompleted(activityStatus);
               
               String finalStatus = lessonStatus;
               if (isCompleted) {
@@ -110,6 +97,29 @@ public class LessonManager {
           .addOnFailureListener(callback::onFailure);
     }
     
+    /**
+     * Per-activity status from a Progress document's data (null means no progress yet)
+     */
+    static Map<String, String> readActivityStatus(Map<String, Object> data) {
+        Map<String, String> activityStatus = new HashMap<>();
+        activityStatus.put("quiz", ACTIVITY_NOT_STARTED);
+        activityStatus.put("code_builder", ACTIVITY_NOT_STARTED);
+        activityStatus.put("compiler", ACTIVITY_NOT_STARTED);
+        
+        if (data != null) {
+            activityStatus.put("quiz", (String) data.getOrDefault("quiz", ACTIVITY_NOT_STARTED));
+            activityStatus.put("code_builder", (String) data.getOrDefault("code_builder", ACTIVITY_NOT_STARTED));
+            activityStatus.put("compiler", (String) data.getOrDefault("compiler", ACTIVITY_NOT_STARTED));
+        }
+        return activityStatus;
+    }
+    
+    static boolean isLessonCompleted(Map<String, String> activityStatus) {
+        return ACTIVITY_COMPLETED.equals(activityStatus.get("quiz")) &&
+               ACTIVITY_COMPLETED.equals(activityStatus.get("code_builder")) &&
+               ACTIVITY_COMPLETED.equals(activityStatus.get("compiler"));
+    }
+    
     /**
      * Mark an activity as completed for a student
      */
@@ -259,6 +269,13 @@ public class LessonManager {
     public static void canProceedToNextLesson(String classCode, String currentLesson, String studentId,
                                             OnProceedCallback callback) {
         
+        // Synchronous answer from the lessons screen's graph once its listeners have delivered
+        LessonGraph graph = LessonGraph.peek(classCode, studentId);
+        if (graph != null && graph.isLoaded()) {
+            graph.canProceedToNextLesson(currentLesson, callback);
+            return;
+        }
+        
         // Check if current lesson is completed
         getLessonStatus(classCode, currentLesson, studentId, new OnLessonStatusCallback() {
             @Override
@@ -299,9 +316,38 @@ public class LessonManager {
     }
     
     private static void getNextLessonName(String classCode, String currentLesson, OnNextLessonCallback callback) {
-        // This would need to be implemented based on your lesson ordering
-        // For now, return null (no next lesson)
-        callback.onSuccess(null);
+        // Lessons are ordered by the class document's "lessons" array
+        getDb().collection("Classes").document(classCode)
+          .get()
+          .addOnSuccessListener(classDoc -> {
+              List<String> order = readLessonOrder(classDoc);
+              int position = order.indexOf(currentLesson);
+              callback.onSuccess(position >= 0 && position + 1 < order.size() ? order.get(position + 1) : null);
+          })
+          .addOnFailureListener(e -> callback.onSuccess(null));
+    }
+    
+    /**
+     * Lesson names in class order; entries are either plain names or maps with a "name" field
+     */
+    static List<String> readLessonOrder(DocumentSnapshot classDoc) {
+        List<String> order = new ArrayList<>();
+        Object lessonsObj = classDoc.get("lessons");
+        if (lessonsObj instanceof List<?>) {
+            for (Object lessonItem : (List<?>) lessonsObj) {
+                String lessonName = null;
+                if (lessonItem instanceof Map) {
+                    Object name = ((Map<?, ?>) lessonItem).get("name");
+                    if (name instanceof String) lessonName = (String) name;
+                } else if (lessonItem instanceof String) {
+                    lessonName = (String) lessonItem;
+                }
+                if (lessonName != null) {
+                    order.add(lessonName);
+                }
+            }
+        }
+        return order;
     }
     
     // Callback interfaces
@@ -0,0 +1,153 @@
+package com.example.codeclash;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lesson lock status for a class and one student's Progress in it, each kept live by a single
+ * collection listener. Rows in the lesson list bind from here instead of calling
+ * LessonManager.getLessonStatus, so binding never touches the network.
+ */
+public class LessonStateRepository {
+
+    public interface OnLessonStateChangedListener {
+        void onLessonStatesChanged();
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Same values LessonManager.getLessonStatus reports through its callback
+     */
+    public static class LessonState {
+        public final String lessonStatus;
+        public final Map<String, String> activityStatus;
+        public final boolean isCompleted;
+
+        LessonState(String lessonStatus, Map<String, String> activityStatus, boolean isCompleted) {
+            this.lessonStatus = lessonStatus;
+            this.activityStatus = activityStatus;
+            this.isCompleted = isCompleted;
+        }
+    }
+
+    private final String classCode;
+    private final String studentId;
+
+    // lessonName -> teacher-set status; lessons without a doc are locked
+    private final Map<String, String> lessonStatuses = new HashMap<>();
+    // lessonName -> activityType -> progress status
+    private final Map<String, Map<String, String>> progress = new HashMap<>();
+
+    private ListenerRegistration lessonsRegistration;
+    private ListenerRegistration progressRegistration;
+    private boolean lessonsLoaded = false;
+    private boolean progressLoaded = false;
+
+    public LessonStateRepository(String classCode, String studentId) {
+        this.classCode = classCode;
+        this.studentId = studentId;
+    }
+
+    /**
+     * Start (or restart) both subscriptions. Updates arrive on the main thread.
+     */
+    public void start(OnLessonStateChangedListener listener) {
+        stop();
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+
+        lessonsRegistration = db.collection("Classes").document(classCode)
+                .collection("Lessons")
+                .addSnapshotListener((snapshots, error) -> {
+                    if (error != null) {
+                        System.out.println("❌ LessonStateRepository: Lessons listener failed for " + classCode + ": " + error.getMessage());
+                        listener.onFailure(error);
+                        return;
+                    }
+                    if (snapshots == null) return;
+
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        DocumentSnapshot doc = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            lessonStatuses.remove(doc.getId());
+                        } else {
+                            String status = doc.getString("status");
+                            lessonStatuses.put(doc.getId(), status != null ? status : LessonManager.STATUS_LOCKED);
+                        }
+                    }
+                    lessonsLoaded = true;
+                    System.out.println("📚 LessonStateRepository: " + lessonStatuses.size() + " lesson statuses for " + classCode);
+                    if (isLoaded()) listener.onLessonStatesChanged();
+                });
+
+        progressRegistration = db.collection("Classes").document(classCode)
+                .collection("Students").document(studentId)
+                .collection("Progress")
+                .addSnapshotListener((snapshots, error) -> {
+                    if (error != null) {
+                        System.out.println("❌ LessonStateRepository: Progress listener failed for " + studentId + ": " + error.getMessage());
+                        listener.onFailure(error);
+                        return;
+                    }
+                    if (snapshots == null) return;
+
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        DocumentSnapshot doc = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            progress.remove(doc.getId());
+                        } else {
+                            progress.put(doc.getId(), LessonManager.readActivityStatus(doc.getData()));
+                        }
+                    }
+                    progressLoaded = true;
+                    System.out.println("📚 LessonStateRepository: " + progress.size() + " progress docs for " + studentId);
+                    if (isLoaded()) listener.onLessonStatesChanged();
+                });
+    }
+
+    public void stop() {
+        if (lessonsRegistration != null) {
+            lessonsRegistration.remove();
+            lessonsRegistration = null;
+        }
+        if (progressRegistration != null) {
+            progressRegistration.remove();
+            progressRegistration = null;
+        }
+    }
+
+    /**
+     * True once both listeners have delivered their first snapshot
+     */
+    public boolean isLoaded() {
+        return lessonsLoaded && progressLoaded;
+    }
+
+    public LessonState getLessonState(String lessonName) {
+        String status = lessonStatuses.get(lessonName);
+        if (status == null) status = LessonManager.STATUS_LOCKED;
+
+        Map<String, String> activityStatus = progress.get(lessonName);
+        if (activityStatus == null) activityStatus = LessonManager.readActivityStatus(null);
+
+        boolean isCompleted = LessonManager.isLessonCompleted(activityStatus);
+        return new LessonState(isCompleted ? LessonManager.STATUS_COMPLETED : status,
+                new HashMap<>(activityStatus), isCompleted);
+    }
+
+    /**
+     * Answers from memory once loaded; before that it falls back to LessonManager.getLessonStatus
+     */
+    public void getLessonStatus(String lessonName, LessonManager.OnLessonStatusCallback callback) {
+        if (!isLoaded()) {
+            LessonManager.getLessonStatus(classCode, lessonName, studentId, callback);
+            return;
+        }
+        LessonState state = getLessonState(lessonName);
+        callback.onSuccess(state.lessonStatus, state.activityStatus, state.isCompleted);
+    }
+}
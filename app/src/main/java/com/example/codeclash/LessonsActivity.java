@@ -24,6 +24,9 @@ public class LessonsActivity extends AppCompatActivity {
     private boolean isTeacher = false;
     private String classCode;
     private String currentUserId;
+    private StudentAttemptsRepository attemptsRepository;
+    private LessonGraph lessonGraph;
+    private LessonStateRepository.OnLessonStateChangedListener lessonStateListener;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,10 +51,43 @@ public class LessonsActivity extends AppCompatActivity {
         }
         currentUserId = currentUser.getUid();
         
+        if (classCode != null && !isTeacher) {
+            // One listener on the whole Attempts subcollection; dialogs read from it without network calls
+            attemptsRepository = new StudentAttemptsRepository(classCode, currentUserId);
+            attemptsRepository.start(new StudentAttemptsRepository.OnAttemptsChangedListener() {
+                @Override
+                public void onAttemptsChanged() {
+                    refreshOpenDialogs();
+                }
+                
+                @Override
+                public void onFailure(Exception e) {
+                    System.out.println("❌ LessonsActivity: Attempts listener failed: " + e.getMessage());
+                }
+            });
+        }
+        
         recyclerViewLessons = findViewById(R.id.recyclerViewLessons);
         recyclerViewLessons.setLayoutManager(new LinearLayoutManager(this));
         lessonAdapter = new LessonAdapter(lessonNames, isTeacher, this, classCode, currentUserId);
         recyclerViewLessons.setAdapter(lessonAdapter);
+        
+        if (classCode != null && !isTeacher) {
+            // Lesson order, statuses and Progress stay live in the shared graph; rows bind from it without reads
+            lessonGraph = LessonGraph.get(classCode, currentUserId);
+            lessonStateListener = new LessonStateRepository.OnLessonStateChangedListener() {
+                @Override
+                public void onLessonStatesChanged() {
+                    lessonAdapter.notifyDataSetChanged();
+                }
+                
+                @Override
+                public void onFailure(Exception e) {
+                    System.out.println("❌ LessonsActivity: Lesson state listener failed: " + e.getMessage());
+                }
+            };
+            lessonGraph.addListener(lessonStateListener);
+        }
 
         // Setup refresh button
         FloatingActionButton fabRefresh = findViewById(R.id.fabRefresh);
@@ -73,6 +109,25 @@ public class LessonsActivity extends AppCompatActivity {
         }
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (attemptsRepository != null) {
+            attemptsRepository.stop();
+        }
+        if (lessonGraph != null) {
+            lessonGraph.removeListener(lessonStateListener);
+        }
+    }
+    
+    StudentAttemptsRepository getAttemptsRepository() {
+        return attemptsRepository;
+    }
+    
+    LessonGraph getLessonGraph() {
+        return lessonGraph;
+    }
+    
     private void refreshLessons() {
         System.out.println("🔄 LessonsActivity: Refreshing lessons...");
         
@@ -102,8 +157,9 @@ public class LessonsActivity extends AppCompatActivity {
     
     public void refreshOpenDialogs() {
         System.out.println("🔄 LessonsActivity: Refreshing any open dialogs");
-        // This method can be called to refresh attempt data in any open dialogs
-        // For now, we'll rely on the dialog being reopened to get fresh data
+        if (lessonAdapter != null) {
+            lessonAdapter.refreshOpenModeDialog();
+        }
     }
 
     private void loadLessons() {
@@ -117,22 +173,7 @@ public class LessonsActivity extends AppCompatActivity {
         db.collection("Classes").document(classCode).get()
             .addOnSuccessListener(documentSnapshot -> {
                 lessonNames.clear();
-                Object lessonsObj = documentSnapshot.get("lessons");
-                if (lessonsObj instanceof List<?>) {
-                    List<?> lessons = (List<?>) lessonsObj;
-                    for (Object lessonItem : lessons) {
-                        String lessonName = null;
-                        if (lessonItem instanceof Map) {
-                            Map<String, Object> lessonMap = (Map<String, Object>) lessonItem;
-                            lessonName = (String) lessonMap.get("name");
-                        } else if (lessonItem instanceof String) {
-                            lessonName = (String) lessonItem;
-                        }
-                        if (lessonName != null) {
-                            lessonNames.add(lessonName);
-                        }
-                    }
-                }
+                lessonNames.addAll(LessonManager.readLessonOrder(documentSnapshot));
                 lessonAdapter.notifyDataSetChanged();
             })
             .addOnFailureListener(e -> {
@@ -147,6 +188,10 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
     private LessonsActivity activity;
     private String classCode;
     private String currentUserId;
+    // Mode dialog currently on screen, so live attempt changes can update its counts
+    private android.app.AlertDialog openModeDialog;
+    private android.view.View openModeDialogView;
+    private String openModeDialogLesson;
     
     public LessonAdapter(List<String> lessons, boolean isTeacher, LessonsActivity activity, 
                         String classCode, String currentUserId) { 
@@ -179,33 +224,21 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
             holder.lessonStatus.setText("Teacher Controls");
             holder.lessonStatus.setTextColor(activity.getResources().getColor(R.color.red_500));
         } else {
-            // Student sees lesson status
-            LessonManager.getLessonStatus(classCode, lessonName, currentUserId, 
-                new LessonManager.OnLessonStatusCallback() {
-                    @Override
-                    public void onSuccess(String lessonStatus, Map<String, String> activityStatus, boolean isCompleted) {
-                        activity.runOnUiThread(() -> {
-                            if (isCompleted) {
-                                holder.lessonStatus.setText("✓ Completed");
-                                holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_green_dark));
-                            } else if (lessonStatus.equals(LessonManager.STATUS_LOCKED)) {
-                                holder.lessonStatus.setText("🔒 Locked");
-                                holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_red_dark));
-                            } else {
-                                holder.lessonStatus.setText("📚 Available");
-                                holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_blue_dark));
-                            }
-                        });
-                    }
-                    
-                    @Override
-                    public void onFailure(Exception e) {
-                        activity.runOnUiThread(() -> {
-                            holder.lessonStatus.setText("Error");
-                            holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_red_dark));
-                        });
-                    }
-                });
+            // Student sees lesson status, bound from memory; rows rebind once the repository loads
+            LessonGraph graph = activity.getLessonGraph();
+            if (graph != null && graph.isLoaded()) {
+                LessonStateRepository.LessonState state = graph.getLessonState(lessonName);
+                if (state.isCompleted) {
+                    holder.lessonStatus.setText("✓ Completed");
+                    holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_green_dark));
+                } else if (state.lessonStatus.equals(LessonManager.STATUS_LOCKED)) {
+                    holder.lessonStatus.setText("🔒 Locked");
+                    holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_red_dark));
+                } else {
+                    holder.lessonStatus.setText("📚 Available");
+                    holder.lessonStatus.setTextColor(activity.getResources().getColor(android.R.color.holo_blue_dark));
+                }
+            }
         }
         
         // Handle click based on user role
@@ -216,7 +249,7 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
                 showTeacherOptions(lessonName);
             } else {
                 // Check if lesson is locked before allowing access
-                LessonManager.getLessonStatus(classCode, lessonName, currentUserId, 
+                getLessonStatus(lessonName, 
                     new LessonManager.OnLessonStatusCallback() {
                         @Override
                         public void onSuccess(String lessonStatus, Map<String, String> activityStatus, boolean isCompleted) {
@@ -479,6 +512,15 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
             showIndividualStudentAttemptControls(lessonName, activityType, selectedStudent);
         });
         
+        // Whole-class reset / add / set in batched writes
+        builder.setNeutralButton("All Students", (dialog, which) -> {
+            List<String> studentIds = new ArrayList<>();
+            for (StudentAttemptInfo student : students) {
+                studentIds.add(student.studentId);
+            }
+            BulkAttemptDialog.show(activity, classCode, lessonName, activityType, studentIds, null);
+        });
+        
         builder.setNegativeButton("Cancel", null);
         System.out.println("🔍 LessonsActivity: Showing student list dialog");
         builder.show();
@@ -582,8 +624,8 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
         
         // Set up button click listeners with attempt checking
         dialogView.findViewById(R.id.btnQuizMode).setOnClickListener(v -> {
-            LeaderboardManager.checkAttemptsRemaining(classCode, lessonName, LeaderboardManager.ACTIVITY_QUIZ, 
-                currentUserId, new LeaderboardManager.OnAttemptsCallback() {
+            checkAttemptsRemaining(lessonName, LeaderboardManager.ACTIVITY_QUIZ, 
+                new LeaderboardManager.OnAttemptsCallback() {
                     @Override
                     public void onSuccess(boolean canAttempt, int attemptsUsed, int maxAttempts) {
                         if (canAttempt) {
@@ -602,8 +644,8 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
         });
         
         dialogView.findViewById(R.id.btnCodeBuilder).setOnClickListener(v -> {
-            LeaderboardManager.checkAttemptsRemaining(classCode, lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER, 
-                currentUserId, new LeaderboardManager.OnAttemptsCallback() {
+            checkAttemptsRemaining(lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER, 
+                new LeaderboardManager.OnAttemptsCallback() {
                     @Override
                     public void onSuccess(boolean canAttempt, int attemptsUsed, int maxAttempts) {
                         if (canAttempt) {
@@ -630,9 +672,44 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
             dialog.dismiss();
         });
         
+        openModeDialog = dialog;
+        openModeDialogView = dialogView;
+        openModeDialogLesson = lessonName;
+        dialog.setOnDismissListener(d -> {
+            if (openModeDialog == dialog) {
+                openModeDialog = null;
+                openModeDialogView = null;
+                openModeDialogLesson = null;
+            }
+        });
         dialog.show();
     }
     
+    void refreshOpenModeDialog() {
+        if (openModeDialog != null && openModeDialog.isShowing()) {
+            loadAttemptCounts(openModeDialogView, openModeDialogLesson);
+        }
+    }
+    
+    private void getLessonStatus(String lessonName, LessonManager.OnLessonStatusCallback callback) {
+        LessonGraph graph = activity.getLessonGraph();
+        if (graph != null) {
+            graph.getLessonStatus(lessonName, callback);
+        } else {
+            LessonManager.getLessonStatus(classCode, lessonName, currentUserId, callback);
+        }
+    }
+    
+    // Served from the in-memory attempts snapshot; only falls back to a read before it has loaded
+    private void checkAttemptsRemaining(String lessonName, String activityType, LeaderboardManager.OnAttemptsCallback callback) {
+        StudentAttemptsRepository repository = activity.getAttemptsRepository();
+        if (repository != null) {
+            repository.checkAttemptsRemaining(lessonName, activityType, callback);
+        } else {
+            LeaderboardManager.checkAttemptsRemaining(classCode, lessonName, activityType, currentUserId, callback);
+        }
+    }
+    
     private void loadAttemptCounts(android.view.View dialogView, String lessonName) {
         android.widget.TextView quizAttemptText = dialogView.findViewById(R.id.quizAttemptCount);
         android.widget.TextView codeBuilderAttemptText = dialogView.findViewById(R.id.codeBuilderAttemptCount);
@@ -642,8 +719,8 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
         if (codeAttemptLoading != null) codeAttemptLoading.setVisibility(android.view.View.VISIBLE);
         
         // Load Quiz attempts
-        LeaderboardManager.checkAttemptsRemaining(classCode, lessonName, LeaderboardManager.ACTIVITY_QUIZ, 
-            currentUserId, new LeaderboardManager.OnAttemptsCallback() {
+        checkAttemptsRemaining(lessonName, LeaderboardManager.ACTIVITY_QUIZ, 
+            new LeaderboardManager.OnAttemptsCallback() {
                 @Override
                 public void onSuccess(boolean canAttempt, int attemptsUsed, int maxAttempts) {
                         activity.runOnUiThread(() -> {
@@ -671,8 +748,8 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
             });
     
         // Load Code Builder attempts
-        LeaderboardManager.checkAttemptsRemaining(classCode, lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER, 
-            currentUserId, new LeaderboardManager.OnAttemptsCallback() {
+        checkAttemptsRemaining(lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER, 
+            new LeaderboardManager.OnAttemptsCallback() {
                 @Override
                 public void onSuccess(boolean canAttempt, int attemptsUsed, int maxAttempts) {
                         activity.runOnUiThread(() -> {
@@ -702,7 +779,7 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
     
     private void launchQuizMode(String lessonName) {
         // Record attempt immediately before launching (attempts already checked in dialog)
-        LeaderboardManager.recordAttempt(classCode, lessonName, LeaderboardManager.ACTIVITY_QUIZ, currentUserId);
+        LeaderboardManager.recordAttempt(activity, classCode, lessonName, LeaderboardManager.ACTIVITY_QUIZ, currentUserId);
         
         android.content.Intent intent = new android.content.Intent(activity, GodotHostActivity.class);
         intent.putExtra("lessonName", mapLessonNameToGodot(lessonName)); // Convert for Godot
@@ -714,7 +791,7 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
     
     private void launchCodeBuilder(String lessonName) {
         // Record attempt immediately before launching (attempts already checked in dialog)
-        LeaderboardManager.recordAttempt(classCode, lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER, currentUserId);
+        LeaderboardManager.recordAttempt(activity, classCode, lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER, currentUserId);
         
         android.content.Intent intent = new android.content.Intent(activity, GodotHostActivity.class);
         intent.putExtra("lessonName", mapLessonNameToGodot(lessonName)); // Convert for Godot
@@ -726,7 +803,7 @@ class LessonAdapter extends RecyclerView.Adapter<LessonViewHolder> {
     
     private void launchCompilerMode(String lessonName) {
         // Record attempt immediately before launching (attempts already checked in dialog)
-        LeaderboardManager.recordAttempt(classCode, lessonName, LeaderboardManager.ACTIVITY_COMPILER, currentUserId);
+        LeaderboardManager.recordAttempt(activity, classCode, lessonName, LeaderboardManager.ACTIVITY_COMPILER, currentUserId);
         
                             android.content.Intent intent = new android.content.Intent(activity, CompilerModeActivity.class);
                             intent.putExtra("lessonName", lessonName);
@@ -158,32 +158,44 @@ public class MyClassesActivity extends AppCompatActivity implements ConnectionMa
     }
 
     private void loadJoinedClasses() {
-        db.collection("Users")
-                .document(studentUID)
-                .collection("MyJoinedClasses")
-                .get()
-                .addOnSuccessListener(querySnapshots -> {
-                    classList.clear();
-                    for (DocumentSnapshot doc : querySnapshots) {
-                        JoinedClass joinedClass = doc.toObject(JoinedClass.class);
-                        classList.add(joinedClass);
-                    }
-
-                    if (classList.isEmpty()) {
-                        emptyStateContainer.setVisibility(View.VISIBLE);
-                        recyclerView.setVisibility(View.GONE);
-                    } else {
-                        emptyStateContainer.setVisibility(View.GONE);
-                        recyclerView.setVisibility(View.VISIBLE);
-                    }
-
-                    adapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> {
-                    tvNoClasses.setText("Failed to load classes");
-                    emptyStateContainer.setVisibility(View.VISIBLE);
-                    recyclerView.setVisibility(View.GONE);
-                });
+        // Render the last resolved list straight away, then refresh it
+        List<JoinedClass> cached = JoinedClassRepository.getCached(studentUID);
+        if (cached != null) {
+            showClasses(cached);
+        }
+        
+        JoinedClassRepository.load(studentUID, new JoinedClassRepository.OnJoinedClassesCallback() {
+            @Override
+            public void onSuccess(List<JoinedClass> classes) {
+                showClasses(classes);
+            }
+            
+            @Override
+            public void onFailure(Exception e) {
+                if (!classList.isEmpty()) return; // Keep showing the cached list
+                tvNoClasses.setText("Failed to load classes");
+                emptyStateContainer.setVisibility(View.VISIBLE);
+                recyclerView.setVisibility(View.GONE);
+            }
+        });
+    }
+    
+    private void showClasses(List<JoinedClass> classes) {
+        if (isFinishing() || isDestroyed()) return;
+        classList.clear();
+        classList.addAll(classes);
+        
+        if (classList.isEmpty()) {
+            emptyStateContainer.setVisibility(View.VISIBLE);
+            recyclerView.setVisibility(View.GONE);
+        } else {
+            emptyStateContainer.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+        }
+        
+        if (adapter != null) {
+            adapter.notifyDataSetChanged();
+        }
     }
 
     @Override
@@ -217,27 +229,19 @@ public class MyClassesActivity extends AppCompatActivity implements ConnectionMa
                 }
                 
                 if (querySnapshot != null) {
-                    classList.clear();
-                    for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                        JoinedClass joinedClass = doc.toObject(JoinedClass.class);
-                        if (joinedClass != null) {
-                            classList.add(joinedClass);
-                        }
-                    }
-                    
-                    if (adapter != null) {
-                        adapter.notifyDataSetChanged();
-                    }
-                    
-                    // Update empty state
-                    if (classList.isEmpty()) {
-                        emptyStateContainer.setVisibility(View.VISIBLE);
-                        recyclerView.setVisibility(View.GONE);
-                    } else {
-                        emptyStateContainer.setVisibility(View.GONE);
-                        recyclerView.setVisibility(View.VISIBLE);
-                    }
-                    System.out.println("🔄 Classes list auto-reloaded: " + classList.size() + " classes");
+                    JoinedClassRepository.resolve(studentUID, querySnapshot.getDocuments(),
+                        new JoinedClassRepository.OnJoinedClassesCallback() {
+                            @Override
+                            public void onSuccess(List<JoinedClass> classes) {
+                                showClasses(classes);
+                                System.out.println("🔄 Classes list auto-reloaded: " + classes.size() + " classes");
+                            }
+                            
+                            @Override
+                            public void onFailure(Exception e) {
+                                System.out.println("❌ Classes listener resolve error: " + e.getMessage());
+                            }
+                        });
                 }
             });
     }
@@ -0,0 +1,125 @@
+package com.example.codeclash;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Token prefix index over a class roster (name, year level and block).
+ * A query matches a student when every query token is a prefix of one of the student's tokens,
+ * so "jo 2" finds "John Cruz" in year 2. Not thread-safe: build and query it from one thread.
+ */
+public class RosterSearchIndex {
+
+    // Sorts after every character a normalized token can contain
+    private static final char PREFIX_END = Character.MAX_VALUE;
+
+    // token -> studentIds having that token
+    private final TreeMap<String, Set<String>> tokens = new TreeMap<>();
+    // studentId -> tokens indexed for that student, and the text they came from
+    private final Map<String, Set<String>> studentTokens = new HashMap<>();
+    private final Map<String, String> indexedText = new HashMap<>();
+
+    /**
+     * Bring the index in line with the latest roster, re-tokenizing only students that were added
+     * or whose name/year/block changed
+     */
+    public void update(List<Student> roster) {
+        Set<String> present = new HashSet<>();
+        int changed = 0;
+        for (Student student : roster) {
+            if (student == null || student.studentId == null) continue;
+            present.add(student.studentId);
+            String text = searchableText(student);
+            if (!Objects.equals(indexedText.get(student.studentId), text)) {
+                remove(student.studentId);
+                add(student.studentId, text);
+                changed++;
+            }
+        }
+        for (String studentId : new ArrayList<>(studentTokens.keySet())) {
+            if (!present.contains(studentId)) {
+                remove(studentId);
+                changed++;
+            }
+        }
+        System.out.println("🔎 RosterSearchIndex: " + changed + " students re-indexed, " + studentTokens.size() + " total");
+    }
+
+    public void remove(String studentId) {
+        Set<String> owned = studentTokens.remove(studentId);
+        indexedText.remove(studentId);
+        if (owned == null) return;
+        for (String token : owned) {
+            Set<String> ids = tokens.get(token);
+            if (ids == null) continue;
+            ids.remove(studentId);
+            if (ids.isEmpty()) tokens.remove(token);
+        }
+    }
+
+    /**
+     * Ids of the students matching the query, or null when the query is blank (everyone matches)
+     */
+    public Set<String> search(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) return null;
+
+        Set<String> result = null;
+        for (String prefix : queryTokens) {
+            Set<String> matches = new HashSet<>();
+            SortedMap<String, Set<String>> range = tokens.subMap(prefix, prefix + PREFIX_END);
+            for (Set<String> ids : range.values()) {
+                matches.addAll(ids);
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.retainAll(matches);
+            }
+            if (result.isEmpty()) break;
+        }
+        return result;
+    }
+
+    private void add(String studentId, String text) {
+        Set<String> owned = new HashSet<>(tokenize(text));
+        for (String token : owned) {
+            Set<String> ids = tokens.get(token);
+            if (ids == null) {
+                ids = new HashSet<>();
+                tokens.put(token, ids);
+            }
+            ids.add(studentId);
+        }
+        studentTokens.put(studentId, owned);
+        indexedText.put(studentId, text);
+    }
+
+    private static String searchableText(Student student) {
+        return (student.fullName != null ? student.fullName : "") + " "
+                + (student.yearLevel != null ? student.yearLevel : "") + " "
+                + (student.block != null ? student.block : "");
+    }
+
+    // Lowercase, accents stripped, split on anything that is not a letter or digit
+    static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) return result;
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) result.add(token);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.codeclash;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-device copy of every score submission until its best-score transaction has committed.
+ * The transaction cannot be queued by Firestore the way a plain set() is, so it fails while
+ * offline and can give up under heavy contention on a rollup; the ledger keeps the best result
+ * per student and activity and replays it when the connection comes back (or after a short
+ * delay when it failed while online). Replays go through the same compare-and-keep-best
+ * transaction, so replaying a score the server already has changes nothing.
+ */
+public class ScoreLedger {
+    private static final String PREFS_NAME = "score_ledger";
+    private static final String KEY_ENTRIES = "entries";
+    private static final long RETRY_DELAY_MS = 30 * 1000L;
+
+    private static ScoreLedger instance;
+    private final SharedPreferences preferences;
+    // key (class/lesson_activity/student) -> best unconfirmed submission
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean retryScheduled = false;
+
+    public static class Entry {
+        public final String classCode;
+        public final String lessonName;
+        public final String activityType;
+        public final String studentId;
+        public final String studentName;
+        public final int score;
+        public final int attemptsUsed;
+
+        Entry(String classCode, String lessonName, String activityType, String studentId,
+              String studentName, int score, int attemptsUsed) {
+            this.classCode = classCode;
+            this.lessonName = lessonName;
+            this.activityType = activityType;
+            this.studentId = studentId;
+            this.studentName = studentName;
+            this.score = score;
+            this.attemptsUsed = attemptsUsed;
+        }
+    }
+
+    private ScoreLedger(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+        ConnectionManager.getInstance(context).addConnectionListener(new ConnectionManager.ConnectionListener() {
+            @Override
+            public void onConnectionChanged(boolean isConnected) {}
+
+            @Override
+            public void onConnectionRestored() {
+                replay();
+            }
+
+            @Override
+            public void onConnectionLost() {}
+        });
+    }
+
+    public static synchronized ScoreLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScoreLedger(context);
+        }
+        return instance;
+    }
+
+    public synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Store the best known submission for the key; it stays until a write covering its score commits
+     */
+    public synchronized void put(String key, Entry entry) {
+        entries.put(key, entry);
+        save();
+    }
+
+    /**
+     * A transaction left this score and attempt count on the server; drop the entry unless it
+     * still carries something newer (a better score or a different attempt count arrived since)
+     */
+    public synchronized void acknowledge(String key, int writtenScore, int writtenAttempts) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.score <= writtenScore && entry.attemptsUsed == writtenAttempts) {
+            entries.remove(key);
+            save();
+        }
+    }
+    
+    /**
+     * The write failed in a way a replay cannot fix; forget the submission
+     */
+    public synchronized void discard(String key) {
+        if (entries.remove(key) != null) {
+            save();
+        }
+    }
+    
+    /**
+     * Forget every submission, on logout so the next user never replays them
+     */
+    public synchronized void clear() {
+        entries.clear();
+        handler.removeCallbacksAndMessages(null);
+        retryScheduled = false;
+        preferences.edit().remove(KEY_ENTRIES).apply();
+    }
+
+    /**
+     * Replay everything still unconfirmed after a delay, for failures that happened while online
+     */
+    public synchronized void scheduleRetry() {
+        if (retryScheduled) return;
+        retryScheduled = true;
+        handler.postDelayed(() -> {
+            synchronized (this) {
+                retryScheduled = false;
+            }
+            replay();
+        }, RETRY_DELAY_MS);
+    }
+
+    /**
+     * Replay the signed-in student's unconfirmed scores; entries of any other account are left alone
+     */
+    public void replay() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return;
+        List<Entry> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (user.getUid().equals(entry.studentId)) pending.add(entry);
+            }
+        }
+        if (pending.isEmpty()) return;
+        System.out.println("🏆 ScoreLedger: Replaying " + pending.size() + " unconfirmed scores");
+        for (Entry entry : pending) {
+            LeaderboardManager.recordScore(entry.classCode, entry.lessonName, entry.activityType,
+                    entry.studentId, entry.studentName, entry.score, entry.attemptsUsed);
+        }
+    }
+
+    private void load() {
+        String raw = preferences.getString(KEY_ENTRIES, null);
+        if (raw == null) return;
+        try {
+            JSONObject object = new JSONObject(raw);
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                JSONObject item = object.getJSONObject(key);
+                entries.put(key, new Entry(item.getString("classCode"), item.getString("lessonName"),
+                        item.getString("activityType"), item.getString("studentId"),
+                        item.getString("studentName"), item.getInt("score"), item.getInt("attemptsUsed")));
+            }
+        } catch (JSONException e) {
+            System.out.println("❌ ScoreLedger: Corrupt ledger, starting empty: " + e.getMessage());
+            entries.clear();
+            preferences.edit().remove(KEY_ENTRIES).apply();
+        }
+    }
+
+    private void save() {
+        try {
+            JSONObject object = new JSONObject();
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                JSONObject item = new JSONObject();
+                item.put("classCode", entry.classCode);
+                item.put("lessonName", entry.lessonName);
+                item.put("activityType", entry.activityType);
+                item.put("studentId", entry.studentId);
+                item.put("studentName", entry.studentName);
+                item.put("score", entry.score);
+                item.put("attemptsUsed", entry.attemptsUsed);
+                object.put(mapEntry.getKey(), item);
+            }
+            preferences.edit().putString(KEY_ENTRIES, object.toString()).apply();
+        } catch (JSONException e) {
+            System.out.println("❌ ScoreLedger: Failed to save ledger: " + e.getMessage());
+        }
+    }
+}
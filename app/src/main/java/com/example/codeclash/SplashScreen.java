@@ -29,6 +29,9 @@ public class SplashScreen extends AppCompatActivity {
 
         // Initialize Firebase Auth
         mAuth = FirebaseAuth.getInstance();
+        UserNameManager.init(this);
+        LeaderboardManager.init(this);
+        AttemptLedger.init(this);
 
         // Get the root view (whatever the root element is)
         View rootView = findViewById(android.R.id.content);
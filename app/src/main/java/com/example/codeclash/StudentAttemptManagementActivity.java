@@ -2,6 +2,7 @@ package com.example.codeclash;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
@@ -237,15 +238,47 @@ public class StudentAttemptManagementActivity extends AppCompatActivity {
         });
     }
     
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_student_attempt_management, menu);
+        return true;
+    }
+    
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             onBackPressed();
             return true;
+        } else if (item.getItemId() == R.id.action_bulk_attempts) {
+            showBulkAttemptOptions();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
     
+    private void showBulkAttemptOptions() {
+        List<String> studentIds = new ArrayList<>();
+        for (StudentAttemptInfo student : students) {
+            studentIds.add(student.studentId);
+        }
+        if (studentIds.isEmpty()) {
+            Toast.makeText(this, "No students in this class", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        BulkAttemptDialog.show(this, classCode, lessonName, activityType, studentIds, (operation, value) -> {
+            // Mirror the batched write locally instead of re-reading every student
+            for (StudentAttemptInfo student : students) {
+                if (operation == LeaderboardManager.BULK_ADD) {
+                    student.attemptsUsed += value;
+                } else {
+                    student.attemptsUsed = operation == LeaderboardManager.BULK_SET ? value : 0;
+                }
+            }
+            adapter.notifyDataSetChanged();
+        });
+    }
+    
     // Student data class
     public static class StudentAttemptInfo {
         public String studentId;
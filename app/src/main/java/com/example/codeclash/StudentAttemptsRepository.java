@@ -0,0 +1,105 @@
+package com.example.codeclash;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory copy of one student's Attempts subcollection in one class, kept live by a single
+ * snapshot listener. Lookups are keyed by "lesson_activity" and answered without a network read.
+ * Local writes (recordAttempt, teacher changes synced down) show up through the same listener.
+ */
+public class StudentAttemptsRepository {
+
+    public interface OnAttemptsChangedListener {
+        void onAttemptsChanged();
+        void onFailure(Exception e);
+    }
+
+    private final String classCode;
+    private final String studentId;
+
+    // lesson_activity -> attemptsUsed
+    private final Map<String, Integer> attemptsUsed = new HashMap<>();
+    private ListenerRegistration registration;
+    private boolean loaded = false;
+
+    public StudentAttemptsRepository(String classCode, String studentId) {
+        this.classCode = classCode;
+        this.studentId = studentId;
+    }
+
+    /**
+     * Start (or restart) the subscription. Updates arrive on the main thread.
+     */
+    public void start(OnAttemptsChangedListener listener) {
+        stop();
+        registration = FirebaseFirestore.getInstance()
+                .collection("Classes").document(classCode)
+                .collection("Students").document(studentId)
+                .collection("Attempts")
+                .addSnapshotListener((snapshots, error) -> {
+                    if (error != null) {
+                        System.out.println("❌ StudentAttemptsRepository: Listener failed for " + studentId + ": " + error.getMessage());
+                        listener.onFailure(error);
+                        return;
+                    }
+                    if (snapshots == null) return;
+
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        DocumentSnapshot doc = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            attemptsUsed.remove(doc.getId());
+                        } else {
+                            Long used = doc.getLong("attemptsUsed");
+                            attemptsUsed.put(doc.getId(), used != null ? used.intValue() : 0);
+                        }
+                    }
+                    loaded = true;
+                    System.out.println("🎯 StudentAttemptsRepository: " + attemptsUsed.size() + " attempt records for " + studentId
+                            + (snapshots.getMetadata().isFromCache() ? " (cache)" : ""));
+                    listener.onAttemptsChanged();
+                });
+    }
+
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * True once the first snapshot (cache or server) has arrived
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int getAttemptsUsed(String lessonName, String activityType) {
+        Integer used = attemptsUsed.get(lessonName + "_" + activityType);
+        return used != null ? used : 0;
+    }
+
+    public boolean canAttempt(String lessonName, String activityType) {
+        return getAttemptsUsed(lessonName, activityType) < LeaderboardManager.MAX_ATTEMPTS;
+    }
+
+    /**
+     * Same contract as LeaderboardManager.checkAttemptsRemaining, but answered synchronously from
+     * memory once loaded. Before the first snapshot it falls back to the single-document read.
+     */
+    public void checkAttemptsRemaining(String lessonName, String activityType,
+                                       LeaderboardManager.OnAttemptsCallback callback) {
+        if (!loaded) {
+            LeaderboardManager.checkAttemptsRemaining(classCode, lessonName, activityType, studentId, callback);
+            return;
+        }
+        callback.onSuccess(canAttempt(lessonName, activityType),
+                getAttemptsUsed(lessonName, activityType), LeaderboardManager.MAX_ATTEMPTS);
+    }
+}
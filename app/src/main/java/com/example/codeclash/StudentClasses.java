@@ -19,6 +19,8 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.*;
 
+import java.util.List;
+
 import androidx.cardview.widget.CardView;
 
 public class StudentClasses extends AppCompatActivity {
@@ -74,65 +76,48 @@ public class StudentClasses extends AppCompatActivity {
         }
         String currentUserId = firebaseAuth.getCurrentUser().getUid();
 
-        // Load classes from the student's membership fan-out for reliable access under rules
-        firestore.collection("Users").document(currentUserId)
-                .collection("MyJoinedClasses")
-                .get()
-                .addOnSuccessListener(joinedSnapshot -> {
-                    if (joinedSnapshot.isEmpty()) {
-                        Toast.makeText(this, "No joined classes", Toast.LENGTH_SHORT).show();
-                        swipeRefreshLayout.setRefreshing(false);
-                        return;
-                    }
-
-                    // Track completion of all class loading
-                    int totalClasses = joinedSnapshot.size();
-                    final int[] completedClasses = {0};
-                    
-                    for (DocumentSnapshot joinedDoc : joinedSnapshot.getDocuments()) {
-                        String classCode = joinedDoc.getId();
-                        // Fetch the class document (rules allow GET for enrolled students)
-                        firestore.collection("Classes").document(classCode)
-                                .get()
-                                .addOnSuccessListener(classDoc -> {
-                                    if (!classDoc.exists()) {
-                                        completedClasses[0]++;
-                                        if (completedClasses[0] >= totalClasses) {
-                                            swipeRefreshLayout.setRefreshing(false);
-                                        }
-                                        return;
-                                    }
-                String yearLevel = classDoc.getString("yearLevel");
-                String block = classDoc.getString("block");
-                                    String teacherId = classDoc.getString("createdBy");
-                                    addClassCard(classCode, yearLevel, block, teacherId);
-                                    
-                                    completedClasses[0]++;
-                                    if (completedClasses[0] >= totalClasses) {
-                                        swipeRefreshLayout.setRefreshing(false);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    Log.e("StudentClasses", "Failed to load class " + classCode + ": " + e.getMessage());
-                                    completedClasses[0]++;
-                                    if (completedClasses[0] >= totalClasses) {
-                                        swipeRefreshLayout.setRefreshing(false);
-                            }
-                        });
+        // Render the last resolved list straight away, then refresh it
+        List<JoinedClass> cached = JoinedClassRepository.getCached(currentUserId);
+        if (cached != null && !cached.isEmpty()) {
+            showClassCards(cached);
+        }
+
+        // Membership fan-out, class docs and teacher names resolved in a fixed number of round trips
+        JoinedClassRepository.load(currentUserId, new JoinedClassRepository.OnJoinedClassesCallback() {
+            @Override
+            public void onSuccess(List<JoinedClass> classes) {
+                swipeRefreshLayout.setRefreshing(false);
+                if (classes.isEmpty()) {
+                    classListContainer.removeAllViews();
+                    Toast.makeText(StudentClasses.this, "No joined classes", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                showClassCards(classes);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(StudentClasses.this, "Failed to load student classes", Toast.LENGTH_SHORT).show();
+                Log.e("StudentClasses", "Failed to load MyJoinedClasses: " + e.getMessage());
+                swipeRefreshLayout.setRefreshing(false);
             }
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Failed to load student classes", Toast.LENGTH_SHORT).show();
-                    Log.e("StudentClasses", "Failed to load MyJoinedClasses: " + e.getMessage());
-                    swipeRefreshLayout.setRefreshing(false);
-                });
+        });
+    }
+
+    private void showClassCards(List<JoinedClass> classes) {
+        if (isFinishing() || isDestroyed()) return;
+        classListContainer.removeAllViews();
+        for (JoinedClass joinedClass : classes) {
+            addClassCard(joinedClass.getClassCode(), joinedClass.getYearLevel(), joinedClass.getBlock(),
+                    joinedClass.getTeacherId(), joinedClass.getTeacherName());
+        }
     }
 
     private void addClassCard(String classCode, String yearLevel, String block) {
-        addClassCard(classCode, yearLevel, block, null);
+        addClassCard(classCode, yearLevel, block, null, null);
     }
     
-    private void addClassCard(String classCode, String yearLevel, String block, String teacherId) {
+    private void addClassCard(String classCode, String yearLevel, String block, String teacherId, String teacherName) {
         CardView cardView = new CardView(this);
         cardView.setLayoutParams(new ViewGroup.LayoutParams(
                 ViewGroup.LayoutParams.MATCH_PARENT,
@@ -228,19 +213,9 @@ public class StudentClasses extends AppCompatActivity {
         mainLayout.addView(contentLayout);
         cardView.addView(mainLayout);
 
-        // Load teacher name asynchronously
+        // Teacher name was resolved in bulk before the cards were built
         if (teacherId != null && !teacherId.isEmpty()) {
-            UserNameManager.getTeacherName(teacherId, new UserNameManager.NameCallback() {
-                @Override
-                public void onSuccess(String teacherName) {
-                    teacherText.setText("👨‍🏫 " + teacherName);
-                }
-                
-                @Override
-                public void onFailure(String fallbackName) {
-                    teacherText.setText("👨‍🏫 Teacher not found");
-                }
-            });
+            teacherText.setText(teacherName != null ? "👨‍🏫 " + teacherName : "👨‍🏫 Teacher not found");
         } else {
             teacherText.setText("👨‍🏫 Teacher Unknown");
         }
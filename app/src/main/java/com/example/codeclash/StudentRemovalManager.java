@@ -0,0 +1,233 @@
+package com.example.codeclash;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes a student from a class together with everything they own in it:
+ * Attempts and Progress, leaderboard Scores (and their rollup entries), saved code,
+ * compiler submissions, attempt/join/leave requests and the MyJoinedClasses link.
+ *
+ * All documents are gathered with one round of parallel reads and deleted in chunked
+ * WriteBatches of up to 500 operations. The roster document is deleted in the last batch,
+ * so an interrupted removal leaves the student on the roster and simply running it again
+ * picks up whatever is left.
+ */
+public class StudentRemovalManager {
+    // Highest private-use code point; bounds a document id prefix range
+    private static final String PREFIX_END = "\uf8ff";
+
+    private static final String[] SCORE_ACTIVITIES = {
+            LeaderboardManager.ACTIVITY_QUIZ,
+            LeaderboardManager.ACTIVITY_CODE_BUILDER,
+            LeaderboardManager.ACTIVITY_COMPILER,
+            LeaderboardManager.ACTIVITY_OVERALL
+    };
+
+    public interface RemovalCallback {
+        void onProgress(int completedOperations, int totalOperations);
+        void onComplete(int totalOperations);
+        void onFailure(Exception e);
+    }
+
+    // One pending write: either a delete or an update of a leaderboard rollup
+    private static class Operation {
+        final DocumentReference ref;
+        final Map<String, Object> update; // null means delete
+
+        Operation(DocumentReference ref, Map<String, Object> update) {
+            this.ref = ref;
+            this.update = update;
+        }
+    }
+
+    private static FirebaseFirestore getDb() {
+        return FirebaseFirestore.getInstance();
+    }
+
+    public static void removeStudent(String classCode, String studentId, List<String> lessonNames,
+                                     RemovalCallback callback) {
+        if (classCode == null || studentId == null) {
+            callback.onFailure(new IllegalArgumentException("Class code and student ID are required"));
+            return;
+        }
+        System.out.println("🧹 StudentRemovalManager: Removing " + studentId + " from " + classCode);
+
+        DocumentReference classRef = getDb().collection("Classes").document(classCode);
+        DocumentReference studentRef = classRef.collection("Students").document(studentId);
+
+        // Everything whose ids are not known up front is found with one round of parallel reads
+        List<Task<QuerySnapshot>> collectionReads = new ArrayList<>();
+        collectionReads.add(studentRef.collection("Attempts").get());
+        collectionReads.add(studentRef.collection("Progress").get());
+        collectionReads.add(prefixQuery(classRef.collection("StudentCode"), studentId + "_"));
+        collectionReads.add(prefixQuery(classRef.collection("CompilerSubmissions"), studentId + "_"));
+        collectionReads.add(classRef.collection("AttemptRequests").whereEqualTo("studentId", studentId).get());
+
+        List<DocumentReference> rollupRefs = new ArrayList<>();
+        List<String[]> rollupKeys = new ArrayList<>();
+        List<Task<DocumentSnapshot>> rollupReads = new ArrayList<>();
+        for (String lesson : lessonNames) {
+            for (String activity : SCORE_ACTIVITIES) {
+                DocumentReference rollupRef = classRef.collection("Leaderboards").document(lesson + "_" + activity);
+                rollupRefs.add(rollupRef);
+                rollupKeys.add(new String[]{lesson, activity});
+                rollupReads.add(rollupRef.get());
+            }
+        }
+
+        List<Task<?>> allReads = new ArrayList<>(collectionReads);
+        allReads.addAll(rollupReads);
+        Tasks.whenAll(allReads)
+                .addOnSuccessListener(unused -> {
+                    List<Operation> operations = new ArrayList<>();
+                    // Truncated rollups losing an entry; the next-ranked student is moved up after the removal
+                    List<String[]> refills = new ArrayList<>();
+                    for (Task<QuerySnapshot> read : collectionReads) {
+                        for (DocumentSnapshot doc : read.getResult()) {
+                            operations.add(new Operation(doc.getReference(), null));
+                        }
+                    }
+                    for (int i = 0; i < rollupRefs.size(); i++) {
+                        DocumentReference rollupRef = rollupRefs.get(i);
+                        // Score docs are deleted blind; deleting a missing document is a no-op
+                        operations.add(new Operation(rollupRef.collection("Scores").document(studentId), null));
+                        DocumentSnapshot rollup = rollupReads.get(i).getResult();
+                        Map<String, Object> rollupUpdate = rollupRemoval(rollup, studentId);
+                        if (rollupUpdate != null) {
+                            operations.add(new Operation(rollupRef, rollupUpdate));
+                            if (Boolean.TRUE.equals(rollup.getBoolean("truncated"))) {
+                                refills.add(rollupKeys.get(i));
+                            }
+                        }
+                    }
+                    operations.add(new Operation(classRef.collection("JoinRequests").document(studentId), null));
+                    operations.add(new Operation(classRef.collection("LeaveRequests").document(studentId), null));
+                    operations.add(new Operation(getDb().collection("Users").document(studentId)
+                            .collection("MyJoinedClasses").document(classCode), null));
+                    // Roster doc goes last so a partial failure can be retried from the roster
+                    operations.add(new Operation(studentRef, null));
+
+                    commitInChunks(operations, refillAfter(classCode, refills, callback));
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ StudentRemovalManager: Failed to gather documents for " + studentId + ": " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    // Refills run once everything committed; the removal reports complete without waiting for them
+    private static RemovalCallback refillAfter(String classCode, List<String[]> refills, RemovalCallback callback) {
+        if (refills.isEmpty()) return callback;
+        return new RemovalCallback() {
+            @Override
+            public void onProgress(int completedOperations, int totalOperations) {
+                callback.onProgress(completedOperations, totalOperations);
+            }
+
+            @Override
+            public void onComplete(int totalOperations) {
+                for (String[] refill : refills) {
+                    LeaderboardManager.refillRollup(classCode, refill[0], refill[1])
+                            .addOnFailureListener(e -> System.out.println("❌ StudentRemovalManager: Rollup refill failed for "
+                                    + refill[0] + "_" + refill[1] + ": " + e.getMessage()));
+                }
+                callback.onComplete(totalOperations);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        };
+    }
+
+    private static Task<QuerySnapshot> prefixQuery(CollectionReference collection, String idPrefix) {
+        return collection
+                .whereGreaterThanOrEqualTo(FieldPath.documentId(), idPrefix)
+                .whereLessThan(FieldPath.documentId(), idPrefix + PREFIX_END)
+                .get();
+    }
+
+    /**
+     * Pulls the student's exact entry out of the rollup with arrayRemove, so a concurrent score
+     * write to the same rollup is never overwritten. Returns null when the student is not listed.
+     */
+    private static Map<String, Object> rollupRemoval(DocumentSnapshot rollup, String studentId) {
+        if (!rollup.exists()) return null;
+        Object raw = rollup.get("topEntries");
+        if (!(raw instanceof List)) return null;
+
+        List<Object> entries = new ArrayList<>();
+        for (Object item : (List<?>) raw) {
+            if (item instanceof Map && studentId.equals(((Map<?, ?>) item).get("studentId"))) {
+                entries.add(item);
+            }
+        }
+        if (entries.isEmpty()) return null;
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("topEntries", FieldValue.arrayRemove(entries.toArray()));
+        update.put("updatedAt", System.currentTimeMillis());
+        update.put("serverUpdatedAt", FieldValue.serverTimestamp());
+        return update;
+    }
+
+    // All chunks but the last commit in parallel; the last one (holding the roster doc) commits after them
+    private static void commitInChunks(List<Operation> operations, RemovalCallback callback) {
+        int total = operations.size();
+        List<List<Operation>> chunks = FirestoreChunks.partition(operations, FirestoreChunks.MAX_BATCH_OPERATIONS);
+        System.out.println("🧹 StudentRemovalManager: " + total + " operations in " + chunks.size() + " batch(es)");
+
+        List<Operation> finalChunk = chunks.remove(chunks.size() - 1);
+        int[] completed = {0};
+        List<Task<Void>> commits = new ArrayList<>();
+        for (List<Operation> chunk : chunks) {
+            commits.add(commit(chunk).addOnSuccessListener(unused -> {
+                completed[0] += chunk.size();
+                callback.onProgress(completed[0], total);
+            }));
+        }
+
+        Tasks.whenAll(commits)
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) throw task.getException();
+                    return commit(finalChunk);
+                })
+                .addOnSuccessListener(unused -> {
+                    callback.onProgress(total, total);
+                    System.out.println("✅ StudentRemovalManager: Removal complete (" + total + " operations)");
+                    callback.onComplete(total);
+                })
+                .addOnFailureListener(e -> {
+                    System.out.println("❌ StudentRemovalManager: Removal stopped after " + completed[0] + "/" + total
+                            + " operations, run again to resume: " + e.getMessage());
+                    callback.onFailure(e);
+                });
+    }
+
+    private static Task<Void> commit(List<Operation> chunk) {
+        WriteBatch batch = getDb().batch();
+        for (Operation operation : chunk) {
+            if (operation.update == null) {
+                batch.delete(operation.ref);
+            } else {
+                batch.update(operation.ref, operation.update);
+            }
+        }
+        return batch.commit();
+    }
+}
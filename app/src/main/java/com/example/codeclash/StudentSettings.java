@@ -40,6 +40,11 @@ public class StudentSettings extends AppCompatActivity {
 
     private void performLogout() {
         FirebaseAuth.getInstance().signOut();
+        LeaderboardCache.getInstance(this).clear();
+        ScoreLedger.getInstance(this).clear();
+        AttemptLedger.getInstance(this).clear();
+        LessonGraph.clear();
+        JoinedClassRepository.clear();
         Intent intent = new Intent(this, LoginActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
         startActivity(intent);
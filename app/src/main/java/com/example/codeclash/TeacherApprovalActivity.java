@@ -1,7 +1,9 @@
 package com.example.codeclash;
 
 import android.os.Bundle;
+import android.app.AlertDialog;
 import android.view.View;
+import android.widget.Button;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
@@ -13,19 +15,27 @@ import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.ListenerRegistration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class TeacherApprovalActivity extends AppCompatActivity {
     private FirebaseFirestore db;
     private ResilientFirebaseHelper resilientHelper;
     private String classCode;
     private String teacherUID;
+    private String teacherName; // Denormalized into the class summary on enrollment
     
     private RecyclerView joinRequestsRecyclerView;
     private RecyclerView leaveRequestsRecyclerView;
     private JoinRequestAdapter joinRequestAdapter;
     private LeaveRequestAdapter leaveRequestAdapter;
+    private Button joinApproveAllButton;
+    private Button joinRejectAllButton;
+    private Button leaveApproveAllButton;
+    private Button leaveRejectAllButton;
+    private boolean bulkInProgress = false;
     
     private List<JoinRequest> joinRequests = new ArrayList<>();
     private List<LeaveRequest> leaveRequests = new ArrayList<>();
@@ -51,6 +61,18 @@ public class TeacherApprovalActivity extends AppCompatActivity {
             return;
         }
         
+        UserNameManager.getUserName(teacherUID, new UserNameManager.NameCallback() {
+            @Override
+            public void onSuccess(String name) {
+                teacherName = name;
+            }
+            
+            @Override
+            public void onFailure(String fallbackName) {
+                // Summary is written without it; the class list resolves it on read
+            }
+        });
+        
         // Initialize UI
         initializeViews();
         setupRecyclerViews();
@@ -79,6 +101,15 @@ public class TeacherApprovalActivity extends AppCompatActivity {
     private void initializeViews() {
         joinRequestsRecyclerView = findViewById(R.id.joinRequestsRecyclerView);
         leaveRequestsRecyclerView = findViewById(R.id.leaveRequestsRecyclerView);
+        joinApproveAllButton = findViewById(R.id.joinApproveAllButton);
+        joinRejectAllButton = findViewById(R.id.joinRejectAllButton);
+        leaveApproveAllButton = findViewById(R.id.leaveApproveAllButton);
+        leaveRejectAllButton = findViewById(R.id.leaveRejectAllButton);
+        
+        joinApproveAllButton.setOnClickListener(v -> confirmBulkJoinAction(true));
+        joinRejectAllButton.setOnClickListener(v -> confirmBulkJoinAction(false));
+        leaveApproveAllButton.setOnClickListener(v -> confirmBulkLeaveAction(true));
+        leaveRejectAllButton.setOnClickListener(v -> confirmBulkLeaveAction(false));
     }
     
     private void setupRecyclerViews() {
@@ -91,6 +122,122 @@ public class TeacherApprovalActivity extends AppCompatActivity {
         leaveRequestAdapter = new LeaveRequestAdapter(leaveRequests, this::onLeaveRequestAction);
         leaveRequestsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         leaveRequestsRecyclerView.setAdapter(leaveRequestAdapter);
+        
+        joinRequestAdapter.setOnSelectionChangedListener(this::updateBulkButtons);
+        leaveRequestAdapter.setOnSelectionChangedListener(this::updateBulkButtons);
+    }
+    
+    /**
+     * Bulk buttons act on the checked requests, or on every pending request when none are checked
+     */
+    private void updateBulkButtons() {
+        int joinSelected = joinRequestAdapter.getSelectedRequests().size();
+        int leaveSelected = leaveRequestAdapter.getSelectedRequests().size();
+        joinApproveAllButton.setText(joinSelected > 0 ? "Approve Selected (" + joinSelected + ")" : "Approve All");
+        joinRejectAllButton.setText(joinSelected > 0 ? "Reject Selected (" + joinSelected + ")" : "Reject All");
+        leaveApproveAllButton.setText(leaveSelected > 0 ? "Approve Selected (" + leaveSelected + ")" : "Approve All");
+        leaveRejectAllButton.setText(leaveSelected > 0 ? "Reject Selected (" + leaveSelected + ")" : "Reject All");
+        
+        joinApproveAllButton.setEnabled(!bulkInProgress && !joinRequests.isEmpty());
+        joinRejectAllButton.setEnabled(!bulkInProgress && !joinRequests.isEmpty());
+        leaveApproveAllButton.setEnabled(!bulkInProgress && !leaveRequests.isEmpty());
+        leaveRejectAllButton.setEnabled(!bulkInProgress && !leaveRequests.isEmpty());
+    }
+    
+    private void confirmBulkJoinAction(boolean approve) {
+        List<JoinRequest> targets = joinRequestAdapter.getSelectedRequests();
+        if (targets.isEmpty()) targets = new ArrayList<>(joinRequests);
+        if (targets.isEmpty() || bulkInProgress) return;
+        
+        List<ClassRequestManager.PendingRequest> pending = new ArrayList<>();
+        for (JoinRequest request : targets) {
+            pending.add(new ClassRequestManager.PendingRequest(request.getRequestId(), request.getStudentId(), request.getStudentName()));
+        }
+        
+        new AlertDialog.Builder(this)
+                .setTitle(approve ? "Approve Join Requests" : "Reject Join Requests")
+                .setMessage((approve ? "Approve " : "Reject ") + pending.size() + " join request(s)?")
+                .setPositiveButton(approve ? "Approve" : "Reject", (dialog, which) -> {
+                    setBulkInProgress(true);
+                    ClassRequestManager.BatchCallback callback = bulkCallback(approve ? "approved" : "rejected", joinRequestAdapter::clearSelection);
+                    Set<String> liveIds = new HashSet<>();
+                    for (JoinRequest request : joinRequests) liveIds.add(request.getRequestId());
+                    List<ClassRequestManager.PendingRequest> live = stillPending(pending, liveIds);
+                    if (approve) {
+                        ClassRequestManager.approveJoinRequests(classCode, live, teacherName, callback);
+                    } else {
+                        ClassRequestManager.rejectJoinRequests(classCode, live, callback);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+    
+    private void confirmBulkLeaveAction(boolean approve) {
+        List<LeaveRequest> targets = leaveRequestAdapter.getSelectedRequests();
+        if (targets.isEmpty()) targets = new ArrayList<>(leaveRequests);
+        if (targets.isEmpty() || bulkInProgress) return;
+        
+        List<ClassRequestManager.PendingRequest> pending = new ArrayList<>();
+        for (LeaveRequest request : targets) {
+            pending.add(new ClassRequestManager.PendingRequest(request.getRequestId(), request.getStudentId(), request.getStudentName()));
+        }
+        
+        new AlertDialog.Builder(this)
+                .setTitle(approve ? "Approve Leave Requests" : "Reject Leave Requests")
+                .setMessage(approve
+                        ? "Remove " + pending.size() + " student(s) from this class?"
+                        : "Reject " + pending.size() + " leave request(s)? The students will stay in the class.")
+                .setPositiveButton(approve ? "Approve" : "Reject", (dialog, which) -> {
+                    setBulkInProgress(true);
+                    ClassRequestManager.BatchCallback callback = bulkCallback(approve ? "approved" : "rejected", leaveRequestAdapter::clearSelection);
+                    Set<String> liveIds = new HashSet<>();
+                    for (LeaveRequest request : leaveRequests) liveIds.add(request.getRequestId());
+                    List<ClassRequestManager.PendingRequest> live = stillPending(pending, liveIds);
+                    if (approve) {
+                        ClassRequestManager.approveLeaveRequests(classCode, live, callback);
+                    } else {
+                        ClassRequestManager.rejectLeaveRequests(classCode, live, callback);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+    
+    // The snapshot listeners keep the lists pending-only, so anything processed elsewhere since the dialog opened is dropped
+    private List<ClassRequestManager.PendingRequest> stillPending(List<ClassRequestManager.PendingRequest> pending, Set<String> liveIds) {
+        List<ClassRequestManager.PendingRequest> live = new ArrayList<>();
+        for (ClassRequestManager.PendingRequest request : pending) {
+            if (liveIds.contains(request.requestId)) live.add(request);
+        }
+        return live;
+    }
+    
+    // Processed requests leave the pending lists through the snapshot listeners
+    private ClassRequestManager.BatchCallback bulkCallback(String verb, Runnable clearSelection) {
+        return new ClassRequestManager.BatchCallback() {
+            @Override
+            public void onComplete(int processed, int failed) {
+                if (isFinishing() || isDestroyed()) return;
+                setBulkInProgress(false);
+                clearSelection.run();
+                String message = processed + " request(s) " + verb;
+                if (failed > 0) message += ", " + failed + " failed - try again";
+                Toast.makeText(TeacherApprovalActivity.this, message, Toast.LENGTH_SHORT).show();
+            }
+            
+            @Override
+            public void onFailure(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                setBulkInProgress(false);
+                Toast.makeText(TeacherApprovalActivity.this, "Failed to process requests: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        };
+    }
+    
+    private void setBulkInProgress(boolean inProgress) {
+        bulkInProgress = inProgress;
+        updateBulkButtons();
     }
     
     private void loadJoinRequests() {
@@ -111,6 +258,8 @@ public class TeacherApprovalActivity extends AppCompatActivity {
                   joinRequests.add(request);
               }
               joinRequestAdapter.notifyDataSetChanged();
+              resolveRequestNames();
+              updateBulkButtons();
               System.out.println("🔍 Loaded " + joinRequests.size() + " join requests");
           })
           .addOnFailureListener(e -> {
@@ -137,6 +286,8 @@ public class TeacherApprovalActivity extends AppCompatActivity {
                   leaveRequests.add(request);
               }
               leaveRequestAdapter.notifyDataSetChanged();
+              resolveRequestNames();
+              updateBulkButtons();
               System.out.println("🔍 Loaded " + leaveRequests.size() + " leave requests");
           })
           .addOnFailureListener(e -> {
@@ -145,6 +296,35 @@ public class TeacherApprovalActivity extends AppCompatActivity {
           });
     }
     
+    /**
+     * Replace the names stored on the requests with the students' signup names,
+     * resolving every pending join and leave request in one bulk lookup
+     */
+    private void resolveRequestNames() {
+        Set<String> studentIds = new HashSet<>();
+        for (JoinRequest request : joinRequests) {
+            if (request.getStudentId() != null) studentIds.add(request.getStudentId());
+        }
+        for (LeaveRequest request : leaveRequests) {
+            if (request.getStudentId() != null) studentIds.add(request.getStudentId());
+        }
+        if (studentIds.isEmpty()) return;
+        
+        UserNameManager.getUserNames(studentIds, names -> {
+            if (isFinishing() || isDestroyed()) return;
+            for (JoinRequest request : joinRequests) {
+                String name = names.get(request.getStudentId());
+                if (name != null) request.setStudentName(name);
+            }
+            for (LeaveRequest request : leaveRequests) {
+                String name = names.get(request.getStudentId());
+                if (name != null) request.setStudentName(name);
+            }
+            if (joinRequestAdapter != null) joinRequestAdapter.notifyDataSetChanged();
+            if (leaveRequestAdapter != null) leaveRequestAdapter.notifyDataSetChanged();
+        });
+    }
+    
     private void onJoinRequestAction(JoinRequest request, String action) {
         if ("approve".equals(action)) {
             approveJoinRequest(request);
@@ -211,15 +391,10 @@ public class TeacherApprovalActivity extends AppCompatActivity {
                       .collection("Students").document(studentId)
                       .set(studentData)
                       .addOnSuccessListener(aVoid -> {
-                          // Add class to student's MyJoinedClasses with class details
-                          Map<String, Object> classData = new HashMap<>();
-                          classData.put("classCode", classCode);
+                          // Add class to student's MyJoinedClasses with the denormalized class summary
+                          Map<String, Object> classData = ClassSummaryManager.buildSummary(classDoc, teacherName);
                           classData.put("joinedAt", System.currentTimeMillis());
                           
-                          // Add year and block info
-                          if (classYear != null) classData.put("yearLevel", classYear);
-                          if (classBlock != null) classData.put("block", classBlock);
-                          
                           db.collection("Users").document(studentId)
                             .collection("MyJoinedClasses").document(classCode)
                             .set(classData)
@@ -272,46 +447,30 @@ public class TeacherApprovalActivity extends AppCompatActivity {
     }
     
     private void approveLeaveRequest(LeaveRequest request) {
-        String studentId = request.getStudentId();
+        // Same removal cascade as the bulk action (scores, rollup entries, attempts, progress, requests)
+        List<ClassRequestManager.PendingRequest> pending = new ArrayList<>();
+        pending.add(new ClassRequestManager.PendingRequest(request.getRequestId(), request.getStudentId(), request.getStudentName()));
         
-        // Get class name for notification
-        db.collection("Classes").document(classCode)
-          .get()
-          .addOnSuccessListener(classDoc -> {
-              String className = classDoc.exists() ? classDoc.getString("className") : classCode;
-              
-              // Remove student from class
-              db.collection("Classes").document(classCode)
-                .collection("Students").document(studentId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Remove class from student's MyJoinedClasses
-                    db.collection("Users").document(studentId)
-                      .collection("MyJoinedClasses").document(classCode)
-                      .delete()
-                      .addOnSuccessListener(unused -> {
-                          // Update request status
-                          updateLeaveRequestStatus(request, "approved");
-                          
-                          // Send notification to student via FCM
-                          FCMHelper.sendLeaveRequestNotification(studentId, classCode, className, true);
-                          
-                          // Clean up all request documents for this student
-                          cleanupStudentRequests(studentId);
-                          
-                          Toast.makeText(this, "Leave request approved", Toast.LENGTH_SHORT).show();
-                      })
-                      .addOnFailureListener(e -> {
-                          Toast.makeText(this, "Failed to remove class from student: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                      });
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Failed to remove student from class: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-          })
-          .addOnFailureListener(e -> {
-              Toast.makeText(this, "Failed to fetch class info: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-          });
+        ClassRequestManager.approveLeaveRequests(classCode, pending, new ClassRequestManager.BatchCallback() {
+            @Override
+            public void onComplete(int processed, int failed) {
+                if (isFinishing() || isDestroyed()) return;
+                if (processed == 0) {
+                    Toast.makeText(TeacherApprovalActivity.this, "Failed to remove student from class - try again", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                leaveRequests.remove(request);
+                leaveRequestAdapter.notifyDataSetChanged();
+                updateBulkButtons();
+                Toast.makeText(TeacherApprovalActivity.this, "Leave request approved", Toast.LENGTH_SHORT).show();
+            }
+            
+            @Override
+            public void onFailure(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(TeacherApprovalActivity.this, "Failed to fetch class info: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     private void rejectLeaveRequest(LeaveRequest request) {
@@ -443,22 +602,6 @@ public class TeacherApprovalActivity extends AppCompatActivity {
         public void setStatus(String status) { this.status = status; }
     }
     
-    private void cleanupStudentRequests(String studentId) {
-        // Delete join request
-        db.collection("Classes").document(classCode)
-            .collection("JoinRequests").document(studentId)
-            .delete()
-            .addOnSuccessListener(aVoid -> System.out.println("✅ Cleaned up join request for " + studentId))
-            .addOnFailureListener(e -> System.out.println("❌ Failed to clean up join request: " + e.getMessage()));
-        
-        // Delete leave request
-        db.collection("Classes").document(classCode)
-            .collection("LeaveRequests").document(studentId)
-            .delete()
-            .addOnSuccessListener(aVoid -> System.out.println("✅ Cleaned up leave request for " + studentId))
-            .addOnFailureListener(e -> System.out.println("❌ Failed to clean up leave request: " + e.getMessage()));
-    }
-    
     private void startJoinRequestsListener() {
         if (joinRequestsListener != null) {
             joinRequestsListener.remove();
@@ -489,6 +632,8 @@ public class TeacherApprovalActivity extends AppCompatActivity {
                     if (joinRequestAdapter != null) {
                         joinRequestAdapter.notifyDataSetChanged();
                     }
+                    resolveRequestNames();
+                    updateBulkButtons();
                     
                     System.out.println("🔄 Join requests auto-reloaded: " + joinRequests.size() + " requests");
                 }
@@ -525,6 +670,8 @@ public class TeacherApprovalActivity extends AppCompatActivity {
                     if (leaveRequestAdapter != null) {
                         leaveRequestAdapter.notifyDataSetChanged();
                     }
+                    resolveRequestNames();
+                    updateBulkButtons();
                     
                     System.out.println("🔄 Leave requests auto-reloaded: " + leaveRequests.size() + " requests");
                 }
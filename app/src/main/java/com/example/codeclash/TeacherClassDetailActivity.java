@@ -2,6 +2,8 @@ package com.example.codeclash;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
@@ -11,6 +13,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.ImageButton;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -30,12 +33,18 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QuerySnapshot;
@@ -47,11 +56,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TeacherClassDetailActivity extends AppCompatActivity {
 
     private String classCode;
     private String className;
+    private String classYearLevel;
+    private String classBlock;
     private RecyclerView studentsRecyclerView;
     private SwipeRefreshLayout swipeRefreshLayout;
     private StudentAdapter studentAdapter;
@@ -59,7 +72,32 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
     private List<Student> filteredStudentsList = new ArrayList<>();
     private TextInputEditText searchEditText;
     private ListenerRegistration studentsListener;
-    private Map<String, ListenerRegistration> studentScoreListeners = new HashMap<>();
+    private ClassScoreMatrix scoreMatrix;
+    // Roster search: debounced on the main thread, matched and diffed on a background thread
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    private final RosterSearchIndex searchIndex = new RosterSearchIndex();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingSearch;
+    private int searchGeneration = 0;
+    private final Map<String, Integer> filteredPositions = new HashMap<>();
+    // Roster sort column; null keeps roster order
+    private String rosterSortLesson;
+    private String rosterSortActivity;
+    private ListenerRegistration scoresVersionListener;
+    private long latestScoresVersion = 0;
+    private boolean scoresListenerPrimed = false;
+
+    // Passing-rate chart per class, reused until a score in the class changes
+    private static final Map<String, ChartDataResult> chartCache = new HashMap<>();
+    private static final String[] CHART_ACTIVITIES = {
+            LeaderboardManager.ACTIVITY_QUIZ, LeaderboardManager.ACTIVITY_CODE_BUILDER, LeaderboardManager.ACTIVITY_COMPILER
+    };
+    private static final int[] CHART_PASSING_SCORES = {
+            LeaderboardManager.passingScore(LeaderboardManager.ACTIVITY_QUIZ),
+            LeaderboardManager.passingScore(LeaderboardManager.ACTIVITY_CODE_BUILDER),
+            LeaderboardManager.passingScore(LeaderboardManager.ACTIVITY_COMPILER)
+    };
     private Set<String> expandedStudentIds = new HashSet<>();
     private List<String> lessonNames = new ArrayList<>(); // Store lessons in order from Firestore
 
@@ -71,6 +109,8 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         // Get class information from intent
         classCode = getIntent().getStringExtra("classCode");
         className = getIntent().getStringExtra("className");
+        classYearLevel = getIntent().getStringExtra("yearLevel");
+        classBlock = getIntent().getStringExtra("block");
 
         // Set up UI - using toolbar title instead
         if (getSupportActionBar() != null) {
@@ -88,7 +128,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                filterStudents(s.toString());
+                scheduleSearch(s.toString());
             }
 
             @Override
@@ -248,6 +288,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                     if (owner != null && owner.equals(uid)) {
                         loadLessons(); // Load lessons first to get the correct order
                         loadStudents();
+                        startScoresVersionListener();
                     } else {
                         Toast.makeText(this, "You don't own this class", Toast.LENGTH_SHORT).show();
                         finish();
@@ -306,11 +347,107 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         } else if (itemId == R.id.action_review_submissions) {
             openCompilerSubmissionsReview();
             return true;
+        } else if (itemId == R.id.action_export_gradebook) {
+            exportGradebook();
+            return true;
+        } else if (itemId == R.id.action_sort_roster) {
+            showSortRosterOptions();
+            return true;
+        } else if (itemId == R.id.action_edit_class_details) {
+            showEditClassDetailsDialog();
+            return true;
+        } else if (itemId == R.id.action_class_leaderboards) {
+            openClassLeaderboards();
+            return true;
         }
 
         return super.onOptionsItemSelected(item);
     }
     
+    private void showEditClassDetailsDialog() {
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(48, 16, 48, 0);
+        
+        EditText editYear = new EditText(this);
+        editYear.setHint("Year level");
+        editYear.setText(classYearLevel != null ? classYearLevel : "");
+        EditText editBlock = new EditText(this);
+        editBlock.setHint("Block");
+        editBlock.setText(classBlock != null ? classBlock : "");
+        layout.addView(editYear);
+        layout.addView(editBlock);
+        
+        new AlertDialog.Builder(this)
+                .setTitle("Edit Class Details")
+                .setView(layout)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    String newYear = editYear.getText().toString().trim();
+                    String newBlock = editBlock.getText().toString().trim();
+                    if (newYear.isEmpty() || newBlock.isEmpty()) {
+                        Toast.makeText(this, "Year level and block cannot be empty", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    // Updates the class and every enrolled student's class summary
+                    ClassSummaryManager.updateClassDetails(classCode, newYear, newBlock, new ClassSummaryManager.PropagationCallback() {
+                        @Override
+                        public void onComplete(int studentsUpdated) {
+                            classYearLevel = newYear;
+                            classBlock = newBlock;
+                            if (isFinishing() || isDestroyed()) return;
+                            Toast.makeText(TeacherClassDetailActivity.this,
+                                    "Class updated for " + studentsUpdated + " students", Toast.LENGTH_SHORT).show();
+                        }
+                        
+                        @Override
+                        public void onFailure(Exception e) {
+                            if (isFinishing() || isDestroyed()) return;
+                            Toast.makeText(TeacherClassDetailActivity.this,
+                                    "Failed to update class: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+    
+    private void exportGradebook() {
+        List<String> lessonsList = lessonNames.isEmpty() ? getDefaultLessons() : new ArrayList<>(lessonNames);
+        Toast.makeText(this, "Exporting gradebook...", Toast.LENGTH_SHORT).show();
+
+        GradebookExporter.exportClass(this, classCode, lessonsList, new GradebookExporter.ExportCallback() {
+            @Override
+            public void onProgress(int studentsExported) {
+                System.out.println("📄 TeacherClassDetail: Exported " + studentsExported + " students so far");
+            }
+
+            @Override
+            public void onComplete(java.io.File file, int studentsExported) {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(TeacherClassDetailActivity.this,
+                        "Exported " + studentsExported + " students to " + file.getAbsolutePath(),
+                        Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(TeacherClassDetailActivity.this,
+                        "Gradebook export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Full class leaderboard in the teacher view: every student, paged while scrolling, Overall tab first
+     */
+    private void openClassLeaderboards() {
+        Intent intent = new Intent(this, StudentLeaderboardsActivity.class);
+        intent.putExtra("classCode", classCode);
+        intent.putExtra("isTeacher", true);
+        startActivity(intent);
+    }
+    
     private void openCompilerSubmissionsReview() {
         Intent intent = new Intent(this, CompilerSubmissionsReviewActivity.class);
         intent.putExtra("classCode", classCode);
@@ -324,6 +461,8 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         // Clear existing data
         studentsList.clear();
         filteredStudentsList.clear();
+        reindexFilteredStudents();
+        searchGeneration++; // Drop any search still running against the old roster
         if (studentAdapter != null) {
             studentAdapter.notifyDataSetChanged();
         }
@@ -337,31 +476,74 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         loadStudents();
     }
 
+    // Called on every keystroke; the search itself runs once typing pauses
+    private void scheduleSearch(String query) {
+        if (pendingSearch != null) {
+            searchHandler.removeCallbacks(pendingSearch);
+        }
+        pendingSearch = () -> filterStudents(query);
+        searchHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    // Hands the current roster to the search index; only changed students are re-tokenized
+    private void indexRoster() {
+        // The executor is shut down in onDestroy; a late callback must not submit to it
+        if (searchExecutor.isShutdown()) return;
+        List<Student> roster = new ArrayList<>(studentsList);
+        searchExecutor.execute(() -> searchIndex.update(roster));
+    }
+
+    /**
+     * Matches, sorts and diffs on the search executor, then publishes on the main thread.
+     * Only the most recent request is published; older results are dropped.
+     */
     private void filterStudents(String query) {
-        if (query == null) query = "";
-        String searchQuery = query.trim().toLowerCase();
-        
-        filteredStudentsList.clear();
-        
-        if (searchQuery.isEmpty()) {
-            // Show all students
-            filteredStudentsList.addAll(studentsList);
-        } else {
-            // Filter students based on name, year, or block
-            for (Student student : studentsList) {
-                String name = student.fullName != null ? student.fullName.toLowerCase() : "";
-                String year = student.yearLevel != null ? student.yearLevel.toLowerCase() : "";
-                String block = student.block != null ? student.block.toLowerCase() : "";
-                
-                if (name.contains(searchQuery) || year.contains(searchQuery) || block.contains(searchQuery)) {
-                    filteredStudentsList.add(student);
-                }
+        if (searchExecutor.isShutdown()) return;
+        String rawQuery = query == null ? "" : query;
+        boolean filtered = !rawQuery.trim().isEmpty();
+        int generation = ++searchGeneration;
+        List<Student> roster = new ArrayList<>(studentsList);
+        List<Student> previous = new ArrayList<>(filteredStudentsList);
+
+        // Sort keys come from the score matrix, which belongs to the main thread
+        Map<String, Integer> sortScores = null;
+        if (rosterSortLesson != null && scoreMatrix != null && scoreMatrix.isLoaded()) {
+            sortScores = new HashMap<>();
+            for (Student student : roster) {
+                sortScores.put(student.studentId, scoreMatrix.getScore(student.studentId, rosterSortLesson, rosterSortActivity));
             }
         }
+        Map<String, Integer> scoresForSort = sortScores;
+
+        searchExecutor.execute(() -> {
+            Set<String> matches = searchIndex.search(rawQuery);
+            List<Student> results = new ArrayList<>();
+            for (Student student : roster) {
+                if (matches == null || matches.contains(student.studentId)) {
+                    results.add(student);
+                }
+            }
+            // Order by the chosen score column (stable, so ties keep roster order)
+            if (scoresForSort != null) {
+                java.util.Collections.sort(results, (a, b) ->
+                        Integer.compare(scoresForSort.get(b.studentId), scoresForSort.get(a.studentId)));
+            }
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new StudentDiffCallback(previous, results));
+            searchHandler.post(() -> publishFilteredStudents(generation, rawQuery, filtered, results, diff));
+        });
+    }
+
+    private void publishFilteredStudents(int generation, String query, boolean filtered,
+                                         List<Student> results, DiffUtil.DiffResult diff) {
+        if (generation != searchGeneration || isFinishing() || isDestroyed()) return;
+
+        filteredStudentsList.clear();
+        filteredStudentsList.addAll(results);
+        reindexFilteredStudents();
         
         // Update adapter
         if (studentAdapter != null) {
-            studentAdapter.notifyDataSetChanged();
+            diff.dispatchUpdatesTo(studentAdapter);
         }
         
         // Update student count
@@ -369,7 +551,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         if (studentCountText != null) {
             int count = filteredStudentsList.size();
             String label = count == 1 ? "1 Student" : (count + " Students");
-            if (!searchQuery.isEmpty()) {
+            if (filtered) {
                 label += " (filtered)";
             }
             studentCountText.setText(label);
@@ -380,7 +562,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         TextView noStudentsText = findViewById(R.id.noStudentsText);
         if (emptyStateContainer != null && noStudentsText != null) {
             if (filteredStudentsList.isEmpty()) {
-                if (searchQuery.isEmpty()) {
+                if (!filtered) {
                     noStudentsText.setText("No students yet!");
                 } else {
                     noStudentsText.setText("No students found for \"" + query + "\"");
@@ -392,6 +574,41 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         }
     }
 
+    private static class StudentDiffCallback extends DiffUtil.Callback {
+        private final List<Student> oldList;
+        private final List<Student> newList;
+
+        StudentDiffCallback(List<Student> oldList, List<Student> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return java.util.Objects.equals(oldList.get(oldItemPosition).studentId, newList.get(newItemPosition).studentId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            Student oldStudent = oldList.get(oldItemPosition);
+            Student newStudent = newList.get(newItemPosition);
+            return oldStudent == newStudent
+                    || (java.util.Objects.equals(oldStudent.fullName, newStudent.fullName)
+                    && java.util.Objects.equals(oldStudent.yearLevel, newStudent.yearLevel)
+                    && java.util.Objects.equals(oldStudent.block, newStudent.block));
+        }
+    }
+
     private void showAttemptManagementOptions() {
         System.out.println("🔍 TeacherClassDetail: Showing attempt management options");
 
@@ -518,228 +735,123 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
             loadingContainer.setVisibility(View.VISIBLE);
             emptyStateContainer.setVisibility(View.GONE);
             barChart.setVisibility(View.GONE);
-            loadChartData(barChart, loadingContainer, emptyStateContainer);
+            loadChartData(barChart, loadingContainer, emptyStateContainer, true);
         });
         
         // Load chart data
-        loadChartData(barChart, loadingContainer, emptyStateContainer);
+        loadChartData(barChart, loadingContainer, emptyStateContainer, false);
     }
     
-    private void loadChartData(BarChart barChart, LinearLayout loadingContainer, LinearLayout emptyStateContainer) {
+    private void loadChartData(BarChart barChart, LinearLayout loadingContainer, LinearLayout emptyStateContainer,
+                               boolean forceRefresh) {
         System.out.println("🔍 TeacherClassDetail: Loading chart data for class: " + classCode);
         
+        // Reopening the dialog reuses the last result until a score in this class changes
+        ChartDataResult cached = forceRefresh ? null : chartCache.get(classCode);
+        if (cached != null) {
+            System.out.println("📊 TeacherClassDetail: Using cached chart data for " + classCode);
+            renderChart(barChart, loadingContainer, emptyStateContainer, cached);
+            return;
+        }
+        
         // Use lessons loaded from Firestore (same order as student lesson list)
         List<String> lessonsList = lessonNames.isEmpty() ? getDefaultLessons() : lessonNames;
         String[] lessons = lessonsList.toArray(new String[0]);
         
-        ChartDataResult result = new ChartDataResult();
-        loadAllLessonChartData(result, lessons, 0, barChart, loadingContainer, emptyStateContainer);
+        loadAllLessonChartData(lessons, barChart, loadingContainer, emptyStateContainer);
     }
     
-    private void loadAllLessonChartData(ChartDataResult result, String[] lessons, int lessonIndex,
-                                       BarChart barChart, LinearLayout loadingContainer, LinearLayout emptyStateContainer) {
+    /**
+     * Issues every lesson/activity aggregation at once and renders when all of them have settled.
+     * Each board needs two count() aggregations (attempted and passing) instead of a full Scores read.
+     */
+    private void loadAllLessonChartData(String[] lessons, BarChart barChart,
+                                        LinearLayout loadingContainer, LinearLayout emptyStateContainer) {
+        long scoresVersion = latestScoresVersion;
+        ChartDataResult result = new ChartDataResult();
+        List<Task<?>> pending = new ArrayList<>();
         
-        if (lessonIndex >= lessons.length) {
-            // All lessons processed, render chart
-            renderChart(barChart, loadingContainer, emptyStateContainer, result);
-            return;
+        for (String lesson : lessons) {
+            LessonChartData lessonData = new LessonChartData();
+            lessonData.lessonName = lesson;
+            result.lessonData.add(lessonData);
+            
+            for (int i = 0; i < CHART_ACTIVITIES.length; i++) {
+                int activityIndex = i;
+                CollectionReference scores = FirebaseFirestore.getInstance()
+                        .collection("Classes").document(classCode)
+                        .collection("Leaderboards").document(lesson + "_" + CHART_ACTIVITIES[i])
+                        .collection("Scores");
+                Task<AggregateQuerySnapshot> attemptedTask = scores
+                        .whereGreaterThanOrEqualTo("score", 0)
+                        .count()
+                        .get(AggregateSource.SERVER);
+                Task<AggregateQuerySnapshot> passingTask = scores
+                        .whereGreaterThanOrEqualTo("score", CHART_PASSING_SCORES[i])
+                        .count()
+                        .get(AggregateSource.SERVER);
+                
+                // Percentage only counts students who actually attempted the activity
+                Task<Void> joined = Tasks.whenAll(attemptedTask, passingTask)
+                        .addOnCompleteListener(task -> {
+                            int percent = 0;
+                            if (task.isSuccessful()) {
+                                long attempted = attemptedTask.getResult().getCount();
+                                long passing = passingTask.getResult().getCount();
+                                if (attempted > 0) {
+                                    percent = (int) Math.round((passing * 100.0) / attempted);
+                                }
+                            } else {
+                                result.complete = false;
+                                System.out.println("🔍 TeacherClassDetail: Error loading " + lesson + " " + CHART_ACTIVITIES[activityIndex]
+                                        + " chart data: " + (task.getException() != null ? task.getException().getMessage() : "unknown"));
+                            }
+                            lessonData.setPassingPercent(activityIndex, percent);
+                        });
+                pending.add(joined);
+            }
         }
         
-        String currentLesson = lessons[lessonIndex];
-        System.out.println("🔍 TeacherClassDetail: Loading chart data for " + currentLesson);
-        
-        LessonChartData lessonData = new LessonChartData();
-        lessonData.lessonName = currentLesson;
-        lessonData.quizPassingPercent = 0;
-        lessonData.codeBuilderPassingPercent = 0;
-        lessonData.compilerPassingPercent = 0;
-        
-        // Load quiz passing count
-        FirebaseFirestore.getInstance()
+        Tasks.whenAllComplete(pending).addOnCompleteListener(task -> {
+            if (isFinishing() || isDestroyed()) return;
+            result.scoresVersion = scoresVersion;
+            // A failed aggregation shows as 0% this time but must not stick in the cache
+            if (result.complete) {
+                chartCache.put(classCode, result);
+            } else {
+                chartCache.remove(classCode);
+                System.out.println("📊 TeacherClassDetail: Chart data incomplete, not caching for " + classCode);
+            }
+            renderChart(barChart, loadingContainer, emptyStateContainer, result);
+        });
+    }
+    
+    /**
+     * Every score write rewrites its board's rollup document (with serverUpdatedAt) in the same transaction,
+     * so one listener on the class Leaderboards collection tells us when cached chart data went stale.
+     * The version is the newest server timestamp, so a student's device clock cannot hold it back;
+     * any change delivered after the first snapshot also invalidates the cache outright.
+     */
+    private void startScoresVersionListener() {
+        if (scoresVersionListener != null) return;
+        scoresVersionListener = FirebaseFirestore.getInstance()
                 .collection("Classes").document(classCode)
-                .collection("Leaderboards").document(currentLesson + "_quiz")
-                .collection("Scores")
-                .get()
-                .addOnSuccessListener(quizSnapshot -> {
-                    int passingCount = 0;
-                    int attemptedCount = 0;
-                    for (DocumentSnapshot doc : quizSnapshot) {
-                        Long score = doc.getLong("score");
-                        if (score != null) {
-                            attemptedCount++; // Count students who attempted
-                            if (score >= 8) { // Quiz passing threshold: 8/15
-                            passingCount++;
-                        }
-                    }
+                .collection("Leaderboards")
+                .addSnapshotListener((snapshots, error) -> {
+                    if (error != null || snapshots == null) return;
+                    long version = 0;
+                    for (DocumentSnapshot doc : snapshots) {
+                        Timestamp updatedAt = doc.getTimestamp("serverUpdatedAt");
+                        if (updatedAt != null) version = Math.max(version, updatedAt.toDate().getTime());
                     }
-                    // Calculate percentage: (passing / attempted) * 100
-                    // Only count students who actually attempted the activity
-                    if (attemptedCount > 0) {
-                        lessonData.quizPassingPercent = (int) Math.round((passingCount * 100.0) / attemptedCount);
-                    } else {
-                        lessonData.quizPassingPercent = 0;
+                    boolean changedSinceFirst = scoresListenerPrimed && !snapshots.getDocumentChanges().isEmpty();
+                    scoresListenerPrimed = true;
+                    latestScoresVersion = Math.max(latestScoresVersion, version);
+                    ChartDataResult cached = chartCache.get(classCode);
+                    if (cached != null && (changedSinceFirst || cached.scoresVersion < version)) {
+                        chartCache.remove(classCode);
+                        System.out.println("📊 TeacherClassDetail: Scores changed, chart cache invalidated for " + classCode);
                     }
-                    
-                    // Load code builder passing count
-                    FirebaseFirestore.getInstance()
-                            .collection("Classes").document(classCode)
-                            .collection("Leaderboards").document(currentLesson + "_code_builder")
-                            .collection("Scores")
-                            .get()
-                            .addOnSuccessListener(codeSnapshot -> {
-                                int codePassingCount = 0;
-                                int codeAttemptedCount = 0;
-                                for (DocumentSnapshot doc : codeSnapshot) {
-                                    Long score = doc.getLong("score");
-                                    if (score != null) {
-                                        codeAttemptedCount++; // Count students who attempted
-                                        if (score >= 15) { // Code Builder passing threshold: 15/25
-                                        codePassingCount++;
-                                    }
-                                }
-                                }
-                                // Calculate percentage: (passing / attempted) * 100
-                                if (codeAttemptedCount > 0) {
-                                    lessonData.codeBuilderPassingPercent = (int) Math.round((codePassingCount * 100.0) / codeAttemptedCount);
-                                } else {
-                                    lessonData.codeBuilderPassingPercent = 0;
-                                }
-                                
-                                // Load compiler passing count
-                                FirebaseFirestore.getInstance()
-                                        .collection("Classes").document(classCode)
-                                        .collection("Leaderboards").document(currentLesson + "_compiler")
-                                        .collection("Scores")
-                                        .get()
-                                        .addOnSuccessListener(compilerSnapshot -> {
-                                            int compilerPassingCount = 0;
-                                            int compilerAttemptedCount = 0;
-                                            for (DocumentSnapshot doc : compilerSnapshot) {
-                                                Long score = doc.getLong("score");
-                                                if (score != null) {
-                                                    compilerAttemptedCount++; // Count students who attempted
-                                                    if (score >= 50) { // Compiler passing threshold: 50/100
-                                                        compilerPassingCount++;
-                                                    }
-                                                }
-                                            }
-                                            // Calculate percentage: (passing / attempted) * 100
-                                            if (compilerAttemptedCount > 0) {
-                                                lessonData.compilerPassingPercent = (int) Math.round((compilerPassingCount * 100.0) / compilerAttemptedCount);
-                                            } else {
-                                                lessonData.compilerPassingPercent = 0;
-                                            }
-                                
-                                result.lessonData.add(lessonData);
-                                loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                                        })
-                                        .addOnFailureListener(e -> {
-                                            System.out.println("🔍 TeacherClassDetail: Error loading compiler chart data: " + e.getMessage());
-                                            lessonData.compilerPassingPercent = 0;
-                                            result.lessonData.add(lessonData);
-                                            loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                                        });
-                            })
-                            .addOnFailureListener(e -> {
-                                System.out.println("🔍 TeacherClassDetail: Error loading code builder chart data: " + e.getMessage());
-                                lessonData.codeBuilderPassingPercent = 0;
-                                // Still try to load compiler
-                                FirebaseFirestore.getInstance()
-                                        .collection("Classes").document(classCode)
-                                        .collection("Leaderboards").document(currentLesson + "_compiler")
-                                        .collection("Scores")
-                                        .get()
-                                        .addOnSuccessListener(compilerSnapshot -> {
-                                            int compilerPassingCount = 0;
-                                            int compilerAttemptedCount = 0;
-                                            for (DocumentSnapshot doc : compilerSnapshot) {
-                                                Long score = doc.getLong("score");
-                                                if (score != null) {
-                                                    compilerAttemptedCount++;
-                                                    if (score >= 50) {
-                                                        compilerPassingCount++;
-                                                    }
-                                                }
-                                            }
-                                            if (compilerAttemptedCount > 0) {
-                                                lessonData.compilerPassingPercent = (int) Math.round((compilerPassingCount * 100.0) / compilerAttemptedCount);
-                                            } else {
-                                                lessonData.compilerPassingPercent = 0;
-                                            }
-                                            result.lessonData.add(lessonData);
-                                            loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                                        })
-                                        .addOnFailureListener(e2 -> {
-                                            lessonData.compilerPassingPercent = 0;
-                                            result.lessonData.add(lessonData);
-                                            loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                                        });
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    System.out.println("🔍 TeacherClassDetail: Error loading quiz chart data: " + e.getMessage());
-                    lessonData.quizPassingPercent = 0;
-                    // Still try to load code builder and compiler
-                    FirebaseFirestore.getInstance()
-                            .collection("Classes").document(classCode)
-                            .collection("Leaderboards").document(currentLesson + "_code_builder")
-                            .collection("Scores")
-                            .get()
-                            .addOnSuccessListener(codeSnapshot -> {
-                                int codePassingCount = 0;
-                                int codeAttemptedCount = 0;
-                                for (DocumentSnapshot doc : codeSnapshot) {
-                                    Long score = doc.getLong("score");
-                                    if (score != null) {
-                                        codeAttemptedCount++;
-                                        if (score >= 15) {
-                                            codePassingCount++;
-                                        }
-                                    }
-                                }
-                                if (codeAttemptedCount > 0) {
-                                    lessonData.codeBuilderPassingPercent = (int) Math.round((codePassingCount * 100.0) / codeAttemptedCount);
-                                } else {
-                                    lessonData.codeBuilderPassingPercent = 0;
-                                }
-                                
-                                FirebaseFirestore.getInstance()
-                                        .collection("Classes").document(classCode)
-                                        .collection("Leaderboards").document(currentLesson + "_compiler")
-                                        .collection("Scores")
-                                        .get()
-                                        .addOnSuccessListener(compilerSnapshot -> {
-                                            int compilerPassingCount = 0;
-                                            int compilerAttemptedCount = 0;
-                                            for (DocumentSnapshot doc : compilerSnapshot) {
-                                                Long score = doc.getLong("score");
-                                                if (score != null) {
-                                                    compilerAttemptedCount++;
-                                                    if (score >= 50) {
-                                                        compilerPassingCount++;
-                                                    }
-                                                }
-                                            }
-                                            if (compilerAttemptedCount > 0) {
-                                                lessonData.compilerPassingPercent = (int) Math.round((compilerPassingCount * 100.0) / compilerAttemptedCount);
-                                            } else {
-                                                lessonData.compilerPassingPercent = 0;
-                                            }
-                                            result.lessonData.add(lessonData);
-                                            loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                                        })
-                                        .addOnFailureListener(e2 -> {
-                                            lessonData.compilerPassingPercent = 0;
-                    result.lessonData.add(lessonData);
-                    loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                                        });
-                            })
-                            .addOnFailureListener(e2 -> {
-                                lessonData.codeBuilderPassingPercent = 0;
-                                lessonData.compilerPassingPercent = 0;
-                                result.lessonData.add(lessonData);
-                                loadAllLessonChartData(result, lessons, lessonIndex + 1, barChart, loadingContainer, emptyStateContainer);
-                            });
                 });
     }
     
@@ -901,6 +1013,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                 .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
                     @Override
                     public void onComplete(@NonNull Task<QuerySnapshot> task) {
+                        if (isFinishing() || isDestroyed()) return;
                         if (task.isSuccessful()) {
                             studentsList.clear();
                             for (DocumentSnapshot document : task.getResult()) {
@@ -937,8 +1050,10 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                             }
 
                             // Update filtered list and adapter
+                            indexRoster();
                             filteredStudentsList.clear();
                             filteredStudentsList.addAll(studentsList);
+                            reindexFilteredStudents();
                             studentAdapter = new StudentAdapter(filteredStudentsList);
                             studentsRecyclerView.setAdapter(studentAdapter);
                             
@@ -1012,65 +1127,35 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
     
     private void kickStudent(Student student) {
         String studentId = student.studentId;
+        List<String> lessonsList = lessonNames.isEmpty() ? getDefaultLessons() : new ArrayList<>(lessonNames);
         
-        // Get class name for notification
-        FirebaseFirestore.getInstance().collection("Classes").document(classCode)
-          .get()
-          .addOnSuccessListener(classDoc -> {
-              String className = classDoc.exists() ? classDoc.getString("className") : classCode;
-              
-              // Remove student from class
-              FirebaseFirestore.getInstance().collection("Classes").document(classCode)
-                .collection("Students").document(studentId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    // Remove class from student's MyJoinedClasses
-                    FirebaseFirestore.getInstance().collection("Users").document(studentId)
-                      .collection("MyJoinedClasses").document(classCode)
-                      .delete()
-                      .addOnSuccessListener(unused -> {
-                          // Send kick notification to student via FCM
-                          FCMHelper.sendKickNotification(studentId, classCode, className);
-                          
-                          // Clean up all request documents for this student
-                          cleanupStudentRequests(studentId, classCode);
-                          
-                          Toast.makeText(this, student.fullName + " has been removed from the class", Toast.LENGTH_SHORT).show();
-                          
-                          // Reload students list
-                          loadStudents();
-                      })
-                      .addOnFailureListener(e -> {
-                          Toast.makeText(this, "Failed to remove class from student: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                          // Still reload students list
-                          loadStudents();
-                      });
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Failed to remove student from class: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-          })
-          .addOnFailureListener(e -> {
-              Toast.makeText(this, "Failed to fetch class info: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-          });
-    }
-    
-    private void cleanupStudentRequests(String studentId, String classCode) {
-        // Delete join request
-        FirebaseFirestore.getInstance()
-            .collection("Classes").document(classCode)
-            .collection("JoinRequests").document(studentId)
-            .delete()
-            .addOnSuccessListener(aVoid -> System.out.println("✅ Cleaned up join request for " + studentId))
-            .addOnFailureListener(e -> System.out.println("❌ Failed to clean up join request: " + e.getMessage()));
-        
-        // Delete leave request
-        FirebaseFirestore.getInstance()
-            .collection("Classes").document(classCode)
-            .collection("LeaveRequests").document(studentId)
-            .delete()
-            .addOnSuccessListener(aVoid -> System.out.println("✅ Cleaned up leave request for " + studentId))
-            .addOnFailureListener(e -> System.out.println("❌ Failed to clean up leave request: " + e.getMessage()));
+        // Removes the roster entry plus all of the student's class data in chunked batches
+        StudentRemovalManager.removeStudent(classCode, studentId, lessonsList, new StudentRemovalManager.RemovalCallback() {
+            @Override
+            public void onProgress(int completedOperations, int totalOperations) {
+                System.out.println("🧹 TeacherClassDetail: Removing " + student.fullName + " " + completedOperations + "/" + totalOperations);
+            }
+            
+            @Override
+            public void onComplete(int totalOperations) {
+                // Send kick notification to student via FCM
+                FCMHelper.sendKickNotification(studentId, classCode, className != null ? className : classCode);
+                
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(TeacherClassDetailActivity.this, student.fullName + " has been removed from the class", Toast.LENGTH_SHORT).show();
+                
+                // Reload students list
+                loadStudents();
+            }
+            
+            @Override
+            public void onFailure(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                // The student stays on the roster until everything else is gone, so removing again resumes
+                Toast.makeText(TeacherClassDetailActivity.this, "Failed to remove student, please try again: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                loadStudents();
+            }
+        });
     }
     
     private void startStudentsListener() {
@@ -1098,10 +1183,8 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                     }
                     
                     // Update filtered list and adapter
+                    indexRoster();
                     filterStudents(searchEditText.getText().toString());
-                    if (studentAdapter != null) {
-                        studentAdapter.notifyDataSetChanged();
-                    }
                     
                     System.out.println("🔄 Students list auto-reloaded: " + studentsList.size() + " students");
                 }
@@ -1118,17 +1201,105 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (pendingSearch != null) {
+            searchHandler.removeCallbacks(pendingSearch);
+        }
+        searchExecutor.shutdownNow();
         stopStudentsListener();
-        // Remove all score listeners
-        for (ListenerRegistration listener : studentScoreListeners.values()) {
-            if (listener != null) {
-                listener.remove();
-            }
+        if (scoresVersionListener != null) {
+            scoresVersionListener.remove();
+            scoresVersionListener = null;
+        }
+        // Remove the class-wide score listener
+        if (scoreMatrix != null) {
+            scoreMatrix.stop();
+            scoreMatrix = null;
         }
-        studentScoreListeners.clear();
         System.out.println("🔍 TeacherClassDetail: Cleaned up all listeners in onDestroy");
     }
     
+    private void ensureScoreMatrix() {
+        if (scoreMatrix != null) return;
+        if (lessonNames.isEmpty()) {
+            lessonNames.addAll(getDefaultLessons());
+        }
+        scoreMatrix = new ClassScoreMatrix(classCode, lessonNames);
+        scoreMatrix.start(new ClassScoreMatrix.OnMatrixChangedListener() {
+            @Override
+            public void onScoresChanged(Set<String> studentIds) {
+                if (isFinishing() || isDestroyed() || studentAdapter == null) return;
+                if (studentIds.isEmpty() && rosterSortLesson != null) {
+                    // Scores arrived after a sort was picked; apply it now
+                    String currentSearch = searchEditText.getText() != null ? searchEditText.getText().toString() : "";
+                    filterStudents(currentSearch);
+                    return;
+                }
+                // Only expanded cards show scores; collapsed ones pick up the matrix when opened
+                for (String studentId : expandedStudentIds) {
+                    if (!studentIds.isEmpty() && !studentIds.contains(studentId)) continue;
+                    StudentViewHolder holder = studentAdapter.findViewHolderForStudent(studentId);
+                    if (holder != null && holder.expandableContainer.getVisibility() == View.VISIBLE) {
+                        int position = holder.getAdapterPosition();
+                        if (position == RecyclerView.NO_POSITION || position >= filteredStudentsList.size()) continue;
+                        studentAdapter.updateStudentScoresUI(filteredStudentsList.get(position), holder);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(TeacherClassDetailActivity.this, "Failed to load scores", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void showSortRosterOptions() {
+        ensureScoreMatrix();
+        List<String> lessonsList = new ArrayList<>(lessonNames);
+        String[] activities = {LeaderboardManager.ACTIVITY_QUIZ, LeaderboardManager.ACTIVITY_CODE_BUILDER, LeaderboardManager.ACTIVITY_COMPILER};
+        String[] activityLabels = {"Quiz", "Code Builder", "Compiler"};
+
+        List<String> labels = new ArrayList<>();
+        labels.add("Default order");
+        for (String lesson : lessonsList) {
+            for (int i = 0; i < activities.length; i++) {
+                String label = lesson + " - " + activityLabels[i];
+                if (scoreMatrix.isLoaded()) {
+                    int attempted = scoreMatrix.getColumnAttemptedCount(lesson, activities[i]);
+                    label += String.format(java.util.Locale.US, " (avg %.1f, %d/%d passed)",
+                            scoreMatrix.getColumnMean(lesson, activities[i]),
+                            scoreMatrix.getColumnPassCount(lesson, activities[i]), attempted);
+                }
+                labels.add(label);
+            }
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Sort Students by Score")
+                .setItems(labels.toArray(new String[0]), (dialog, which) -> {
+                    if (which == 0) {
+                        rosterSortLesson = null;
+                        rosterSortActivity = null;
+                    } else {
+                        rosterSortLesson = lessonsList.get((which - 1) / activities.length);
+                        rosterSortActivity = activities[(which - 1) % activities.length];
+                    }
+                    String currentSearch = searchEditText.getText() != null ? searchEditText.getText().toString() : "";
+                    filterStudents(currentSearch);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // Keeps studentId -> adapter position in step with filteredStudentsList
+    private void reindexFilteredStudents() {
+        filteredPositions.clear();
+        for (int i = 0; i < filteredStudentsList.size(); i++) {
+            filteredPositions.put(filteredStudentsList.get(i).studentId, i);
+        }
+    }
+
     private void updateStudentInfo(String studentId, String newName, String newYear, String newBlock) {
         Map<String, Object> updates = new HashMap<>();
         updates.put("fullName", newName);
@@ -1188,7 +1359,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                 holder.loadingContainer.setVisibility(View.VISIBLE);
                 holder.scoresContainer.setVisibility(View.GONE);
                 holder.noScoresContainer.setVisibility(View.GONE);
-                // Reload scores with real-time listeners
+                // Redraw scores from the class score matrix
                 loadDetailedStudentScores(student, holder);
             } else {
             // Initially hide expandable container
@@ -1215,12 +1386,11 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                     holder.scoresContainer.setVisibility(View.GONE);
                     holder.noScoresContainer.setVisibility(View.GONE);
                     
-                    // Load detailed student scores with real-time listeners
+                    // Load detailed student scores from the class score matrix
                     loadDetailedStudentScores(student, holder);
                 } else {
                     // Collapse - remove listeners for this student
                     expandedStudentIds.remove(student.studentId);
-                    removeStudentScoreListeners(student.studentId);
                     holder.expandableContainer.setVisibility(View.GONE);
                 }
             });
@@ -1235,12 +1405,6 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         private void loadDetailedStudentScores(Student student, StudentViewHolder holder) {
             System.out.println("🔍 TeacherClassDetail: Loading detailed scores for " + student.fullName + " (ID: " + student.studentId + ")");
 
-            // Remove old listeners for this student
-            removeStudentScoreListeners(student.studentId);
-
-            // Clear existing scores
-            holder.scoresContainer.removeAllViews();
-
             // Use lessons loaded from Firestore (same order as student lesson list)
             // If lessons haven't loaded yet, use fallback
             if (lessonNames.isEmpty()) {
@@ -1248,144 +1412,16 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                 lessonNames.addAll(getDefaultLessons());
             }
 
-            // Create map to store lesson scores (maintain order from lessonNames)
-            Map<String, LessonScore> lessonScoreMap = new HashMap<>();
-            for (String lesson : lessonNames) {
-            LessonScore lessonScore = new LessonScore();
-                lessonScore.lessonName = lesson;
-            lessonScore.quizScore = 0;
-            lessonScore.quizAttempts = 0;
-            lessonScore.codeBuilderScore = 0;
-            lessonScore.codeBuilderAttempts = 0;
-            lessonScore.compilerScore = 0;
-            lessonScore.compilerAttempts = 0;
-                lessonScoreMap.put(lesson, lessonScore);
-            }
-
-            // Add real-time listeners for each lesson and activity (in order from lessonNames)
-            for (String lessonName : lessonNames) {
-                // Quiz score listener
-                String quizKey = student.studentId + "_" + lessonName + "_quiz";
-                ListenerRegistration quizListener = FirebaseFirestore.getInstance()
-                    .collection("Classes").document(classCode)
-                    .collection("Leaderboards").document(lessonName + "_quiz")
-                    .collection("Scores").document(student.studentId)
-                    .addSnapshotListener((snapshot, error) -> {
-                        if (error != null || isFinishing() || isDestroyed()) return;
-                        
-                        LessonScore lessonScore = lessonScoreMap.get(lessonName);
-                        if (lessonScore != null && snapshot != null && snapshot.exists()) {
-                            Long score = snapshot.getLong("score");
-                            Long attempts = snapshot.getLong("attemptsUsed");
-                            if (score != null) lessonScore.quizScore = score.intValue();
-                            if (attempts != null) lessonScore.quizAttempts = attempts.intValue();
-                            System.out.println("🔍 TeacherClassDetail: Real-time update - " + lessonName + " Quiz - Score: " + lessonScore.quizScore + ", Attempts: " + lessonScore.quizAttempts);
-                        } else if (lessonScore != null) {
-                            lessonScore.quizScore = 0;
-                            lessonScore.quizAttempts = 0;
-                        }
-                        
-                        // Update UI on main thread
-                        runOnUiThread(() -> {
-                            if (isFinishing() || isDestroyed()) return;
-                            // Find the holder again in case RecyclerView recycled it
-                            StudentViewHolder currentHolder = findViewHolderForStudent(student.studentId);
-                            if (currentHolder != null && currentHolder.expandableContainer.getVisibility() == View.VISIBLE) {
-                                // Holder found and card is expanded - update directly
-                                updateStudentScoresUI(student, currentHolder, new ArrayList<>(lessonScoreMap.values()));
-                            } else {
-                                // Holder not found or card collapsed - notify adapter to rebind
-                                // This will reload scores if card is expanded
-                                int position = findStudentPosition(student.studentId);
-                                if (position >= 0 && studentAdapter != null) {
-                                    studentAdapter.notifyItemChanged(position);
-                                }
-                            }
-                        });
-                    });
-                studentScoreListeners.put(quizKey, quizListener);
-
-                // Code builder score listener
-                String codeBuilderKey = student.studentId + "_" + lessonName + "_code_builder";
-                ListenerRegistration codeBuilderListener = FirebaseFirestore.getInstance()
-                                .collection("Classes").document(classCode)
-                    .collection("Leaderboards").document(lessonName + "_code_builder")
-                                .collection("Scores").document(student.studentId)
-                    .addSnapshotListener((snapshot, error) -> {
-                        if (error != null || isFinishing() || isDestroyed()) return;
-                        
-                        LessonScore lessonScore = lessonScoreMap.get(lessonName);
-                        if (lessonScore != null && snapshot != null && snapshot.exists()) {
-                            Long score = snapshot.getLong("score");
-                            Long attempts = snapshot.getLong("attemptsUsed");
-                                        if (score != null) lessonScore.codeBuilderScore = score.intValue();
-                                        if (attempts != null) lessonScore.codeBuilderAttempts = attempts.intValue();
-                            System.out.println("🔍 TeacherClassDetail: Real-time update - " + lessonName + " Code Builder - Score: " + lessonScore.codeBuilderScore + ", Attempts: " + lessonScore.codeBuilderAttempts);
-                        } else if (lessonScore != null) {
-                            lessonScore.codeBuilderScore = 0;
-                            lessonScore.codeBuilderAttempts = 0;
-                                    }
-
-                        // Update UI on main thread
-                        runOnUiThread(() -> {
-                            if (isFinishing() || isDestroyed()) return;
-                            // Find the holder again in case RecyclerView recycled it
-                            StudentViewHolder currentHolder = findViewHolderForStudent(student.studentId);
-                            if (currentHolder != null && currentHolder.expandableContainer.getVisibility() == View.VISIBLE) {
-                                // Holder found and card is expanded - update directly
-                                updateStudentScoresUI(student, currentHolder, new ArrayList<>(lessonScoreMap.values()));
-                            } else {
-                                // Holder not found or card collapsed - notify adapter to rebind
-                                // This will reload scores if card is expanded
-                                int position = findStudentPosition(student.studentId);
-                                if (position >= 0 && studentAdapter != null) {
-                                    studentAdapter.notifyItemChanged(position);
-                                }
-                            }
-                        });
-                    });
-                studentScoreListeners.put(codeBuilderKey, codeBuilderListener);
-
-                // Compiler score listener
-                String compilerKey = student.studentId + "_" + lessonName + "_compiler";
-                ListenerRegistration compilerListener = FirebaseFirestore.getInstance()
-                    .collection("Classes").document(classCode)
-                    .collection("Leaderboards").document(lessonName + "_compiler")
-                    .collection("Scores").document(student.studentId)
-                    .addSnapshotListener((snapshot, error) -> {
-                        if (error != null || isFinishing() || isDestroyed()) return;
-                        
-                        LessonScore lessonScore = lessonScoreMap.get(lessonName);
-                        if (lessonScore != null && snapshot != null && snapshot.exists()) {
-                            Long score = snapshot.getLong("score");
-                            Long attempts = snapshot.getLong("attemptsUsed");
-                            if (score != null) lessonScore.compilerScore = score.intValue();
-                            if (attempts != null) lessonScore.compilerAttempts = attempts.intValue();
-                            System.out.println("🔍 TeacherClassDetail: Real-time update - " + lessonName + " Compiler - Score: " + lessonScore.compilerScore + ", Attempts: " + lessonScore.compilerAttempts);
-                        } else if (lessonScore != null) {
-                            lessonScore.compilerScore = 0;
-                            lessonScore.compilerAttempts = 0;
-                        }
-                        
-                        // Update UI on main thread
-                        runOnUiThread(() -> {
-                            if (isFinishing() || isDestroyed()) return;
-                            StudentViewHolder currentHolder = findViewHolderForStudent(student.studentId);
-                            if (currentHolder != null && currentHolder.expandableContainer.getVisibility() == View.VISIBLE) {
-                                updateStudentScoresUI(student, currentHolder, new ArrayList<>(lessonScoreMap.values()));
-                            } else {
-                                int position = findStudentPosition(student.studentId);
-                                if (position >= 0 && studentAdapter != null) {
-                                    studentAdapter.notifyItemChanged(position);
-                                }
-                            }
-                        });
-                    });
-                studentScoreListeners.put(compilerKey, compilerListener);
+            // Every expanded card reads from the one class-wide subscription
+            ensureScoreMatrix();
+            if (!scoreMatrix.isLoaded()) {
+                // First snapshot still on its way; onScoresChanged fills this card in
+                return;
             }
+            displayLessonScores(student, holder);
         }
 
-        private void updateStudentScoresUI(Student student, StudentViewHolder holder, List<LessonScore> lessonScores) {
+        private void updateStudentScoresUI(Student student, StudentViewHolder holder) {
             if (isFinishing() || isDestroyed() || holder == null) return;
             
             // Verify holder is still bound to this student
@@ -1400,24 +1436,7 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                 return;
             }
             
-            displayLessonScores(student, holder, lessonScores);
-        }
-
-        private void removeStudentScoreListeners(String studentId) {
-            List<String> keysToRemove = new ArrayList<>();
-            for (String key : studentScoreListeners.keySet()) {
-                if (key.startsWith(studentId + "_")) {
-                    ListenerRegistration listener = studentScoreListeners.get(key);
-                    if (listener != null) {
-                        listener.remove();
-                    }
-                    keysToRemove.add(key);
-                }
-            }
-            for (String key : keysToRemove) {
-                studentScoreListeners.remove(key);
-            }
-            System.out.println("🔍 TeacherClassDetail: Removed " + keysToRemove.size() + " listeners for student " + studentId);
+            displayLessonScores(student, holder);
         }
 
         private StudentViewHolder findViewHolderForStudent(String studentId) {
@@ -1437,19 +1456,15 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
         }
 
         private int findStudentPosition(String studentId) {
-            for (int i = 0; i < filteredStudentsList.size(); i++) {
-                if (filteredStudentsList.get(i).studentId.equals(studentId)) {
-                    return i;
-                }
-            }
-            return -1;
+            Integer position = filteredPositions.get(studentId);
+            return position != null ? position : -1;
         }
 
-        private void displayLessonScores(Student student, StudentViewHolder holder, List<LessonScore> lessonScores) {
+        private void displayLessonScores(Student student, StudentViewHolder holder) {
             // Hide loading
             holder.loadingContainer.setVisibility(View.GONE);
 
-            if (lessonScores.isEmpty()) {
+            if (lessonNames.isEmpty()) {
                 holder.noScoresContainer.setVisibility(View.VISIBLE);
                 holder.scoresContainer.setVisibility(View.GONE);
                 return;
@@ -1461,26 +1476,12 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
             // Clear and rebuild all views
             holder.scoresContainer.removeAllViews();
 
-            // Create a map for quick lookup
-            Map<String, LessonScore> lessonScoreMap = new HashMap<>();
-            for (LessonScore score : lessonScores) {
-                lessonScoreMap.put(score.lessonName, score);
-            }
-
             // Add lesson score views in the same order as lessonNames (matching student lesson list)
+            String studentId = student.studentId;
             for (String lessonName : lessonNames) {
-                LessonScore lessonScore = lessonScoreMap.get(lessonName);
-                if (lessonScore == null) {
-                    // Create empty score if not found
-                    lessonScore = new LessonScore();
-                    lessonScore.lessonName = lessonName;
-                    lessonScore.quizScore = 0;
-                    lessonScore.quizAttempts = 0;
-                    lessonScore.codeBuilderScore = 0;
-                    lessonScore.codeBuilderAttempts = 0;
-                    lessonScore.compilerScore = 0;
-                    lessonScore.compilerAttempts = 0;
-                }
+                int quizScore = scoreMatrix.getScore(studentId, lessonName, LeaderboardManager.ACTIVITY_QUIZ);
+                int codeBuilderScore = scoreMatrix.getScore(studentId, lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER);
+                int compilerScore = scoreMatrix.getScore(studentId, lessonName, LeaderboardManager.ACTIVITY_COMPILER);
                 View lessonView = LayoutInflater.from(holder.itemView.getContext())
                         .inflate(R.layout.item_lesson_score, holder.scoresContainer, false);
 
@@ -1492,42 +1493,42 @@ public class TeacherClassDetailActivity extends AppCompatActivity {
                 TextView compilerScoreText = lessonView.findViewById(R.id.compilerScore);
                 TextView compilerAttemptsText = lessonView.findViewById(R.id.compilerAttempts);
 
-                lessonNameText.setText(lessonScore.lessonName);
+                lessonNameText.setText(lessonName);
 
                 // Quiz scores
-                if (lessonScore.quizScore > 0) {
-                    quizScoreText.setText(String.valueOf(lessonScore.quizScore));
+                if (quizScore > 0) {
+                    quizScoreText.setText(String.valueOf(quizScore));
                     quizScoreText.setTextColor(0xFF4CAF50);
                 } else {
                     quizScoreText.setText("--");
                     quizScoreText.setTextColor(0xFF999999);
                 }
-                quizAttemptsText.setText(lessonScore.quizAttempts + "/3");
+                quizAttemptsText.setText(scoreMatrix.getAttempts(studentId, lessonName, LeaderboardManager.ACTIVITY_QUIZ) + "/3");
 
                 // Code Builder scores
-                if (lessonScore.codeBuilderScore > 0) {
-                    codeBuilderScoreText.setText(String.valueOf(lessonScore.codeBuilderScore));
+                if (codeBuilderScore > 0) {
+                    codeBuilderScoreText.setText(String.valueOf(codeBuilderScore));
                     codeBuilderScoreText.setTextColor(0xFF2196F3);
                 } else {
                     codeBuilderScoreText.setText("--");
                     codeBuilderScoreText.setTextColor(0xFF999999);
                 }
-                codeBuilderAttemptsText.setText(lessonScore.codeBuilderAttempts + "/3");
+                codeBuilderAttemptsText.setText(scoreMatrix.getAttempts(studentId, lessonName, LeaderboardManager.ACTIVITY_CODE_BUILDER) + "/3");
 
                 // Compiler scores
-                if (lessonScore.compilerScore > 0) {
-                    compilerScoreText.setText(String.valueOf(lessonScore.compilerScore));
+                if (compilerScore > 0) {
+                    compilerScoreText.setText(String.valueOf(compilerScore));
                     compilerScoreText.setTextColor(0xFFFF9800);
                 } else {
                     compilerScoreText.setText("--");
                     compilerScoreText.setTextColor(0xFF999999);
                 }
-                compilerAttemptsText.setText(lessonScore.compilerAttempts + "/1");
+                compilerAttemptsText.setText(scoreMatrix.getAttempts(studentId, lessonName, LeaderboardManager.ACTIVITY_COMPILER) + "/1");
 
                 holder.scoresContainer.addView(lessonView);
             }
 
-            System.out.println("🔍 TeacherClassDetail: Displayed " + lessonScores.size() + " lesson scores for " + student.fullName);
+            System.out.println("🔍 TeacherClassDetail: Displayed " + lessonNames.size() + " lesson scores for " + student.fullName);
 }
 
 class StudentViewHolder extends RecyclerView.ViewHolder {
@@ -1554,24 +1555,11 @@ class StudentViewHolder extends RecyclerView.ViewHolder {
         }
     }
 
-    // Helper classes for detailed score display
-    private static class LessonScoreResult {
-        List<LessonScore> lessonScores = new ArrayList<>();
-    }
-
-    private static class LessonScore {
-        String lessonName;
-        int quizScore;
-        int quizAttempts;
-        int codeBuilderScore;
-        int codeBuilderAttempts;
-        int compilerScore;
-        int compilerAttempts;
-    }
-
     // Chart helper classes
     private static class ChartDataResult {
         List<LessonChartData> lessonData = new ArrayList<>();
+        long scoresVersion; // Newest rollup serverUpdatedAt seen when the result was computed
+        boolean complete = true; // False if any aggregation failed; such results are not cached
     }
 
     private static class LessonChartData {
@@ -1579,6 +1567,13 @@ class StudentViewHolder extends RecyclerView.ViewHolder {
         int quizPassingPercent; // percentage 0-100
         int codeBuilderPassingPercent;
         int compilerPassingPercent;
+
+        // Index follows CHART_ACTIVITIES
+        void setPassingPercent(int activityIndex, int percent) {
+            if (activityIndex == 0) quizPassingPercent = percent;
+            else if (activityIndex == 1) codeBuilderPassingPercent = percent;
+            else compilerPassingPercent = percent;
+        }
     }
 
     // Legacy helper classes (kept for compatibility)
@@ -0,0 +1,181 @@
+package com.example.codeclash;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-tier cache behind UserNameManager: a bounded in-memory LRU in front of a SharedPreferences
+ * store that survives restarts. Entries expire after a TTL; users that exist in neither
+ * collection are remembered for a shorter time so they stop costing two failed reads per lookup.
+ * All methods are thread-safe. The disk tier is optional until attach() is called.
+ */
+public class UserNameCache {
+    private static final String PREFS_NAME = "user_name_cache";
+    private static final int MAX_MEMORY_ENTRIES = 500;
+    private static final int MAX_DISK_ENTRIES = 2000;
+    private static final long NAME_TTL_MS = 24 * 60 * 60 * 1000L;
+    private static final long MISSING_TTL_MS = 10 * 60 * 1000L;
+
+    /**
+     * A cached answer: a name, or a remembered miss (name == null)
+     */
+    public static class Lookup {
+        public final String name;
+        final long expiresAt;
+
+        Lookup(String name, long expiresAt) {
+            this.name = name;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isMissing() {
+            return name == null;
+        }
+    }
+
+    private final LinkedHashMap<String, Lookup> memory = new LinkedHashMap<String, Lookup>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Lookup> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    };
+    private SharedPreferences disk;
+    // Entries currently in the disk tier (an upper bound: overwrites of an existing key are counted)
+    private int diskSize = 0;
+
+    /**
+     * Enable the disk tier and drop its expired entries
+     */
+    public synchronized void attach(Context context) {
+        if (disk != null) return;
+        disk = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        pruneDisk();
+    }
+
+    /**
+     * Cached answer for the user, or null when nothing fresh is cached
+     */
+    public synchronized Lookup get(String userId) {
+        long now = System.currentTimeMillis();
+        Lookup lookup = memory.get(userId);
+        if (lookup != null) {
+            if (lookup.expiresAt > now) return lookup;
+            memory.remove(userId);
+        }
+        if (disk == null) return null;
+
+        lookup = decode(disk.getString(userId, null));
+        if (lookup == null || lookup.expiresAt <= now) return null;
+        memory.put(userId, lookup); // Promote
+        return lookup;
+    }
+
+    public synchronized void put(String userId, String name) {
+        SharedPreferences.Editor editor = disk != null ? disk.edit() : null;
+        store(editor, userId, new Lookup(name, System.currentTimeMillis() + NAME_TTL_MS));
+        flush(editor);
+    }
+
+    /**
+     * Remember that the user has no name in either collection
+     */
+    public synchronized void putMissing(String userId) {
+        SharedPreferences.Editor editor = disk != null ? disk.edit() : null;
+        store(editor, userId, new Lookup(null, System.currentTimeMillis() + MISSING_TTL_MS));
+        flush(editor);
+    }
+
+    /**
+     * Store a whole bulk result (names plus remembered misses) with a single disk write
+     */
+    public synchronized void putAll(Map<String, String> names, Collection<String> missing) {
+        long now = System.currentTimeMillis();
+        SharedPreferences.Editor editor = disk != null ? disk.edit() : null;
+        for (Map.Entry<String, String> entry : names.entrySet()) {
+            store(editor, entry.getKey(), new Lookup(entry.getValue(), now + NAME_TTL_MS));
+        }
+        for (String userId : missing) {
+            store(editor, userId, new Lookup(null, now + MISSING_TTL_MS));
+        }
+        flush(editor);
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        if (disk != null) {
+            disk.edit().clear().apply();
+            diskSize = 0;
+        }
+    }
+
+    private void store(SharedPreferences.Editor editor, String userId, Lookup lookup) {
+        memory.put(userId, lookup);
+        if (editor != null) {
+            editor.putString(userId, encode(lookup));
+            diskSize++;
+        }
+    }
+
+    // Applies the pending writes, then prunes if they pushed the disk tier over its cap
+    private void flush(SharedPreferences.Editor editor) {
+        if (editor == null) return;
+        editor.apply();
+        if (diskSize > MAX_DISK_ENTRIES) {
+            pruneDisk();
+        }
+    }
+
+    // Removes expired entries, then the soonest-expiring ones while the store is over its cap
+    private void pruneDisk() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Long>> live = new ArrayList<>();
+        SharedPreferences.Editor editor = disk.edit();
+        int removed = 0;
+        for (Map.Entry<String, ?> entry : disk.getAll().entrySet()) {
+            Lookup lookup = entry.getValue() instanceof String ? decode((String) entry.getValue()) : null;
+            if (lookup == null || lookup.expiresAt <= now) {
+                editor.remove(entry.getKey());
+                removed++;
+            } else {
+                live.add(new AbstractMap.SimpleEntry<>(entry.getKey(), lookup.expiresAt));
+            }
+        }
+        if (live.size() > MAX_DISK_ENTRIES) {
+            Collections.sort(live, (a, b) -> Long.compare(a.getValue(), b.getValue()));
+            for (int i = 0; i < live.size() - MAX_DISK_ENTRIES; i++) {
+                editor.remove(live.get(i).getKey());
+                removed++;
+            }
+        }
+        editor.apply();
+        diskSize = Math.min(live.size(), MAX_DISK_ENTRIES);
+        System.out.println("👤 UserNameCache: Disk tier has " + Math.min(live.size(), MAX_DISK_ENTRIES)
+                + " names (" + removed + " pruned)");
+    }
+
+    // Stored as "expiresAt|name"; an empty name is a remembered miss
+    private static String encode(Lookup lookup) {
+        return lookup.expiresAt + "|" + (lookup.name != null ? lookup.name : "");
+    }
+
+    private static Lookup decode(String raw) {
+        if (raw == null) return null;
+        int separator = raw.indexOf('|');
+        if (separator < 0) return null;
+        try {
+            long expiresAt = Long.parseLong(raw.substring(0, separator));
+            String name = raw.substring(separator + 1);
+            return new Lookup(name.isEmpty() ? null : name, expiresAt);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
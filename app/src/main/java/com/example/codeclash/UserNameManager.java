@@ -1,8 +1,19 @@
 package com.example.codeclash;
 
+import android.content.Context;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Utility class to manage consistent user name lookups throughout the app
@@ -10,16 +21,35 @@ import java.util.Map;
  */
 public class UserNameManager {
     
-    private static final Map<String, String> nameCache = new HashMap<>();
+    private static final UserNameCache nameCache = new UserNameCache();
+    // userId -> callbacks waiting on the lookup already in flight for it
+    private static final Map<String, List<NameCallback>> inFlight = new HashMap<>();
     
     public interface NameCallback {
         void onSuccess(String name);
         void onFailure(String fallbackName);
     }
     
+    public interface BulkNameCallback {
+        // Contains only the IDs that resolved to a name
+        void onComplete(Map<String, String> names);
+    }
+    
+    // Result of reading one user document: missing is true only when the read itself succeeded
+    private interface DocumentNameCallback {
+        void onResult(String name, boolean missing);
+    }
+    
+    /**
+     * Enable the on-disk name cache so names survive app restarts
+     */
+    public static void init(Context context) {
+        nameCache.attach(context);
+    }
+    
     /**
      * Get user's signup name from users collection
-     * Uses cache for performance
+     * Served from the cache when fresh; concurrent lookups for the same user share one fetch
      */
     public static void getUserName(String userId, NameCallback callback) {
         if (userId == null || userId.isEmpty()) {
@@ -27,64 +57,172 @@ public class UserNameManager {
             return;
         }
         
-        // Check cache first
-        if (nameCache.containsKey(userId)) {
-            callback.onSuccess(nameCache.get(userId));
+        // Check cache first (including users known not to exist)
+        UserNameCache.Lookup cached = nameCache.get(userId);
+        if (cached != null) {
+            if (cached.isMissing()) {
+                callback.onFailure("Unknown Student");
+            } else {
+                callback.onSuccess(cached.name);
+            }
             return;
         }
         
+        // Join a lookup already running for this user instead of starting another
+        synchronized (inFlight) {
+            List<NameCallback> waiting = inFlight.get(userId);
+            if (waiting != null) {
+                waiting.add(callback);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(userId, waiting);
+        }
+        
         // Try capital 'Users' first (matches most code paths), then fallback to lowercase 'users'
-        fetchNameFromCollection("Users", userId, new NameCallback() {
-            @Override
-            public void onSuccess(String name) {
-                nameCache.put(userId, name);
+        fetchNameFromCollection("Users", userId, (name, missing) -> {
+            if (name != null) {
+                finishLookup(userId, name, false);
+                return;
+            }
+            fetchNameFromCollection("users", userId, (fallbackName, fallbackMissing) ->
+                    finishLookup(userId, fallbackName, missing && fallbackMissing));
+        });
+    }
+    
+    private static void finishLookup(String userId, String name, boolean missing) {
+        // A failed read is not cached, so the next lookup retries it
+        if (name != null) {
+            nameCache.put(userId, name);
+        } else if (missing) {
+            nameCache.putMissing(userId);
+        }
+        
+        List<NameCallback> waiting;
+        synchronized (inFlight) {
+            waiting = inFlight.remove(userId);
+        }
+        if (waiting == null) return;
+        for (NameCallback callback : waiting) {
+            if (name != null) {
                 callback.onSuccess(name);
+            } else {
+                callback.onFailure("Unknown Student");
             }
+        }
+    }
 
-            @Override
-            public void onFailure(String fallbackName) {
-                // Fallback to lowercase collection
-                fetchNameFromCollection("users", userId, new NameCallback() {
-                    @Override
-                    public void onSuccess(String name) {
-                        nameCache.put(userId, name);
-                        callback.onSuccess(name);
-                    }
-
-                    @Override
-                    public void onFailure(String fallbackName2) {
-                        callback.onFailure("Unknown Student");
-                    }
-                });
+    /**
+     * Resolve many user names at once
+     * Cache misses are fetched with chunked whereIn(documentId) queries against 'Users', run
+     * concurrently; only IDs still unresolved are then looked up in the lowercase 'users' collection.
+     * A chunk the rules refuse to list falls back to per-document gets, which the rules allow.
+     */
+    public static void getUserNames(Collection<String> userIds, BulkNameCallback callback) {
+        Map<String, String> names = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        Set<String> uniqueIds = new LinkedHashSet<>(userIds);
+        for (String userId : uniqueIds) {
+            if (userId == null || userId.isEmpty()) continue;
+            UserNameCache.Lookup cached = nameCache.get(userId);
+            if (cached == null) {
+                missing.add(userId);
+            } else if (!cached.isMissing()) {
+                names.put(userId, cached.name);
             }
+        }
+        
+        if (missing.isEmpty()) {
+            callback.onComplete(names);
+            return;
+        }
+        
+        System.out.println("👤 UserNameManager: Resolving " + missing.size() + " names ("
+                + (uniqueIds.size() - missing.size()) + " cached)");
+        Task<FirestoreChunks.IdReadResult> primary = readUsers("Users", missing);
+        primary.addOnCompleteListener(primaryDone -> {
+            Map<String, String> fetched = new HashMap<>();
+            boolean primarySucceeded = collectNames(primary, "Users", fetched);
+            
+            List<String> unresolved = new ArrayList<>();
+            for (String userId : missing) {
+                if (!fetched.containsKey(userId)) unresolved.add(userId);
+            }
+            if (unresolved.isEmpty()) {
+                finishBulk(missing, fetched, true, names, callback);
+                return;
+            }
+            
+            // Legacy lowercase collection, only for the IDs 'Users' did not have
+            Task<FirestoreChunks.IdReadResult> fallback = readUsers("users", unresolved);
+            fallback.addOnCompleteListener(fallbackDone -> {
+                boolean fallbackSucceeded = collectNames(fallback, "users", fetched);
+                finishBulk(missing, fetched, primarySucceeded && fallbackSucceeded, names, callback);
+            });
         });
     }
+    
+    private static void finishBulk(List<String> requested, Map<String, String> fetched, boolean allSucceeded,
+                                   Map<String, String> names, BulkNameCallback callback) {
+        Map<String, String> resolved = new HashMap<>();
+        List<String> notFound = new ArrayList<>();
+        for (String userId : requested) {
+            String name = fetched.get(userId);
+            if (name != null) {
+                resolved.put(userId, name);
+            } else if (allSucceeded) {
+                notFound.add(userId); // Checked both collections; neither has the user
+            }
+        }
+        nameCache.putAll(resolved, notFound); // One disk write for the whole result
+        names.putAll(fetched);
+        callback.onComplete(names);
+    }
+    
+    private static Task<FirestoreChunks.IdReadResult> readUsers(String collection, List<String> userIds) {
+        return FirestoreChunks.readByIds(FirebaseFirestore.getInstance().collection(collection), userIds);
+    }
+    
+    // Returns false if any of the reads failed
+    private static boolean collectNames(Task<FirestoreChunks.IdReadResult> task, String collection, Map<String, String> into) {
+        if (!task.isSuccessful() || task.getResult() == null) {
+            System.out.println("❌ UserNameManager: Bulk name lookup on " + collection + " failed");
+            return false;
+        }
+        for (DocumentSnapshot doc : task.getResult().documents.values()) {
+            String name = extractName(doc);
+            if (name != null) {
+                into.put(doc.getId(), name);
+            }
+        }
+        if (!task.getResult().complete) {
+            System.out.println("❌ UserNameManager: Bulk name lookup on " + collection + " incomplete");
+        }
+        return task.getResult().complete;
+    }
+    
+    // Support multiple possible name fields
+    private static String extractName(DocumentSnapshot documentSnapshot) {
+        return firstNonEmpty(
+                documentSnapshot.getString("fullName"),
+                documentSnapshot.getString("name"),
+                documentSnapshot.getString("displayName")
+        );
+    }
 
-    private static void fetchNameFromCollection(String collection, String userId, NameCallback callback) {
+    private static void fetchNameFromCollection(String collection, String userId, DocumentNameCallback callback) {
         FirebaseFirestore.getInstance()
                 .collection(collection)
                 .document(userId)
                 .get()
                 .addOnSuccessListener(documentSnapshot -> {
-                    if (!documentSnapshot.exists()) {
-                        callback.onFailure("Unknown");
-                        return;
-                    }
-                    // Support multiple possible name fields
-                    String name = firstNonEmpty(
-                            documentSnapshot.getString("fullName"),
-                            documentSnapshot.getString("name"),
-                            documentSnapshot.getString("displayName")
-                    );
-                    if (name != null && !name.isEmpty()) {
-                        callback.onSuccess(name);
-                    } else {
-                        callback.onFailure("Unknown");
-                    }
+                    String name = documentSnapshot.exists() ? extractName(documentSnapshot) : null;
+                    callback.onResult(name, name == null);
                 })
                 .addOnFailureListener(e -> {
                     System.out.println("❌ UserNameManager: Failed to load name from " + collection + "/" + userId + ": " + e.getMessage());
-                    callback.onFailure("Unknown");
+                    callback.onResult(null, false);
                 });
     }
 
@@ -124,20 +262,8 @@ public class UserNameManager {
      * Pre-cache multiple names for better performance
      */
     public static void preloadNames(String[] userIds) {
-        for (String userId : userIds) {
-            if (!nameCache.containsKey(userId)) {
-                getUserName(userId, new NameCallback() {
-                    @Override
-                    public void onSuccess(String name) {
-                        // Already cached in getUserName
-                    }
-                    
-                    @Override
-                    public void onFailure(String fallbackName) {
-                        // Handle silently for preloading
-                    }
-                });
-            }
-        }
+        getUserNames(Arrays.asList(userIds), names -> {
+            // Already cached in getUserNames
+        });
     }
 }